@@ -7,6 +7,7 @@
 package org.jtool.changerecorder;
 
 import org.jtool.changerecorder.editor.HistoryManager;
+import org.jtool.changerecorder.history.OperationHistory;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -95,6 +96,18 @@ public class Activator extends AbstractUIPlugin implements IStartup {
         return ResourcesPlugin.getWorkspace();
     }
     
+    /**
+     * Returns the extension of history files to be written, which determines their representation.
+     * History files are written in XML unless the binary representation is chosen in the preference page.
+     * @return the extension of the history files
+     */
+    public static String getHistoryFileExtension() {
+        if (plugin != null && plugin.getPreferenceStore().getBoolean(PreferencePage.WRITE_BINARY_HISTORY)) {
+            return OperationHistory.BINARY_FILE_EXT;
+        }
+        return OperationHistory.XML_FILE_EXT;
+    }
+    
     /**
      * Returns the directory path of the plug-in's workspace, which contains operation history. 
      * @return the the directory into which the operation history is stored
@@ -0,0 +1,25 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Initializes the preference values.
+ * @author Katsuhisa Maruyama
+ */
+public class PreferenceInitializer extends AbstractPreferenceInitializer {
+    
+    /**
+     * Stores initial preference values.
+     */
+    public void initializeDefaultPreferences() {
+        IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+        store.setDefault(PreferencePage.WRITE_BINARY_HISTORY, PreferencePage.WRITE_BINARY_HISTORY_DEFAULT);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder;
+
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.eclipse.ui.IWorkbench;
+
+/**
+ * Manages the preference page.
+ * @author Katsuhisa Maruyama
+ */
+public class PreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
+    
+    /**
+     * A flag indicating if history files are written in the binary representation instead of XML.
+     */
+    static final String WRITE_BINARY_HISTORY = "write.binary.history";
+    
+    /**
+     * The default value that indicates if history files are written in the binary representation.
+     */
+    static final boolean WRITE_BINARY_HISTORY_DEFAULT = false;
+    
+    /**
+     * Creates an object for a preference page.
+     */
+    public PreferencePage() {
+        super(GRID);
+        setPreferenceStore(Activator.getPlugin().getPreferenceStore());
+        setDescription("A preference page of the ChangeRecorder");
+    }
+    
+    /**
+     * Creates the field editors for preference settings.
+     */
+    public void createFieldEditors() {
+        addField(new BooleanFieldEditor(WRITE_BINARY_HISTORY,
+          "Write history files in the binary representation (not readable by tools expecting XML)", getFieldEditorParent()));
+    }
+    
+    /**
+     * Initializes a preference page for a given workbench.
+     */
+    public void init(IWorkbench workbench) {
+    }
+}
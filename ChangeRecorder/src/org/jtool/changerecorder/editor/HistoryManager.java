@@ -6,9 +6,11 @@
 
 package org.jtool.changerecorder.editor;
 
+import org.jtool.changerecorder.Activator;
 import org.jtool.changerecorder.diff.DiffOperationGenerator;
 import org.jtool.changerecorder.event.OperationEventListener;
 import org.jtool.changerecorder.event.OperationEventSource;
+import org.jtool.changerecorder.history.HistoryJournal;
 import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerecorder.operation.CompoundOperation;
 import org.jtool.changerecorder.operation.CopyOperation;
@@ -29,8 +31,8 @@ import org.jtool.editrecorder.recorder.MacroListener;
 import org.jtool.editrecorder.recorder.Recorder;
 import org.jtool.editrecorder.util.WorkspaceUtilities;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.ui.IEditorPart;
+import java.io.File;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -40,16 +42,31 @@ import java.util.ArrayList;
  */
 public class HistoryManager extends OperationEventSource implements MacroListener {
     
+    /**
+     * The number of bytes of the journal beyond which it is compacted before the recording stops.
+     */
+    private static final long COMPACTION_SIZE = 1024 * 1024;
+    
     /**
      * The single instance of this history manager.
      */
     private static HistoryManager instance = new HistoryManager();
     
     /**
-     * The operation history.
+     * The operation history that stores the operations appended to the current journal.
      */
     private OperationHistory history = new OperationHistory();
     
+    /**
+     * The journal that receives operations as soon as they are stored.
+     */
+    private HistoryJournal journal = null;
+    
+    /**
+     * The operation that was stored last, which is published by the thread of the recording queue.
+     */
+    private volatile IOperation lastOperation = null;
+    
     /**
      * A recorder that records macros.
      */
@@ -70,12 +87,36 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      */
     private OperationEventListener consoleOperationListener = new ConsoleOperationListener();
     
+    /**
+     * A queue that passes macros and file actions to the thread converting and storing them.
+     */
+    private RecordingQueue queue;
+    
+    /**
+     * The operations stored in the current batch, which have not been sent to the listeners yet.
+     */
+    private List<IOperation> pendingOperations = new ArrayList<IOperation>();
+    
     /**
      * Creates a manager that records operations performed on an editor.
      */
     public HistoryManager() {
         super();
         recorder = Recorder.getInstance();
+        
+        queue = new RecordingQueue(new Runnable() {
+            
+            /**
+             * Sends the operations stored in the batch to the listeners and flushes the journal.
+             */
+            @Override
+            public void run() {
+                notifyPendingOperations();
+                if (journal != null) {
+                    journal.flush();
+                }
+            }
+        });
     }
     
     /**
@@ -90,6 +131,19 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * Starts recording of operations.
      */
     public void start() {
+        queue.start();
+        queue.put(new Runnable() {
+            
+            /**
+             * Compacts the journals left by a previous session and opens a new journal.
+             */
+            @Override
+            public void run() {
+                recoverJournals();
+                openJournal();
+            }
+        });
+        
         recorder.addMacroListener(this);
         addOperationEventListener(consoleOperationListener);
     }
@@ -108,12 +162,22 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * Stops recording of operations.
      */
     public void stop() {
-        writeHistory();
-        
         if (recorder != null) {
             recorder.removeMacroListener(this);
             removeOperationEventListener(consoleOperationListener);
         }
+        
+        queue.put(new Runnable() {
+            
+            /**
+             * Compacts the journal into a history file without opening a new journal.
+             */
+            @Override
+            public void run() {
+                compactJournal(false);
+            }
+        });
+        queue.stop();
     }
     
     /**
@@ -128,28 +192,48 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     
     /**
      * Receives a macro event when a new macro is added.
+     * The macro is converted into an operation on the thread of the recording queue.
      * @param evt the macro event
      */
     @Override
     public void macroAdded(MacroEvent evt) {
-        Macro macro = evt.getMacro();
+        final Macro macro = evt.getMacro();
+        final long time = Time.getCurrentTime();
+        queue.put(new Runnable() {
+            
+            /**
+             * Converts the macro into an operation and stores it.
+             */
+            @Override
+            public void run() {
+                addMacro(macro, time);
+            }
+        });
+    }
+    
+    /**
+     * Converts a macro into an operation and stores it into the operation history.
+     * @param macro the macro
+     * @param time the time when the macro was received
+     */
+    private void addMacro(Macro macro, long time) {
         // System.out.println(macro.toString());
         
         IOperation op = null;
         if (macro instanceof DocumentMacro) {
-            op = createOperation((DocumentMacro)macro);
+            op = createOperation((DocumentMacro)macro, time);
             
         } else if (macro instanceof ExecutionMacro) {
             op = createOperation((ExecutionMacro)macro);
             
         } else if (macro instanceof CopyMacro) {
-            op = createOperation((CopyMacro)macro);
+            op = createOperation((CopyMacro)macro, time);
             
         } else if (macro instanceof CompoundMacro) {
-            op = createOperation((CompoundMacro)macro);
+            op = createOperation((CompoundMacro)macro, time);
             
         } else if (macro instanceof ResourceMacro) {
-            createOperation((ResourceMacro)macro);
+            createOperation((ResourceMacro)macro, time);
         }
         
         if (op != null) {
@@ -176,15 +260,30 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      */
     private void storeOperation(IOperation op) {
         history.add(op);
-        notify(op);
+        lastOperation = op;
+        if (journal != null) {
+            journal.append(op);
+        }
+        pendingOperations.add(op);
+    }
+    
+    /**
+     * Sends the stored operations to the listeners in the order of their storing.
+     */
+    private void notifyPendingOperations() {
+        for (IOperation op : pendingOperations) {
+            notify(op);
+        }
+        pendingOperations.clear();
     }
     
     /**
      * Obtains the last operation from this operation history.
+     * The caller does not wait for the pending operations, so the operation may not reflect them.
      * @return the last operation, or <code>null</code> if none
      */
     IOperation getLastOperation() {
-        return history.getLastOperation();
+        return lastOperation;
     }
     
     /**
@@ -192,23 +291,32 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * @param file the file
      * @param code the contents of the source code when the operation was performed
      */
-    void recordFileOpenOperation(IFile file, String code) {
-        String path = file.getFullPath().toString();
-        
-        if (newOperation != null) {
-            NormalOperation nop = new NormalOperation(Time.getCurrentTime(), 0, path, 0, code, "", NormalOperation.Type.EDIT);
-            storeOperation(nop);
-            
-            FileOperation op = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.OPEN, code);
-            storeOperation(op);
+    void recordFileOpenOperation(IFile file, final String code) {
+        final String path = file.getFullPath().toString();
+        final long time = Time.getCurrentTime();
+        queue.put(new Runnable() {
             
-        } else {
-            FileOperation op = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.OPEN, code);
-            storeOperation(op);
-        }
-        
-        newOperation = null;
-        closeOperation = null;
+            /**
+             * Stores the file open operation.
+             */
+            @Override
+            public void run() {
+                if (newOperation != null) {
+                    NormalOperation nop = new NormalOperation(time, 0, path, 0, code, "", NormalOperation.Type.EDIT);
+                    storeOperation(nop);
+                    
+                    FileOperation op = new FileOperation(time, path, FileOperation.Type.OPEN, code);
+                    storeOperation(op);
+                    
+                } else {
+                    FileOperation op = new FileOperation(time, path, FileOperation.Type.OPEN, code);
+                    storeOperation(op);
+                }
+                
+                newOperation = null;
+                closeOperation = null;
+            }
+        });
     }
     
     /**
@@ -216,10 +324,20 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * @param file the file
      * @param code the contents of the source code when the operation was performed
      */
-    void recordFileCloseOperation(IFile file, String code) {
-        String path = file.getFullPath().toString();
-        closeOperation = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.CLOSE, code);
-        storeOperation(closeOperation);
+    void recordFileCloseOperation(IFile file, final String code) {
+        final String path = file.getFullPath().toString();
+        final long time = Time.getCurrentTime();
+        queue.put(new Runnable() {
+            
+            /**
+             * Stores the file close operation.
+             */
+            @Override
+            public void run() {
+                closeOperation = new FileOperation(time, path, FileOperation.Type.CLOSE, code);
+                storeOperation(closeOperation);
+            }
+        });
     }
     
     /**
@@ -229,23 +347,50 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * @param type the type of the operation
      * @param codeWrite <code>true</code> if source code will be written, otherwise <code>false</code>
      */
-    void recordFileOperation(IFile file, String code, FileOperation.Type type, boolean codeWrite) {
-        FileOperation op;
+    void recordFileOperation(IFile file, String code, final FileOperation.Type type, boolean codeWrite) {
+        final FileOperation op;
         if (codeWrite) {
             op = new FileOperation(Time.getCurrentTime(), file.getFullPath().toString(), type, code);
         } else {
             op = new FileOperation(Time.getCurrentTime(), file.getFullPath().toString(), type, null);
         }
         
-        storeOperation(op);
+        queue.put(new Runnable() {
+            
+            /**
+             * Stores the file operation unless it repeats the activation of the last operation.
+             */
+            @Override
+            public void run() {
+                if (type == FileOperation.Type.ACT && isLastActivation(op.getFilePath())) {
+                    return;
+                }
+                storeOperation(op);
+            }
+        });
+    }
+    
+    /**
+     * Tests if the last operation is the activation of a given file.
+     * @param path the path of the file
+     * @return <code>true</code> if the file was activated last, otherwise <code>false</code>
+     */
+    private boolean isLastActivation(String path) {
+        IOperation op = lastOperation;
+        if (op != null && op.getOperationType() == IOperation.Type.FILE) {
+            FileOperation fop = (FileOperation)op;
+            return fop.getActionType() == FileOperation.Type.ACT && fop.getFilePath().compareTo(path) == 0;
+        }
+        return false;
     }
     
     /**
      * Creates a text operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private TextOperation createOperation(DocumentMacro macro) {
+    private TextOperation createOperation(DocumentMacro macro, long time) {
         NormalOperation.Type type = NormalOperation.Type.EDIT;
         if (macro.getType().compareTo("Cut") == 0) {
             type = NormalOperation.Type.CUT;
@@ -257,7 +402,7 @@ public class HistoryManager extends OperationEventSource implements MacroListene
             type = NormalOperation.Type.REDO;
         }
         
-        return new NormalOperation(Time.getCurrentTime(), macro.getPath(), 
+        return new NormalOperation(time, macro.getPath(), 
                                    macro.getStart(), macro.getInsertedText(), macro.getDeletedText(), type);
     }
     
@@ -273,18 +418,20 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     /**
      * Creates a copy operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private IOperation createOperation(CopyMacro macro) {
-        return new CopyOperation(Time.getCurrentTime(), macro.getPath(), macro.getStart(), macro.getCopiedText());
+    private IOperation createOperation(CopyMacro macro, long time) {
+        return new CopyOperation(time, macro.getPath(), macro.getStart(), macro.getCopiedText());
     }
     
     /**
      * Creates a compound operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private IOperation createOperation(CompoundMacro macro) {
+    private IOperation createOperation(CompoundMacro macro, long time) {
         if (macro.getMacros().size() == 0) {
             return null;
         }
@@ -292,7 +439,7 @@ public class HistoryManager extends OperationEventSource implements MacroListene
         List<IOperation> ops = new ArrayList<IOperation>();
         for (Macro m : macro.getMacros()) {
             if (m instanceof DocumentMacro) {
-                ops.add(createOperation((DocumentMacro)m));
+                ops.add(createOperation((DocumentMacro)m, time));
             }
         }
         return new CompoundOperation(macro.getStartTime(), ops, macro.getType());
@@ -301,9 +448,10 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     /**
      * Creates a compound operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private void createOperation(ResourceMacro macro) {
+    private void createOperation(ResourceMacro macro, long time) {
         if (macro.getTarget().compareTo("File") == 0) {
             
             if (macro.isAdded()) {
@@ -315,13 +463,13 @@ public class HistoryManager extends OperationEventSource implements MacroListene
             } else if (macro.isRemoved()) {
                 
                 if (closeOperation != null) {
-                    CompoundOperation cop = createDiffOperation(closeOperation.getFilePath(), closeOperation.getCode(), "");
+                    CompoundOperation cop = createDiffOperation(time, closeOperation.getFilePath(), closeOperation.getCode(), "");
                     storeOperation(cop);
                 }
                 
-                IOperation op = new FileOperation(Time.getCurrentTime(), macro.getPath(), FileOperation.Type.DELETE, macro.getCode());
+                IOperation op = new FileOperation(time, macro.getPath(), FileOperation.Type.DELETE, macro.getCode());
                 storeOperation(op);
-                writeHistory(macro.getPath(), macro.getEncoding());
+                compactLargeJournal();
                 
                 closeOperation = null;
             }
@@ -330,75 +478,237 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     
     /**
      * Creates a compound operation that contains normal operations representing respective differences.
+     * @param time the time when the differences were generated
      * @param path the name of the file path on which this operation was performed
      * @param oldCode the old contents of the file
      * @param newCode the new contents of the file
      * @return the created compound operation
      */
-    private CompoundOperation createDiffOperation(String path, String oldCode, String newCode) {
-        long time = Time.getCurrentTime();
+    private CompoundOperation createDiffOperation(long time, String path, String oldCode, String newCode) {
         List<NormalOperation> ops = DiffOperationGenerator.generate(time, path, oldCode, newCode);
         return new CompoundOperation(time, ops, "Diff");
     }
     
     /**
-     * Writes the operation history related to a file.
-     * @param file the file
+     * Forces the operations recorded so far to the journal on the storage device.
+     * The caller waits until the pending operations have been stored and synchronized.
      */
-    void writeHistory(IFile file) {
-        String encoding = null;
-        try {
-            if (file != null) {
-                encoding = file.getCharset();
+    void syncHistory() {
+        queue.put(new Runnable() {
+            
+            /**
+             * Synchronizes the journal.
+             */
+            @Override
+            public void run() {
+                if (journal != null) {
+                    journal.sync();
+                }
             }
-        } catch (CoreException e) {
-        }
-        
-        writeHistory(file.getFullPath().toString(), encoding);
+        });
+        queue.flush();
     }
     
     /**
-     * Writes the operation history not related to a specific file.
+     * Compacts the operations in the current journal into a history file and starts a new journal
+     * if the journal has grown beyond its limit. Otherwise the journal is compacted when the recording stops.
+     * The caller waits until the pending operations have been stored.
      */
     void writeHistory() {
-        writeHistory(history, WorkspaceUtilities.getEncoding());
+        queue.put(new Runnable() {
+            
+            /**
+             * Compacts the journal into a history file if it is large.
+             */
+            @Override
+            public void run() {
+                compactLargeJournal();
+            }
+        });
+        queue.flush();
     }
     
     /**
-     * Writes the operation history related to a file.
-     * @param path the path of the file
-     * @param encoding the encoding of the file
+     * Compacts the operations recorded so far into a history file and starts a new journal,
+     * so that the operations in the current session can be read from the history files.
+     * The listeners have received all the compacted operations before the compaction, and receive
+     * none of them after it. The caller waits until the history file has been written.
+     * @param task a task that is performed on the thread of the recording queue right after the compaction,
+     * before any later operation is stored, or <code>null</code> if none
+     */
+    public void compactHistory(final Runnable task) {
+        queue.put(new Runnable() {
+            
+            /**
+             * Sends the stored operations to the listeners and compacts the journal into a history file.
+             */
+            @Override
+            public void run() {
+                notifyPendingOperations();
+                if (history.size() > 0) {
+                    compactJournal(true);
+                }
+                if (task != null) {
+                    task.run();
+                }
+            }
+        });
+        queue.flush();
+    }
+    
+    /**
+     * Returns the path of the directory that stores journal files.
+     * @return the directory path
+     */
+    private String getJournalDirPath() {
+        return OperationHistory.getOperationHistoryDirPath() + '/' + HistoryJournal.JOURNAL_DIR;
+    }
+    
+    /**
+     * Opens a new journal for the current session.
      */
-    private void writeHistory(String path, String encoding) {
-        OperationHistory fhistory = history.extractHistory(path);
-        if (encoding == null) {
-            encoding = WorkspaceUtilities.getEncoding();
+    private void openJournal() {
+        String path = getJournalDirPath() + '/' + String.valueOf(Time.getCurrentTime()) + HistoryJournal.JOURNAL_EXT;
+        journal = new HistoryJournal(path);
+        if (!journal.open()) {
+            journal = null;
         }
-        
-        writeHistory(fhistory, encoding);
     }
     
     /**
-     * Writes the operation history related to a file.
-     * @param path the path of the file
-     * @param encoding the encoding of the file
+     * Compacts the current journal and starts a new journal if the journal has grown beyond its limit.
+     */
+    private void compactLargeJournal() {
+        if (journal != null && journal.getSize() >= COMPACTION_SIZE) {
+            compactJournal(true);
+        }
+    }
+    
+    /**
+     * Writes the operations in the current journal into a history file and deletes the journal.
+     * The journal is kept for recovery if the history file could not be written.
+     * @param reopen <code>true</code> if a new journal is opened, otherwise <code>false</code>
      */
-    private void writeHistory(OperationHistory fhistory, String encoding) {
-        if (!toBeWritten(fhistory)) {
-            return;
+    private void compactJournal(boolean reopen) {
+        if (journal != null) {
+            journal.close();
+            compact(journal.getPath(), history);
+        } else {
+            String dpath = OperationHistory.getOperationHistoryDirPath();
+            writeHistory(selectHistory(history), dpath + '/' + getNewHistoryName() + Activator.getHistoryFileExtension());
         }
+        history = new OperationHistory();
+        journal = null;
         
-        fhistory.sort();
+        if (reopen) {
+            openJournal();
+        }
+    }
+    
+    /**
+     * Compacts the journals that were left by a previous session, which was not stopped normally.
+     * A compaction that was interrupted is redone first.
+     */
+    private void recoverJournals() {
+        for (String path : HistoryJournal.getCompactingPaths(getJournalDirPath())) {
+            finishCompaction(path, HistoryJournal.read(path));
+        }
         
-        if (encoding == null) {
-            encoding = WorkspaceUtilities.getEncoding();
+        for (String path : HistoryJournal.getJournalPaths(getJournalDirPath())) {
+            compact(path, HistoryJournal.read(path));
         }
+    }
+    
+    /**
+     * Writes the operations in a journal into a new history file and deletes the journal.
+     * The journal is renamed to a compacting file, whose name determines the name of the history file,
+     * before the history file is written. The journal is kept if it could not be renamed.
+     * @param path the path of the journal file, which must be closed
+     * @param jhistory the operation history storing the operations in the journal
+     */
+    private void compact(String path, OperationHistory jhistory) {
+        File cfile = new File(getJournalDirPath(), getNewHistoryName() + HistoryJournal.COMPACTING_EXT);
+        if (new File(path).renameTo(cfile)) {
+            finishCompaction(cfile.getPath(), jhistory);
+        }
+    }
+    
+    /**
+     * Writes the operations in a compacting file into the history file corresponding to it and deletes the compacting file.
+     * The history file is written from scratch, since the history file left by an interrupted compaction may be incomplete.
+     * The compacting file is kept if the history file could not be written.
+     * @param path the path of the compacting file
+     * @param jhistory the operation history storing the operations in the compacting file
+     */
+    private void finishCompaction(String path, OperationHistory jhistory) {
+        String name = new File(path).getName();
+        name = name.substring(0, name.length() - HistoryJournal.COMPACTING_EXT.length());
+        String dpath = OperationHistory.getOperationHistoryDirPath();
+        String wpath = dpath + '/' + name + Activator.getHistoryFileExtension();
         
+        new File(dpath + '/' + name + OperationHistory.XML_FILE_EXT).delete();
+        new File(dpath + '/' + name + OperationHistory.BINARY_FILE_EXT).delete();
+        if (writeHistory(selectHistory(jhistory), wpath)) {
+            new File(path).delete();
+        }
+    }
+    
+    /**
+     * Obtains a name of a new history file, which is used by neither a history file nor a compacting file.
+     * @return the name of the history file without its extension
+     */
+    private String getNewHistoryName() {
         String dpath = OperationHistory.getOperationHistoryDirPath();
-        String wpath = dpath + '/' + String.valueOf(Time.getCurrentTime()) + ".xml";
+        long time = Time.getCurrentTime();
+        while (new File(dpath + '/' + String.valueOf(time) + OperationHistory.XML_FILE_EXT).exists() ||
+               new File(dpath + '/' + String.valueOf(time) + OperationHistory.BINARY_FILE_EXT).exists() ||
+               new File(getJournalDirPath(), String.valueOf(time) + HistoryJournal.COMPACTING_EXT).exists()) {
+            time++;
+        }
+        return String.valueOf(time);
+    }
+    
+    /**
+     * Selects operations to be written from an operation history, which excludes the operations
+     * on a file that was just opened and closed.
+     * @param whole the operation history
+     * @return the operation history storing the selected operations
+     */
+    private OperationHistory selectHistory(OperationHistory whole) {
+        OperationHistory selected = new OperationHistory();
+        OperationHistory rest = new OperationHistory(new ArrayList<IOperation>(whole.getOperations()));
+        while (rest.size() > 0) {
+            IOperation op = rest.getOperation(0);
+            OperationHistory fhistory = rest.extractHistory(op.getFilePath());
+            if (fhistory.size() == 0) {
+                rest.getOperations().remove(0);
+                selected.add(op);
+                
+            } else if (toBeWritten(fhistory)) {
+                selected.merge(fhistory);
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Writes an operation history into a history file.
+     * The code of file operations is stored in the snapshot store only for the binary representation,
+     * so that history files in XML can be read by tools that know nothing about the snapshots.
+     * @param history the operation history to be written
+     * @param wpath the path of the history file
+     * @return <code>true</code> if the history file was written or nothing needs to be written, otherwise <code>false</code>
+     */
+    private boolean writeHistory(OperationHistory history, String wpath) {
+        if (history.size() == 0) {
+            return true;
+        }
         
-        fhistory.write(wpath, encoding);
+        history.sort();
+        boolean written = history.write(wpath, WorkspaceUtilities.getEncoding(), wpath.endsWith(OperationHistory.BINARY_FILE_EXT));
         // System.out.println(history.toString());
+        
+        return written && new File(wpath).exists();
     }
     
     /**
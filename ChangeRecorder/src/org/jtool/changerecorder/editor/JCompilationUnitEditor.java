@@ -77,7 +77,7 @@ public class JCompilationUnitEditor extends CompilationUnitEditor {
     }
     
     /**
-     * Records the file save operation and stores the operation history into the output file when the contents of the editor is saved.
+     * Records the file save operation and forces the recorded operations to the journal when the contents of the editor is saved.
      * @param progressMonitor the progress monitor for communicating result state, or <code>null</code> if not needed
      */
     @Override
@@ -86,7 +86,7 @@ public class JCompilationUnitEditor extends CompilationUnitEditor {
         
         if (historyManager != null) {
             historyManager.recordFileOperation(getInputFile(), getSourceCode(), FileOperation.Type.SAVE, true);
-            historyManager.writeHistory(getInputFile());
+            historyManager.syncHistory();
         }
     }
     
@@ -100,7 +100,7 @@ public class JCompilationUnitEditor extends CompilationUnitEditor {
     }
     
     /**
-     * Records the file close operation and stores the operation history into the output file when the editor is closed.
+     * Records the file close operation and compacts the journal if it has grown large when the editor is closed.
      */
     @Override
     public void dispose() {
@@ -108,7 +108,7 @@ public class JCompilationUnitEditor extends CompilationUnitEditor {
             historyManager.stop(this);
             
             historyManager.recordFileCloseOperation(getInputFile(), getSourceCode());
-            historyManager.writeHistory(getInputFile());
+            historyManager.writeHistory();
             historyManager = null;
         }
         
@@ -0,0 +1,292 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.editor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hands recording tasks over from the threads on which macros occur to a dedicated consumer thread.
+ * The queue is bounded: a producer waits while it is full, which throttles the producer
+ * instead of letting the pending tasks grow without limit. The wait is limited, so that a stalled
+ * consumer never blocks the user interface; a task that could not wait any longer is added beyond the capacity.
+ * Once the queue is stopped, a task is performed on the thread adding it after all the pending tasks.
+ * @author Katsuhisa Maruyama
+ */
+class RecordingQueue {
+    
+    /**
+     * The maximum number of tasks that can be pending.
+     */
+    static final int CAPACITY = 4096;
+    
+    /**
+     * The maximum number of tasks that are performed in a batch.
+     */
+    static final int BATCH_SIZE = 256;
+    
+    /**
+     * The time in nanoseconds a waiting thread parks before it checks the queue again.
+     */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    /**
+     * The maximum time in nanoseconds a producer waits while the queue is full.
+     */
+    private static final long OFFER_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    
+    /**
+     * The maximum time in milliseconds a caller waits for the pending tasks to be performed.
+     */
+    private static final long FLUSH_TIMEOUT_MILLIS = 10000;
+    
+    /**
+     * The pending tasks.
+     */
+    private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    
+    /**
+     * The number of the pending tasks.
+     */
+    private AtomicInteger size = new AtomicInteger(0);
+    
+    /**
+     * A flag indicating if tasks have been added beyond the capacity, so that producers no longer wait.
+     * The flag is cleared when the consumer thread has caught up with the pending tasks.
+     */
+    private volatile boolean overflowing = false;
+    
+    /**
+     * A handler that is invoked after each batch of tasks was performed.
+     */
+    private Runnable batchHandler;
+    
+    /**
+     * The thread that performs the tasks.
+     */
+    private volatile Thread consumer;
+    
+    /**
+     * A flag indicating if the consumer thread keeps running.
+     */
+    private volatile boolean running = false;
+    
+    /**
+     * The lock that makes the addition of a task and the stop of the consumer thread atomic.
+     * Producers hold the read lock while they add tasks, and the write lock is held while the flag is cleared.
+     */
+    private ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Creates a queue of recording tasks.
+     * @param batchHandler a handler that is invoked after each batch of tasks was performed
+     */
+    RecordingQueue(Runnable batchHandler) {
+        this.batchHandler = batchHandler;
+    }
+    
+    /**
+     * Starts the consumer thread.
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        
+        running = true;
+        consumer = new Thread(new Runnable() {
+            
+            /**
+             * Performs pending tasks until this queue is stopped.
+             */
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "ChangeRecorder-history");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+    
+    /**
+     * Performs all the pending tasks and stops the consumer thread.
+     */
+    synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        
+        Thread thread = consumer;
+        stopLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        
+        LockSupport.unpark(thread);
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        consumer = null;
+        
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+            size.decrementAndGet();
+        }
+        batchHandler.run();
+    }
+    
+    /**
+     * Adds a task to this queue. The task is performed immediately if the consumer thread is not running
+     * or the caller is the consumer thread itself. A task added while the queue is being stopped is
+     * performed after the pending tasks have been performed.
+     * @param task the task to be performed
+     */
+    void put(Runnable task) {
+        Thread thread = consumer;
+        if (thread != null && thread == Thread.currentThread()) {
+            task.run();
+            batchHandler.run();
+            return;
+        }
+        
+        stopLock.readLock().lock();
+        try {
+            thread = consumer;
+            if (running && thread != null) {
+                offer(task, thread);
+                return;
+            }
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        
+        synchronized (this) {
+            task.run();
+            batchHandler.run();
+        }
+    }
+    
+    /**
+     * Waits until all the tasks added before the call have been performed and their batch has been handled.
+     * The caller returns immediately if the consumer thread is not running or the caller is the consumer thread,
+     * since the tasks have already been performed in that case.
+     * The wait is limited, and the tasks keep pending if they could not be performed in time.
+     * @return <code>true</code> if the tasks have been performed, otherwise <code>false</code>
+     */
+    boolean flush() {
+        final CountDownLatch barrier = new CountDownLatch(1);
+        put(new Runnable() {
+            
+            /**
+             * Handles the tasks performed so far in the current batch and releases the waiting caller.
+             */
+            @Override
+            public void run() {
+                try {
+                    batchHandler.run();
+                } finally {
+                    barrier.countDown();
+                }
+            }
+        });
+        
+        try {
+            if (barrier.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.err.println("Recording tasks are still pending: " + size.get());
+        return false;
+    }
+    
+    /**
+     * Adds a task to the pending tasks, waiting while this queue is full.
+     * The task is added beyond the capacity if this queue is still full after the limited wait,
+     * and later tasks are added without waiting until the consumer thread has caught up.
+     * This must be called while the read lock is held, so that the consumer thread keeps running.
+     * @param task the task to be performed
+     * @param thread the consumer thread
+     */
+    private void offer(Runnable task, Thread thread) {
+        long deadline = System.nanoTime() + OFFER_TIMEOUT_NANOS;
+        while (true) {
+            int num = size.get();
+            if (num < CAPACITY) {
+                if (size.compareAndSet(num, num + 1)) {
+                    break;
+                }
+            } else if (overflowing || System.nanoTime() - deadline >= 0) {
+                size.incrementAndGet();
+                if (!overflowing) {
+                    overflowing = true;
+                    System.err.println("Recording queue is full: " + num + " tasks are pending");
+                }
+                break;
+            } else {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        
+        tasks.offer(task);
+        LockSupport.unpark(thread);
+    }
+    
+    /**
+     * Performs pending tasks in batches until this queue is stopped.
+     */
+    private void consume() {
+        List<Runnable> batch = new ArrayList<Runnable>(BATCH_SIZE);
+        while (true) {
+            Runnable task;
+            while (batch.size() < BATCH_SIZE && (task = tasks.poll()) != null) {
+                batch.add(task);
+            }
+            
+            if (batch.size() == 0) {
+                overflowing = false;
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, PARK_NANOS);
+                continue;
+            }
+            
+            for (Runnable t : batch) {
+                try {
+                    t.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            size.addAndGet(-batch.size());
+            batch.clear();
+            
+            try {
+                batchHandler.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
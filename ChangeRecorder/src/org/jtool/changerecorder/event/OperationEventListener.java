@@ -8,6 +8,9 @@ package org.jtool.changerecorder.event;
 
 /**
  * Defines the listener interface for receiving an operation event.
+ * Events are sent on the thread that stores recorded operations, not on the UI thread.
+ * A listener must be thread-safe, must return quickly, and must use <code>Display.asyncExec</code>
+ * to access any widget.
  * @author Katsuhisa Maruyama
  */
 public interface OperationEventListener {
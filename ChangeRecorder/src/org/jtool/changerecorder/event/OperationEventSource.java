@@ -8,7 +8,7 @@ package org.jtool.changerecorder.event;
 
 import org.jtool.changerecorder.operation.IOperation;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages a source that send an operation event.
@@ -18,8 +18,9 @@ public class OperationEventSource {
     
     /**
      * The collection of listeners that receives operation events.
+     * Events may be sent on a thread other than the one that adds or removes listeners.
      */
-    private List<OperationEventListener> listeners = new ArrayList<OperationEventListener>();
+    private List<OperationEventListener> listeners = new CopyOnWriteArrayList<OperationEventListener>();
     
     /**
      * Creates an object that performs as an event source.
@@ -45,6 +46,7 @@ public class OperationEventSource {
     
     /**
      * Sends an operation event to all the listeners.
+     * The listeners are invoked on the calling thread, which is not the UI thread while operations are being recorded.
      * @param evt the operation event.
      */
     protected void notify(IOperation op) {
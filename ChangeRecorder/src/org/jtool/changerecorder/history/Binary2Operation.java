@@ -0,0 +1,345 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the binary representation into the operation history.
+ * @author Katsuhisa Maruyama
+ */
+public class Binary2Operation {
+    
+    /**
+     * The stream that provides the binary representation.
+     */
+    private DataInputStream in;
+    
+    /**
+     * The strings in the string table, where the first one is <code>null</code>.
+     */
+    private List<String> strings = new ArrayList<String>();
+    
+    /**
+     * The time of the operation read last.
+     */
+    private long lastTime = 0;
+    
+    /**
+     * Creates an object that reads the binary representation.
+     * @param in the stream that provides the binary representation
+     */
+    private Binary2Operation(InputStream in) {
+        this.in = new DataInputStream(in);
+        strings.add(null);
+    }
+    
+    /**
+     * Reads the operation history from a binary file.
+     * @param path the full path indicating the binary file to be read
+     * @return the operation history, or <code>null</code> if the file could not be read
+     */
+    public static OperationHistory read(String path) {
+        final List<IOperation> ops = new ArrayList<IOperation>();
+        boolean read = read(path, new OperationHandler() {
+            
+            /**
+             * Collects the read operation.
+             * @param op the read operation
+             */
+            @Override
+            public void handle(IOperation op) {
+                ops.add(op);
+            }
+        });
+        
+        if (read) {
+            return new OperationHistory(ops);
+        }
+        return null;
+    }
+    
+    /**
+     * Reads the operations stored in a binary file one at a time.
+     * @param path the full path indicating the binary file to be read
+     * @param handler the handler that receives the read operations
+     * @return <code>true</code> if the file was successfully read, otherwise <code>false</code>
+     */
+    public static boolean read(String path, OperationHandler handler) {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(path));
+            new Binary2Operation(in).readHistory(handler);
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Read error occurred in " + path + ": " + e.getMessage() + ".");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Converts the binary representation of the operation history into the Java object representation.
+     * @param bytes the binary representation
+     * @return the operation history after the conversion, or <code>null</code> if the representation is invalid
+     */
+    public static OperationHistory convert(byte[] bytes) {
+        final List<IOperation> ops = new ArrayList<IOperation>();
+        try {
+            new Binary2Operation(new ByteArrayInputStream(bytes)).readHistory(new OperationHandler() {
+                
+                /**
+                 * Collects the read operation.
+                 * @param op the read operation
+                 */
+                @Override
+                public void handle(IOperation op) {
+                    ops.add(op);
+                }
+            });
+            return new OperationHistory(ops);
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Read error occurred: " + e.getMessage() + ".");
+        }
+        return null;
+    }
+    
+    /**
+     * Creates an object that converts the operations read from a journal one at a time.
+     * @return the object that converts the operations
+     */
+    public static Binary2Operation createJournalReader() {
+        return new Binary2Operation(new ByteArrayInputStream(new byte[0]));
+    }
+    
+    /**
+     * Converts the binary representation of an operation appended to a journal into the operation.
+     * The representations must be given in the order of their appending, since the strings registered
+     * with the string table and the time of the operation are carried over to the next operation.
+     * @param bytes the binary representation
+     * @return the operation, or <code>null</code> if the representation is invalid
+     */
+    public IOperation convertNext(byte[] bytes) {
+        in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            int num = readVarInt();
+            for (int i = 0; i < num; i++) {
+                strings.add(readText());
+            }
+            return readOperation();
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Read error occurred: " + e.getMessage() + ".");
+        }
+        return null;
+    }
+    
+    /**
+     * Reads the header, the string table and the operations of the operation history.
+     * @param handler the handler that receives the read operations
+     * @throws IOException if an I/O error occurs or the representation is invalid
+     */
+    private void readHistory(OperationHandler handler) throws IOException {
+        if (in.readInt() != BinaryConstants.Magic) {
+            throw new IOException("invalid operation history format");
+        }
+        
+        int version = readVarInt();
+        if (version < 1 || version > BinaryConstants.Version) {
+            throw new IOException("unsupported operation history version " + version);
+        }
+        
+        int num = readVarInt();
+        for (int i = 0; i < num; i++) {
+            strings.add(readText());
+        }
+        
+        int size = readVarInt();
+        for (int i = 0; i < size; i++) {
+            handler.handle(readOperation());
+        }
+    }
+    
+    /**
+     * Reads an operation from the binary representation.
+     * @return the operation
+     * @throws IOException if an I/O error occurs or the representation is invalid
+     */
+    private IOperation readOperation() throws IOException {
+        int tag = readVarInt();
+        if (tag == BinaryConstants.NormalOperationTag) {
+            long time = readTime();
+            int seq = readSignedVarInt();
+            String file = readString();
+            String author = readString();
+            int offset = readSignedVarInt();
+            String action = readString();
+            String insText = readText();
+            String delText = readText();
+            return new NormalOperation(time, seq, file, author, offset, insText, delText, NormalOperation.Type.parseType(action));
+            
+        } else if (tag == BinaryConstants.CompoundOperationTag) {
+            long time = readTime();
+            String author = readString();
+            String label = readString();
+            
+            int size = readVarInt();
+            List<IOperation> ops = new ArrayList<IOperation>(size);
+            for (int i = 0; i < size; i++) {
+                ops.add(readOperation());
+            }
+            return new CompoundOperation(time, author, ops, label);
+            
+        } else if (tag == BinaryConstants.CopyOperationTag) {
+            long time = readTime();
+            String file = readString();
+            String author = readString();
+            int offset = readSignedVarInt();
+            String copiedText = readText();
+            return new CopyOperation(time, file, author, offset, copiedText);
+            
+        } else if (tag == BinaryConstants.FileOperationTag) {
+            long time = readTime();
+            String file = readString();
+            String author = readString();
+            String action = readString();
+            String code = readText();
+            return new FileOperation(time, file, author, FileOperation.Type.parseType(action), code);
+            
+        } else if (tag == BinaryConstants.FileSnapshotOperationTag) {
+            long time = readTime();
+            String file = readString();
+            String author = readString();
+            String action = readString();
+            FileOperation op = new FileOperation(time, file, author, FileOperation.Type.parseType(action), null);
+            op.setSnapshot(readString());
+            return op;
+            
+        } else if (tag == BinaryConstants.MenuOperationTag) {
+            long time = readTime();
+            String file = readString();
+            String author = readString();
+            String label = readString();
+            return new MenuOperation(time, file, author, label);
+            
+        } else if (tag == BinaryConstants.ResourceOperationTag) {
+            long time = readTime();
+            String file = readString();
+            String author = readString();
+            String action = readString();
+            String target = readString();
+            String apath = readString();
+            return new ResourceOperation(time, file, author,
+              ResourceOperation.Type.parseType(action), ResourceOperation.Target.parseType(target), apath);
+        }
+        
+        throw new IOException("unknown operation tag " + tag);
+    }
+    
+    /**
+     * Reads the time of an operation stored as the difference from the time read last.
+     * @return the time
+     * @throws IOException if an I/O error occurs
+     */
+    private long readTime() throws IOException {
+        long value = readVarLong();
+        long delta = (value >>> 1) ^ -(value & 1);
+        lastTime = lastTime + delta;
+        return lastTime;
+    }
+    
+    /**
+     * Reads a string through its index in the string table.
+     * @return the string, which might be <code>null</code>
+     * @throws IOException if an I/O error occurs or the index is invalid
+     */
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("invalid string index " + index);
+        }
+        return strings.get(index);
+    }
+    
+    /**
+     * Reads a text in UTF-8 preceded by its length plus one, where zero means <code>null</code>.
+     * @return the text, which might be <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private String readText() throws IOException {
+        int len = readVarInt();
+        if (len == 0) {
+            return null;
+        }
+        
+        byte[] bytes = new byte[len - 1];
+        in.readFully(bytes);
+        return new String(bytes, Operation2Binary.UTF8);
+    }
+    
+    /**
+     * Reads a non-negative integer stored as a variable-length quantity.
+     * @return the integer value
+     * @throws IOException if an I/O error occurs or the value is too large
+     */
+    private int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("invalid integer value " + value);
+        }
+        return (int)value;
+    }
+    
+    /**
+     * Reads a signed integer stored as a variable-length quantity.
+     * @return the integer value
+     * @throws IOException if an I/O error occurs
+     */
+    private int readSignedVarInt() throws IOException {
+        int value = (int)readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Reads a long value stored as a variable-length quantity, seven bits per byte.
+     * @return the long value
+     * @throws IOException if an I/O error occurs or the value is too long
+     */
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift = shift + 7) {
+            int b = in.readUnsignedByte();
+            value = value | ((long)(b & 0x7F) << shift);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable-length quantity");
+    }
+}
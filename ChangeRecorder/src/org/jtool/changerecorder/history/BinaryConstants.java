@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+/**
+ * The constants appearing in binary files that store information on the operation history.
+ * A binary file consists of the magic number, the format version, a string table holding
+ * file paths, authors, labels and action names, and the operations. Integers are written as
+ * variable-length quantities, and the time of each operation is stored as the difference from
+ * the time of the operation written just before it. A file operation whose code is stored in
+ * a snapshot store has its own tag and holds the content hash of the code instead (since version 2).
+ * A journal file starts with its own magic number and the format version, and each of its records
+ * holds the strings that the operation adds to the string table shared in the journal, and the operation.
+ * @author Katsuhisa Maruyama
+ */
+public interface BinaryConstants {
+    
+    static final int Magic = 0x4F504842;
+    static final int Version = 2;
+    static final int JournalMagic = 0x4F504A4C;
+    
+    static final int NormalOperationTag = 1;
+    static final int CompoundOperationTag = 2;
+    static final int CopyOperationTag = 3;
+    static final int FileOperationTag = 4;
+    static final int MenuOperationTag = 5;
+    static final int ResourceOperationTag = 6;
+    static final int FileSnapshotOperationTag = 7;
+    
+    static final int NullString = 0;
+}
@@ -9,9 +9,12 @@ package org.jtool.changerecorder.history;
 import org.jtool.changerecorder.operation.CompoundOperation;
 import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.util.CodeBuffer;
+import java.util.List;
 
 /**
  * Applies an operation into code.
+ * The code is modified in place in a buffer, so that a run of operations can be applied without copying the whole code for each of them.
  * @author Takayuki Omori
  * @author Katsuhisa Maruyama
  */
@@ -24,173 +27,99 @@ public class CodeRestorer {
      * @return the resulting code after the application
      */
     public static String applyOperation(String preCode, IOperation op) {
-        if (op instanceof NormalOperation) {
-            return applyOperation(preCode, (NormalOperation)op);
-            
-        } else if (op instanceof CompoundOperation) {
-            return applyOperation(preCode, (CompoundOperation)op);
+        CodeBuffer buf = new CodeBuffer(preCode);
+        if (!applyOperation(buf, op)) {
+            return null;
         }
-        return preCode;
+        return buf.toString();
     }
     
     /**
-     * Applies a specified normal operation into given code.
+     * Obtains the code after the application of a given operation into given code reversely.
      * @param preCode the code before the application
      * @param op the operation to be applied
      * @return the resulting code after the application
      */
-    public static String applyOperation(String preCode, NormalOperation op) {
-        StringBuilder postCode = new StringBuilder(preCode);
-        
-        if (hasDeletionMismatch(postCode, op)) {
+    public static String applyOperationReversely(String preCode, IOperation op) {
+        CodeBuffer buf = new CodeBuffer(preCode);
+        if (!applyOperationReversely(buf, op)) {
             return null;
         }
-        
-        int start = op.getStart();
-        int end = start + op.getDeletedText().length();
-        String itext = op.getInsertedText();
-        postCode.replace(start, end, itext);
-        return postCode.toString();
+        return buf.toString();
     }
     
     /**
-     * Applies a given compound operation into given code.
-     * @param preCode the code before the application
-     * @param cop the operation to be applied
-     * @return the resulting code after the application
+     * Applies a given operation into code stored in a buffer.
+     * @param buf the buffer storing the code, which is modified in place
+     * @param op the operation to be applied
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if a mismatch was found
      */
-    public static String applyOperation(String preCode, CompoundOperation cop) {
-        String postCode = null;
+    public static boolean applyOperation(CodeBuffer buf, IOperation op) {
+        if (op instanceof NormalOperation) {
+            return applyOperation(buf, (NormalOperation)op);
         
-        for (IOperation op : cop.getLeaves()) {
-            if (op instanceof CompoundOperation) {
-                applyOperation(preCode, (CompoundOperation)op);
-                
-            } else if (op instanceof NormalOperation) {
-                postCode = applyOperation(preCode, (NormalOperation)op);
-                if (postCode == null) {
-                    return null;
+        } else if (op instanceof CompoundOperation) {
+            for (IOperation o : ((CompoundOperation)op).getLeaves()) {
+                if (!applyOperation(buf, o)) {
+                    return false;
                 }
-                preCode = postCode;
             }
         }
-        return postCode;
+        return true;
     }
     
     /**
-     * Obtains the code after the application of a given operation into given code reversely.
-     * @param preCode the code before the application
+     * Applies a given normal operation into code stored in a buffer.
+     * @param buf the buffer storing the code, which is modified in place
      * @param op the operation to be applied
-     * @return the resulting code after the application
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if a mismatch was found
      */
-    public static String applyOperationReversely(String preCode, IOperation op) {
-        if (op instanceof NormalOperation) {
-            return applyOperationReversely(preCode, (NormalOperation)op);
-            
-        } else if (op instanceof CompoundOperation) {
-            return applyOperationReversely(preCode, (CompoundOperation)op);
-            
-        }
-        return preCode;
-    }
-    
-    /**
-     * Applies a specified normal operation into given code reversely.
-     * @param preCode the code before the application
-     * @param op the operation to be applied
-     * @return the resulting code after the application
-     */
-    public static String applyOperationReversely(String preCode, NormalOperation op) {
-        StringBuilder postCode = new StringBuilder(preCode);
-        
-        if (hasInsertionMismatch(postCode, op)) {
-            return null;
-        }
-        
-        int start = op.getStart();
-        int end = start + op.getDeletedText().length();
+    private static boolean applyOperation(CodeBuffer buf, NormalOperation op) {
         String dtext = op.getDeletedText();
-        postCode.replace(start, end, dtext);
-        return postCode.toString();
-    }
-    
-    /**
-     * Applies a given compound operation into given code reversely.
-     * @param preCode the code before the application
-     * @param cop the operation to be applied
-     * @return the resulting code after the application
-     */
-    public static String applyOperationReversely(String preCode, CompoundOperation cop) {
-        String postCode = null;
-        
-        for (IOperation op : cop.getLeaves()) {
-            if (op instanceof CompoundOperation) {
-                applyOperationReversely(preCode, (CompoundOperation)op);
-                
-            } else if (op instanceof NormalOperation) {
-                postCode = applyOperationReversely(preCode, (NormalOperation)op);
-                if (postCode == null) {
-                    return null;
-                }
-                preCode = postCode;
-            }
+        int start = op.getStart();
+        if (!buf.matches(start, dtext)) {
+            return false;
         }
-        return postCode;
+    
+        buf.replace(start, start + dtext.length(), op.getInsertedText());
+        return true;
     }
     
     /**
-     * Tests if the deletion derives any mismatch.
-     * @param code the code before the application
+     * Applies a given operation into code stored in a buffer reversely.
+     * @param buf the buffer storing the code, which is modified in place
      * @param op the operation to be applied
-     * @return <code>true</code> if a mismatch exists, otherwise <code>false</code>
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if a mismatch was found
      */
-    private static boolean hasDeletionMismatch(StringBuilder code, NormalOperation op) {
-        String dtext = op.getDeletedText();
-        int start = op.getStart();
-        int end = start + dtext.length();
+    public static boolean applyOperationReversely(CodeBuffer buf, IOperation op) {
+        if (op instanceof NormalOperation) {
+            return applyOperationReversely(buf, (NormalOperation)op);
         
-        if (dtext.length() > 0) {
-            String rtext = code.substring(start, end);
-            if (rtext != null && rtext.compareTo(dtext) != 0) {
-                
-                for (int i = 0; i < rtext.length(); i++) {
-                    if (rtext.charAt(i) == dtext.charAt(i)) {
-                        System.out.println(((int)rtext.charAt(i)) + " == " + ((int)dtext.charAt(i)));
-                    } else {
-                        System.out.println(((int)rtext.charAt(i)) + " != " + ((int)dtext.charAt(i)));
-                    }
+        } else if (op instanceof CompoundOperation) {
+            List<? extends IOperation> ops = ((CompoundOperation)op).getLeaves();
+            for (int i = ops.size() - 1; i >= 0; i--) {
+                if (!applyOperationReversely(buf, ops.get(i))) {
+                    return false;
                 }
-                return true;
             }
         }
-        return false;
+        return true;
     }
     
     /**
-     * Tests if the deletion derives any mismatch.
-     * @param code the code before the application
+     * Applies a given normal operation into code stored in a buffer reversely.
+     * @param buf the buffer storing the code, which is modified in place
      * @param op the operation to be applied
-     * @return <code>true</code> if a mismatch exists, otherwise <code>false</code>
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if a mismatch was found
      */
-    private static boolean hasInsertionMismatch(StringBuilder code, NormalOperation op) {
-        String itext = op.getDeletedText();
+    private static boolean applyOperationReversely(CodeBuffer buf, NormalOperation op) {
+        String itext = op.getInsertedText();
         int start = op.getStart();
-        int end = start + itext.length();
-        
-        if (itext.length() > 0) {
-            String rtext = code.substring(start, end);
-            if (rtext != null && rtext.compareTo(itext) != 0) {
-                
-                for (int i = 0; i < rtext.length(); i++) {
-                    if (rtext.charAt(i) == itext.charAt(i)) {
-                        System.out.println(((int)rtext.charAt(i)) + " == " + ((int)itext.charAt(i)));
-                    } else {
-                        System.out.println(((int)rtext.charAt(i)) + " != " + ((int)itext.charAt(i)));
-                    }
-                }
-                return true;
-            }
+        if (!buf.matches(start, itext)) {
+            return false;
         }
-        return false;
+        
+        buf.replace(start, start + itext.length(), op.getDeletedText());
+        return true;
     }
 }
@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Upgrades history files in the XML representation into the binary representation.
+ * Each XML file is replaced with a binary file having the same base name after
+ * the binary file has been read back and found to contain the same operations, which are compared field by field.
+ * The XML file is kept and the binary file is deleted if any operation differs.
+ * @author Katsuhisa Maruyama
+ */
+public class HistoryConverter {
+    
+    /**
+     * Converts all the XML history files existing under a directory.
+     * @param path the path of the directory or a history file
+     * @return the number of the converted files
+     */
+    public static int convert(String path) {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            int num = 0;
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File f : children) {
+                    num = num + convert(f.getPath());
+                }
+            }
+            return num;
+        }
+        
+        if (file.isFile() && path.endsWith(OperationHistory.XML_FILE_EXT)) {
+            return convertFile(path) ? 1 : 0;
+        }
+        return 0;
+    }
+    
+    /**
+     * Converts an XML history file into a binary history file.
+     * @param path the path of the XML history file
+     * @return <code>true</code> if the file was converted, otherwise <code>false</code>
+     */
+    private static boolean convertFile(String path) {
+        OperationHistory history = OperationHistory.read(path);
+        if (history == null) {
+            System.err.println("Cannot convert " + path);
+            return false;
+        }
+        
+        String bpath = path.substring(0, path.length() - OperationHistory.XML_FILE_EXT.length()) + OperationHistory.BINARY_FILE_EXT;
+        if (history.size() == 0 || new File(bpath).exists() || !Operation2Binary.write(history, bpath)) {
+            return false;
+        }
+        
+        OperationHistory bhistory = Binary2Operation.read(bpath);
+        int idx = (bhistory != null) ? findMismatch(history.getOperations(), bhistory.getOperations()) : 0;
+        if (idx >= 0) {
+            System.err.println("Cannot verify " + bpath + ": the operation at " + idx + " differs");
+            new File(bpath).delete();
+            return false;
+        }
+        
+        return new File(path).delete();
+    }
+    
+    /**
+     * Finds the first operation that differs between two sequences of operations.
+     * The operations are compared field by field, including the operations contained in compound operations.
+     * @param ops the original operations
+     * @param rops the operations read back
+     * @return the index of the first differing operation, or <code>-1</code> if all the operations are the same
+     */
+    static int findMismatch(List<IOperation> ops, List<IOperation> rops) {
+        int size = Math.min(ops.size(), rops.size());
+        for (int idx = 0; idx < size; idx++) {
+            IOperation op = ops.get(idx);
+            IOperation rop = rops.get(idx);
+            if (op.getOperationType() != rop.getOperationType() || !op.equals(rop)) {
+                return idx;
+            }
+        }
+        
+        if (ops.size() != rops.size()) {
+            return size;
+        }
+        return -1;
+    }
+    
+    /**
+     * Converts the XML history files under directories given as the arguments.
+     * @param args the paths of the directories
+     */
+    public static void main(String[] args) {
+        for (String path : args) {
+            int num = convert(path);
+            System.out.println(path + ": " + num + " history files converted");
+        }
+    }
+}
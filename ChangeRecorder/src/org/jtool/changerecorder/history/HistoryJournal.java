@@ -0,0 +1,340 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.util.FileStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Appends operations to a journal file as soon as they are stored.
+ * The journal file starts with its header, and each record consists of the length of its payload
+ * followed by the payload, which is the binary representation of a single operation.
+ * The string table is shared by all the records, so that a record holds only the strings
+ * that are used first by its operation. The journal is flushed after each
+ * batch of operations and synchronized with the storage device at most once per {@link #SYNC_INTERVAL}.
+ * A record truncated by a crash is ignored when the journal is read.
+ * A journal is renamed to a compacting file while its operations are written into a history file,
+ * so that an interrupted compaction can be redone without duplicating the operations.
+ * @author Katsuhisa Maruyama
+ */
+public class HistoryJournal {
+    
+    /**
+     * The name of the directory that stores journal files, which is placed in the history directory.
+     */
+    public static final String JOURNAL_DIR = "journal";
+    
+    /**
+     * The extension of journal files.
+     */
+    public static final String JOURNAL_EXT = ".journal";
+    
+    /**
+     * The extension of journal files whose operations are being written into a history file.
+     */
+    public static final String COMPACTING_EXT = ".compacting";
+    
+    /**
+     * The minimum time in milliseconds between two synchronizations with the storage device.
+     */
+    public static final long SYNC_INTERVAL = 1000;
+    
+    /**
+     * The path of the journal file.
+     */
+    private String path;
+    
+    /**
+     * The stream of the journal file.
+     */
+    private FileOutputStream fout;
+    
+    /**
+     * The buffered stream that writes records.
+     */
+    private DataOutputStream out;
+    
+    /**
+     * The time when the journal was synchronized last.
+     */
+    private long lastSyncTime = 0;
+    
+    /**
+     * A flag indicating if records were written after the last synchronization.
+     */
+    private boolean unsynced = false;
+    
+    /**
+     * The number of bytes in the journal file.
+     */
+    private long size = 0;
+    
+    /**
+     * The object that converts the appended operations into their binary representations.
+     */
+    private Operation2Binary writer;
+    
+    /**
+     * Creates a journal.
+     * @param path the path of the journal file
+     */
+    public HistoryJournal(String path) {
+        this.path = path;
+    }
+    
+    /**
+     * Returns the path of the journal file.
+     * @return the file path
+     */
+    public String getPath() {
+        return path;
+    }
+    
+    /**
+     * Returns the number of bytes in the journal file, including the records not written yet.
+     * @return the size of the journal
+     */
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * Opens a new journal file for appending.
+     * @return <code>true</code> if the file was successfully opened, otherwise <code>false</code>
+     */
+    public boolean open() {
+        FileStream.makeDir(path);
+        if (new File(path).exists()) {
+            System.err.println("Cannot open the existing journal " + path);
+            return false;
+        }
+        
+        try {
+            fout = new FileOutputStream(path);
+            out = new DataOutputStream(new BufferedOutputStream(fout));
+            out.writeInt(BinaryConstants.JournalMagic);
+            out.writeInt(BinaryConstants.Version);
+            size = 8;
+            writer = Operation2Binary.createJournalWriter();
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("Cannot open the journal " + path + ": " + e.getMessage());
+            close();
+        }
+        return false;
+    }
+    
+    /**
+     * Appends an operation to the journal.
+     * @param op the operation to be appended
+     */
+    public void append(IOperation op) {
+        if (out == null) {
+            return;
+        }
+        
+        byte[] bytes = writer.convertNext(op);
+        if (bytes == null) {
+            return;
+        }
+        
+        try {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            size = size + 4 + bytes.length;
+            unsynced = true;
+            
+        } catch (IOException e) {
+            System.err.println("Cannot write the journal " + path + ": " + e.getMessage());
+            close();
+        }
+    }
+    
+    /**
+     * Writes the buffered records into the journal file, and synchronizes the file with
+     * the storage device if the synchronization interval has elapsed.
+     */
+    public void flush() {
+        if (out == null) {
+            return;
+        }
+        
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Cannot write the journal " + path + ": " + e.getMessage());
+        }
+        
+        if (unsynced && System.currentTimeMillis() - lastSyncTime >= SYNC_INTERVAL) {
+            sync();
+        }
+    }
+    
+    /**
+     * Writes the buffered records and forces them to the storage device.
+     */
+    public void sync() {
+        if (out == null) {
+            return;
+        }
+        
+        try {
+            out.flush();
+            fout.getFD().sync();
+            lastSyncTime = System.currentTimeMillis();
+            unsynced = false;
+        } catch (IOException e) {
+            System.err.println("Cannot synchronize the journal " + path + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Synchronizes and closes the journal file.
+     */
+    public void close() {
+        sync();
+        try {
+            if (out != null) {
+                out.close();
+            } else if (fout != null) {
+                fout.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot close the journal " + path + ": " + e.getMessage());
+        }
+        out = null;
+        fout = null;
+        writer = null;
+    }
+    
+    /**
+     * Deletes the journal file.
+     * @return <code>true</code> if the file was successfully deleted, otherwise <code>false</code>
+     */
+    public boolean delete() {
+        close();
+        return new File(path).delete();
+    }
+    
+    /**
+     * Reads all the operations recorded in a journal file.
+     * The records following a broken one are ignored since they depend on the strings of the preceding records.
+     * @param path the path of the journal file
+     * @return the operation history storing the read operations
+     */
+    public static OperationHistory read(String path) {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        DataInputStream in = null;
+        try {
+            long remaining = new File(path).length() - 8;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+            if (remaining < 0 || in.readInt() != BinaryConstants.JournalMagic || in.readInt() != BinaryConstants.Version) {
+                System.err.println("Cannot read the journal " + path + " of unknown format");
+                return new OperationHistory(ops);
+            }
+            
+            Binary2Operation reader = Binary2Operation.createJournalReader();
+            while (true) {
+                byte[] payload;
+                try {
+                    int len = in.readInt();
+                    remaining = remaining - 4;
+                    if (len < 0 || len > remaining) {
+                        break;
+                    }
+                    payload = new byte[len];
+                    in.readFully(payload);
+                    remaining = remaining - len;
+                } catch (EOFException e) {
+                    break;
+                }
+                
+                IOperation op = reader.convertNext(payload);
+                if (op == null) {
+                    System.err.println("Skips a broken record and the following ones in the journal " + path);
+                    break;
+                }
+                ops.add(op);
+            }
+            
+        } catch (IOException e) {
+            System.err.println("Cannot read the journal " + path + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        
+        return new OperationHistory(ops);
+    }
+    
+    /**
+     * Collects journal files existing in a directory.
+     * @param dpath the path of the directory storing the journal files
+     * @return the paths of the journal files in the order of their names
+     */
+    public static List<String> getJournalPaths(String dpath) {
+        return getPaths(dpath, JOURNAL_EXT);
+    }
+    
+    /**
+     * Collects compacting files existing in a directory, which were left by interrupted compactions.
+     * @param dpath the path of the directory storing the compacting files
+     * @return the paths of the compacting files in the order of their names
+     */
+    public static List<String> getCompactingPaths(String dpath) {
+        return getPaths(dpath, COMPACTING_EXT);
+    }
+    
+    /**
+     * Collects files with a given extension existing in a directory.
+     * @param dpath the path of the directory storing the files
+     * @param ext the extension of the files
+     * @return the paths of the files in the order of their names
+     */
+    private static List<String> getPaths(String dpath, final String ext) {
+        List<String> paths = new ArrayList<String>();
+        File[] files = new File(dpath).listFiles(new FilenameFilter() {
+            
+            /**
+             * Tests if a file has the extension.
+             * @param dir the directory in which the file was found
+             * @param name the name of the file
+             * @return <code>true</code> if the file has the extension, otherwise <code>false</code>
+             */
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(ext);
+            }
+        });
+        
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                paths.add(file.getPath());
+            }
+        }
+        return paths;
+    }
+}
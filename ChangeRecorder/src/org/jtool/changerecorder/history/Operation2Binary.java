@@ -0,0 +1,427 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+import org.jtool.changerecorder.util.FileStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts the operation history into the binary representation.
+ * @author Katsuhisa Maruyama
+ */
+public class Operation2Binary {
+    
+    /**
+     * The character set of strings and texts.
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The stream that receives the binary representation.
+     */
+    private DataOutputStream out;
+    
+    /**
+     * The indexes of strings in the string table.
+     */
+    private Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+    
+    /**
+     * The strings in the string table in the order of their indexes.
+     */
+    private List<String> strings = new ArrayList<String>();
+    
+    /**
+     * The number of strings in the string table that were already written.
+     */
+    private int writtenStrings = 0;
+    
+    /**
+     * The time of the operation written last.
+     */
+    private long lastTime = 0;
+    
+    /**
+     * The buffer that receives the binary representation of each operation appended to a journal.
+     */
+    private ByteArrayOutputStream record = null;
+    
+    /**
+     * Creates an object that writes the binary representation.
+     * @param out the stream that receives the binary representation
+     */
+    private Operation2Binary(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+    
+    /**
+     * Writes the binary representation of the operation history into a file.
+     * @param history the operation history to be written
+     * @param path the full path indicating the file which the contents are written into
+     * @return <code>true</code> if the operation history was successfully written, otherwise <code>false</code>
+     */
+    public static boolean write(OperationHistory history, String path) {
+        FileStream.makeDir(path);
+        
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(path));
+            new Operation2Binary(out).writeHistory(history);
+            out.close();
+            out = null;
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Write error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Converts the Java object representation of the operation history into the binary representation.
+     * @param history the operation history to be converted
+     * @return the binary representation
+     */
+    public static byte[] convert(OperationHistory history) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new Operation2Binary(bytes).writeHistory(history);
+        } catch (IOException e) {
+            System.err.println("Binary: Write error occurred: " + e.getMessage() + ".");
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Creates an object that converts operations appended to a journal one at a time.
+     * The string table and the time of the last operation are shared by all the operations,
+     * so that each operation carries only the strings that it registers with the table first.
+     * @return the object that converts the operations
+     */
+    public static Operation2Binary createJournalWriter() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Operation2Binary writer = new Operation2Binary(bytes);
+        writer.record = bytes;
+        return writer;
+    }
+    
+    /**
+     * Converts an operation appended to a journal into its binary representation, which consists of
+     * the strings newly registered with the string table and the operation.
+     * The representations must be read in the order of their conversion.
+     * @param op the operation to be converted
+     * @return the binary representation, or <code>null</code> if the operation has no binary representation
+     */
+    public byte[] convertNext(IOperation op) {
+        if (record == null || !isWritable(op)) {
+            return null;
+        }
+        
+        record.reset();
+        try {
+            collectStrings(op);
+            writeVarInt(strings.size() - writtenStrings);
+            for (int idx = writtenStrings; idx < strings.size(); idx++) {
+                writeText(strings.get(idx));
+            }
+            writtenStrings = strings.size();
+            
+            writeOperation(op);
+            out.flush();
+            
+        } catch (IOException e) {
+            System.err.println("Binary: Write error occurred: " + e.getMessage() + ".");
+            return null;
+        }
+        return record.toByteArray();
+    }
+    
+    /**
+     * Writes the header, the string table and the operations of the operation history.
+     * @param history the operation history to be written
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeHistory(OperationHistory history) throws IOException {
+        for (IOperation op : history.getOperations()) {
+            collectStrings(op);
+        }
+        
+        out.writeInt(BinaryConstants.Magic);
+        writeVarInt(BinaryConstants.Version);
+        
+        writeVarInt(strings.size());
+        for (String str : strings) {
+            writeText(str);
+        }
+        
+        int size = 0;
+        for (IOperation op : history.getOperations()) {
+            if (isWritable(op)) {
+                size++;
+            }
+        }
+        
+        writeVarInt(size);
+        for (IOperation op : history.getOperations()) {
+            if (isWritable(op)) {
+                writeOperation(op);
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Tests if an operation has its binary representation.
+     * @param op the operation
+     * @return <code>true</code> if the operation can be written, otherwise <code>false</code>
+     */
+    private static boolean isWritable(IOperation op) {
+        if (op == null) {
+            return false;
+        }
+        
+        IOperation.Type type = op.getOperationType();
+        return type == IOperation.Type.NORMAL || type == IOperation.Type.COMPOUND ||
+               type == IOperation.Type.COPY || type == IOperation.Type.FILE ||
+               type == IOperation.Type.MENU || type == IOperation.Type.RESOURCE;
+    }
+    
+    /**
+     * Registers strings of an operation with the string table.
+     * @param op the operation
+     */
+    private void collectStrings(IOperation op) {
+        if (!isWritable(op)) {
+            return;
+        }
+        
+        addString(op.getAuthor());
+        if (op.getOperationType() == IOperation.Type.NORMAL) {
+            NormalOperation nop = (NormalOperation)op;
+            addString(nop.getFilePath());
+            addString(nop.getActionType().toString());
+            
+        } else if (op.getOperationType() == IOperation.Type.COMPOUND) {
+            CompoundOperation cop = (CompoundOperation)op;
+            addString(cop.getLabel());
+            for (IOperation o : cop.getLeaves()) {
+                collectStrings(o);
+            }
+            
+        } else if (op.getOperationType() == IOperation.Type.COPY) {
+            addString(op.getFilePath());
+            
+        } else if (op.getOperationType() == IOperation.Type.FILE) {
+            FileOperation fop = (FileOperation)op;
+            addString(fop.getFilePath());
+            addString(fop.getActionType().toString());
+            if (fop.getCode() == null) {
+                addString(fop.getSnapshot());
+            }
+            
+        } else if (op.getOperationType() == IOperation.Type.MENU) {
+            MenuOperation mop = (MenuOperation)op;
+            addString(mop.getFilePath());
+            addString(mop.getLabel());
+            
+        } else if (op.getOperationType() == IOperation.Type.RESOURCE) {
+            ResourceOperation rop = (ResourceOperation)op;
+            addString(rop.getFilePath());
+            addString(rop.getActionType().toString());
+            addString(rop.getTarget().toString());
+            addString(rop.getIdenticalPath());
+        }
+    }
+    
+    /**
+     * Registers a string with the string table.
+     * @param str the string
+     */
+    private void addString(String str) {
+        if (str != null && !stringIndexes.containsKey(str)) {
+            strings.add(str);
+            stringIndexes.put(str, strings.size());
+        }
+    }
+    
+    /**
+     * Writes the binary representation of an operation.
+     * @param op the operation
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeOperation(IOperation op) throws IOException {
+        if (op.getOperationType() == IOperation.Type.NORMAL) {
+            NormalOperation nop = (NormalOperation)op;
+            writeVarInt(BinaryConstants.NormalOperationTag);
+            writeTime(nop.getTime());
+            writeSignedVarInt(nop.getSequenceNumber());
+            writeString(nop.getFilePath());
+            writeString(nop.getAuthor());
+            writeSignedVarInt(nop.getStart());
+            writeString(nop.getActionType().toString());
+            writeText(nop.getInsertedText());
+            writeText(nop.getDeletedText());
+            
+        } else if (op.getOperationType() == IOperation.Type.COMPOUND) {
+            CompoundOperation cop = (CompoundOperation)op;
+            writeVarInt(BinaryConstants.CompoundOperationTag);
+            writeTime(cop.getTime());
+            writeString(cop.getAuthor());
+            writeString(cop.getLabel());
+            
+            List<IOperation> ops = new ArrayList<IOperation>();
+            for (IOperation o : cop.getLeaves()) {
+                if (isWritable(o)) {
+                    ops.add(o);
+                }
+            }
+            writeVarInt(ops.size());
+            for (IOperation o : ops) {
+                writeOperation(o);
+            }
+            
+        } else if (op.getOperationType() == IOperation.Type.COPY) {
+            CopyOperation cop = (CopyOperation)op;
+            writeVarInt(BinaryConstants.CopyOperationTag);
+            writeTime(cop.getTime());
+            writeString(cop.getFilePath());
+            writeString(cop.getAuthor());
+            writeSignedVarInt(cop.getStart());
+            writeText(cop.getCopiedText());
+            
+        } else if (op.getOperationType() == IOperation.Type.FILE) {
+            FileOperation fop = (FileOperation)op;
+            if (fop.getCode() == null && fop.getSnapshot() != null) {
+                writeVarInt(BinaryConstants.FileSnapshotOperationTag);
+            } else {
+                writeVarInt(BinaryConstants.FileOperationTag);
+            }
+            writeTime(fop.getTime());
+            writeString(fop.getFilePath());
+            writeString(fop.getAuthor());
+            writeString(fop.getActionType().toString());
+            if (fop.getCode() == null && fop.getSnapshot() != null) {
+                writeString(fop.getSnapshot());
+            } else {
+                writeText(fop.getCode());
+            }
+            
+        } else if (op.getOperationType() == IOperation.Type.MENU) {
+            MenuOperation mop = (MenuOperation)op;
+            writeVarInt(BinaryConstants.MenuOperationTag);
+            writeTime(mop.getTime());
+            writeString(mop.getFilePath());
+            writeString(mop.getAuthor());
+            writeString(mop.getLabel());
+            
+        } else if (op.getOperationType() == IOperation.Type.RESOURCE) {
+            ResourceOperation rop = (ResourceOperation)op;
+            writeVarInt(BinaryConstants.ResourceOperationTag);
+            writeTime(rop.getTime());
+            writeString(rop.getFilePath());
+            writeString(rop.getAuthor());
+            writeString(rop.getActionType().toString());
+            writeString(rop.getTarget().toString());
+            writeString(rop.getIdenticalPath());
+        }
+    }
+    
+    /**
+     * Writes the time of an operation as the difference from the time written last.
+     * @param time the time
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeTime(long time) throws IOException {
+        long delta = time - lastTime;
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        lastTime = time;
+    }
+    
+    /**
+     * Writes the index of a string in the string table.
+     * @param str the string, which might be <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeString(String str) throws IOException {
+        if (str == null) {
+            writeVarInt(BinaryConstants.NullString);
+        } else {
+            writeVarInt(stringIndexes.get(str));
+        }
+    }
+    
+    /**
+     * Writes a text in UTF-8 preceded by its length plus one, where zero means <code>null</code>.
+     * @param text the text, which might be <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeText(String text) throws IOException {
+        if (text == null) {
+            writeVarInt(0);
+            return;
+        }
+        
+        byte[] bytes = text.getBytes(UTF8);
+        writeVarInt(bytes.length + 1);
+        out.write(bytes);
+    }
+    
+    /**
+     * Writes a non-negative integer as a variable-length quantity.
+     * @param value the integer value
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Writes a signed integer as a variable-length quantity, which keeps small negative values short.
+     * @param value the integer value
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeSignedVarInt(int value) throws IOException {
+        writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Writes a long value as a variable-length quantity, seven bits per byte.
+     * @param value the long value
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value = value >>> 7;
+        }
+        out.writeByte((int)value);
+    }
+}
@@ -171,7 +171,7 @@ public class Operation2Xml {
         opElem.setAttribute(XmlConstantStrings.AuthorAttr, op.getAuthor());
         
         Element copiedElem = doc.createElement(XmlConstantStrings.CopiedElem);
-        copiedElem.appendChild(copiedElem);
+        opElem.appendChild(copiedElem);
         copiedElem.appendChild(doc.createTextNode(op.getCopiedText()));
         
         return opElem;
@@ -190,7 +190,10 @@ public class Operation2Xml {
         opElem.setAttribute(XmlConstantStrings.ActionAttr, String.valueOf(op.getActionType().toString()));
         opElem.setAttribute(XmlConstantStrings.AuthorAttr, op.getAuthor());
         
-        if (op.getCode() != null) {
+        if (op.getCode() == null && op.getSnapshot() != null) {
+            opElem.setAttribute(XmlConstantStrings.SnapshotAttr, op.getSnapshot());
+            
+        } else if (op.getCode() != null) {
             Element codeElem = doc.createElement(XmlConstantStrings.CodeElem);
             opElem.appendChild(codeElem);
             codeElem.appendChild(doc.createTextNode(op.getCode()));
@@ -0,0 +1,22 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+
+/**
+ * Defines the interface for receiving operations one at a time while a history file is read.
+ * @author Katsuhisa Maruyama
+ */
+public interface OperationHandler {
+    
+    /**
+     * Receives an operation read from a history file.
+     * @param op the read operation
+     */
+    public void handle(IOperation op);
+}
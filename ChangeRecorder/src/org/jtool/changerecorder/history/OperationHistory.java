@@ -8,6 +8,7 @@ package org.jtool.changerecorder.history;
 
 import org.jtool.changerecorder.Activator;
 import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.FileOperation;
 import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.util.StringComparator;
 import org.jtool.changerecorder.util.XmlFileStream;
@@ -24,6 +25,16 @@ import java.util.Comparator;
  */
 public class OperationHistory {
     
+    /**
+     * The extension of history files in the XML representation.
+     */
+    public static final String XML_FILE_EXT = ".xml";
+    
+    /**
+     * The extension of history files in the binary representation.
+     */
+    public static final String BINARY_FILE_EXT = ".ophist";
+    
     /**
      * The editing operations correctly stored into the operation history.
      */
@@ -205,20 +216,122 @@ public class OperationHistory {
     
     /**
      * Writes this operation history into its history file.
-     * @param the encoding of a text to be written
+     * The binary representation is used if the path ends with {@link #BINARY_FILE_EXT}, otherwise the XML one.
+     * @param path the path of the history file
+     * @param the encoding of a text to be written, which is used only in the XML representation
      * @return <code>true</code> if the operation history might be successfully written, otherwise <code>false</code>
      */
      public boolean write(String path, String encoding) {
+        return write(path, encoding, false);
+    }
+    
+    /**
+     * Writes this operation history into its history file.
+     * The code of file operations is stored in the snapshot store next to the history file if required,
+     * and the history file holds only the references to the snapshots.
+     * @param path the path of the history file
+     * @param the encoding of a text to be written, which is used only in the XML representation
+     * @param snapshot <code>true</code> if the code of file operations is stored in the snapshot store, otherwise <code>false</code>
+     * @return <code>true</code> if the operation history might be successfully written, otherwise <code>false</code>
+     */
+    public boolean write(String path, String encoding, boolean snapshot) {
         if (size() == 0) {
             return false;
         }
         
-        Document doc = Operation2Xml.convert(this);
+        OperationHistory history = this;
+        if (snapshot) {
+            SnapshotStore store = SnapshotStore.getStore(path);
+            List<IOperation> ops = new ArrayList<IOperation>(operations.size());
+            for (IOperation op : operations) {
+                ops.add(store.toReference(op));
+            }
+            history = new OperationHistory(ops);
+        }
+        
+        if (path.endsWith(BINARY_FILE_EXT)) {
+            return Operation2Binary.write(history, path);
+        }
+        
+        Document doc = Operation2Xml.convert(history);
         XmlFileStream.write(doc, path, encoding);
         
         return true;
     }
     
+    /**
+     * Reads an operation history from a history file in either the XML or the binary representation.
+     * @param path the path of the history file
+     * @return the operation history, or <code>null</code> if the file could not be read
+     */
+    public static OperationHistory read(String path) {
+        final List<IOperation> ops = new ArrayList<IOperation>();
+        boolean read = read(path, new OperationHandler() {
+            
+            /**
+             * Collects the read operation.
+             * @param op the read operation
+             */
+            @Override
+            public void handle(IOperation op) {
+                ops.add(op);
+            }
+        });
+        
+        if (read) {
+            return new OperationHistory(ops);
+        }
+        return null;
+    }
+    
+    /**
+     * Reads the operations stored in a history file one at a time, without keeping the whole file in memory.
+     * The code of file operations referring to snapshots is filled from the snapshot store next to the history file.
+     * The references that cannot be resolved are reported, and such operations are passed with no code.
+     * @param path the path of the history file
+     * @param handler the handler that receives the read operations
+     * @return <code>true</code> if the file was successfully read, otherwise <code>false</code>
+     */
+    public static boolean read(final String path, final OperationHandler handler) {
+        final SnapshotStore store = SnapshotStore.getStore(path);
+        final List<String> unresolved = new ArrayList<String>();
+        OperationHandler resolver = new OperationHandler() {
+            
+            /**
+             * Fills the code of the read operation and passes the operation to the handler.
+             * @param op the read operation
+             */
+            @Override
+            public void handle(IOperation op) {
+                if (!store.resolve(op)) {
+                    unresolved.add(((FileOperation)op).getSnapshot());
+                }
+                handler.handle(op);
+            }
+        };
+        
+        boolean read;
+        if (path.endsWith(BINARY_FILE_EXT)) {
+            read = Binary2Operation.read(path, resolver);
+        } else {
+            read = Xml2OperationStream.read(path, resolver);
+        }
+        
+        if (unresolved.size() > 0) {
+            System.err.println("Cannot resolve the snapshots referred to in " + path + ": " + unresolved);
+        }
+        return read;
+    }
+    
+    /**
+     * Tests if a file is a history file.
+     * @param path the path of the file
+     * @return <code>true</code> if the file has the extension of history files, otherwise <code>false</code>
+     */
+    public static boolean isHistoryFile(String path) {
+        return path.endsWith(XML_FILE_EXT) || path.endsWith(BINARY_FILE_EXT);
+    }
+     
      /**
       * Returns the directory path of the plug-in's workspace, which contains operation history. 
       * @return the the directory into which the operation history is stored
@@ -226,7 +339,7 @@ public class OperationHistory {
      public static String getOperationHistoryDirPath() {
          return Activator.getPlugin().getOperationHistoryDirPath();
      }
-     
+    
     /**
      * Sorts the operations in time order.
      * @param the collection of the operations to be sorted
@@ -0,0 +1,268 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores snapshots of source code addressed by their content hashes.
+ * History files refer to the snapshots instead of embedding the code of file operations,
+ * so that the same code opened and closed many times is stored only once.
+ * The snapshots are placed in a directory next to the history files, each in a compressed file
+ * named after the SHA-1 hash of its content.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotStore {
+    
+    /**
+     * The name of the directory that stores snapshot files, which is placed in the history directory.
+     */
+    public static final String SNAPSHOT_DIR = "snapshots";
+    
+    /**
+     * The extension of snapshot files.
+     */
+    public static final String SNAPSHOT_EXT = ".snapshot";
+    
+    /**
+     * The maximum number of snapshots kept in the cache of each store.
+     */
+    private static final int CACHE_SIZE = 64;
+    
+    /**
+     * The stores that have been used, which are indexed by their directory paths.
+     */
+    private static Map<String, SnapshotStore> stores = new HashMap<String, SnapshotStore>();
+    
+    /**
+     * The directory storing the snapshot files.
+     */
+    private File dir;
+    
+    /**
+     * The recently used snapshots, which map their content hashes to the code.
+     */
+    @SuppressWarnings("serial")
+    private Map<String, String> cache = new LinkedHashMap<String, String>(CACHE_SIZE, 0.75f, true) {
+        
+        /**
+         * Tests if the least recently used snapshot should be removed.
+         * @param eldest the least recently used entry
+         * @return <code>true</code> if the cache overflows, otherwise <code>false</code>
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
+    /**
+     * Creates a store of snapshots.
+     * @param dir the directory storing the snapshot files
+     */
+    private SnapshotStore(File dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * Returns the store of snapshots that history files in the same directory as a given file refer to.
+     * @param path the path of the history file
+     * @return the store of snapshots
+     */
+    public static synchronized SnapshotStore getStore(String path) {
+        File dir = new File(new File(path).getAbsoluteFile().getParentFile(), SNAPSHOT_DIR);
+        SnapshotStore store = stores.get(dir.getPath());
+        if (store == null) {
+            store = new SnapshotStore(dir);
+            stores.put(dir.getPath(), store);
+        }
+        return store;
+    }
+    
+    /**
+     * Stores the code of a snapshot if the store does not contain it yet.
+     * The snapshot is written into a temporary file, which is forced to the storage device and then renamed,
+     * so that a history file never refers to a snapshot file that is incomplete.
+     * @param code the code
+     * @return the content hash of the code, or <code>null</code> if the code could not be stored
+     */
+    public String put(String code) {
+        String hash = getHash(code);
+        if (hash == null) {
+            return null;
+        }
+        
+        File file = new File(dir, hash + SNAPSHOT_EXT);
+        if (file.exists()) {
+            return hash;
+        }
+        
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("Cannot create " + dir);
+            return null;
+        }
+        
+        File tmp = new File(dir, hash + SNAPSHOT_EXT + "." + Thread.currentThread().getId() + ".tmp");
+        DeflaterOutputStream out = null;
+        try {
+            FileOutputStream fout = new FileOutputStream(tmp);
+            out = new DeflaterOutputStream(fout);
+            out.write(code.getBytes(Operation2Binary.UTF8));
+            out.finish();
+            out.flush();
+            fout.getFD().sync();
+            out.close();
+            out = null;
+            
+            if (!tmp.renameTo(file) && !file.exists()) {
+                throw new IOException("cannot rename " + tmp);
+            }
+            return hash;
+            
+        } catch (IOException e) {
+            System.err.println("Cannot write the snapshot " + file + ": " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+            tmp.delete();
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the code of a snapshot.
+     * @param hash the content hash of the code
+     * @return the code, or <code>null</code> if the store does not contain it
+     */
+    public String get(String hash) {
+        synchronized (cache) {
+            String code = cache.get(hash);
+            if (code != null) {
+                return code;
+            }
+        }
+        
+        File file = new File(dir, hash + SNAPSHOT_EXT);
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        InputStream in = null;
+        try {
+            in = new InflaterInputStream(new FileInputStream(file));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                bytes.write(buf, 0, len);
+            }
+            String code = new String(bytes.toByteArray(), Operation2Binary.UTF8);
+            
+            synchronized (cache) {
+                cache.put(hash, code);
+            }
+            return code;
+            
+        } catch (IOException e) {
+            System.err.println("Cannot read the snapshot " + file + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Fills the code of a file operation that refers to a snapshot.
+     * The operation keeps the reference and has no code if the snapshot cannot be read.
+     * @param op the operation
+     * @return <code>true</code> if the operation needs no snapshot or its code was filled, otherwise <code>false</code>
+     */
+    public boolean resolve(IOperation op) {
+        if (op.getOperationType() == IOperation.Type.FILE) {
+            FileOperation fop = (FileOperation)op;
+            if (fop.getCode() == null && fop.getSnapshot() != null) {
+                String code = get(fop.getSnapshot());
+                if (code == null) {
+                    return false;
+                }
+                fop.setCode(code);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Creates a file operation that refers to a snapshot instead of holding its code.
+     * @param op the operation
+     * @return the operation referring to the snapshot, or the given operation if it does not need to refer to any snapshot
+     */
+    public IOperation toReference(IOperation op) {
+        if (op.getOperationType() != IOperation.Type.FILE) {
+            return op;
+        }
+        
+        FileOperation fop = (FileOperation)op;
+        if (fop.getCode() == null || fop.getCode().length() == 0) {
+            return op;
+        }
+        
+        String hash = put(fop.getCode());
+        if (hash == null) {
+            return op;
+        }
+        
+        FileOperation ref = new FileOperation(fop.getTime(), fop.getFilePath(), fop.getAuthor(), fop.getActionType(), null);
+        ref.setSequenceNumber(fop.getSequenceNumber());
+        ref.setSnapshot(hash);
+        return ref;
+    }
+    
+    /**
+     * Calculates the content hash of code.
+     * @param code the code
+     * @return the hexadecimal string of the SHA-1 hash, or <code>null</code> if the hash is not available
+     */
+    private static String getHash(String code) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(code.getBytes(Operation2Binary.UTF8));
+            
+            StringBuilder buf = new StringBuilder();
+            for (byte b : digest) {
+                buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+                buf.append(Character.forDigit(b & 0xF, 16));
+            }
+            return buf.toString();
+            
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
@@ -188,14 +188,18 @@ public class Xml2Operation {
         String file = elem.getAttribute(XmlConstantStrings.FileAttr);
         String action = elem.getAttribute(XmlConstantStrings.ActionAttr);
         String author = elem.getAttribute(XmlConstantStrings.AuthorAttr);
+        String snapshot = elem.getAttribute(XmlConstantStrings.SnapshotAttr);
         
         String code = getFirstChildText(elem.getElementsByTagName(XmlConstantStrings.CodeElem));
-        if (code == null) {
+        if (code == null && snapshot.length() == 0) {
             code = "";
         }
         
         FileOperation op = new FileOperation(Long.parseLong(time),
             file, author, FileOperation.Type.parseType(action), code);
+        if (snapshot.length() != 0) {
+            op.setSnapshot(snapshot);
+        }
         return op;
     }
     
@@ -56,7 +56,7 @@ public class Xml2OperationOR {
      * @param doc the content of the DOM instance
      * @return the operation history after the conversion
      */
-    public static OperationHistory getOperations(Document doc) {
+    public static synchronized OperationHistory getOperations(Document doc) {
         NodeList developers = doc.getElementsByTagName(DeveloperElem);
         if (developers == null) {
             developer = "Unknown";
@@ -0,0 +1,423 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+import org.jtool.changerecorder.util.XmlFileStream;
+import org.w3c.dom.Document;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the XML representation into operations with a pull parser, without building the DOM tree.
+ * Operations are passed to a handler one at a time, so the memory used does not depend on the size of
+ * the history file. The operations are the same as those {@link Xml2Operation} creates from the DOM tree.
+ * Files in the old format, whose version does not end with "a", are still converted through the DOM tree.
+ * @author Katsuhisa Maruyama
+ */
+public class Xml2OperationStream {
+    
+    /**
+     * The factory that creates pull parsers.
+     */
+    private static XMLInputFactory factory = createFactory();
+    
+    /**
+     * The pull parser.
+     */
+    private XMLStreamReader reader;
+    
+    /**
+     * Creates an object that converts the XML representation.
+     * @param reader the pull parser
+     */
+    private Xml2OperationStream(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * Creates the factory of pull parsers.
+     * @return the factory
+     */
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        return factory;
+    }
+    
+    /**
+     * Reads the operations stored in an XML history file.
+     * @param path the full path indicating the XML file to be read
+     * @param handler the handler that receives the read operations
+     * @return <code>true</code> if the file was successfully read, otherwise <code>false</code>
+     */
+    public static boolean read(String path, OperationHandler handler) {
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        Boolean result;
+        try {
+            in = new BufferedInputStream(new FileInputStream(path));
+            synchronized (factory) {
+                reader = factory.createXMLStreamReader(in);
+            }
+            result = new Xml2OperationStream(reader).readHistory(handler);
+            
+        } catch (XMLStreamException e) {
+            System.err.println("StAX: Parse error occurred: " + e.getMessage() + ".");
+            return false;
+            
+        } catch (IOException e) {
+            System.err.println("StAX: Parse error occurred: " + e.getMessage() + ".");
+            return false;
+            
+        } finally {
+            close(reader, in);
+        }
+        
+        if (result != null) {
+            return result.booleanValue();
+        }
+        return readByDom(path, handler);
+    }
+    
+    /**
+     * Reads the operations stored in an XML history file through the DOM tree.
+     * @param path the full path indicating the XML file to be read
+     * @param handler the handler that receives the read operations
+     * @return <code>true</code> if the file was successfully read, otherwise <code>false</code>
+     */
+    private static boolean readByDom(String path, OperationHandler handler) {
+        Document doc = XmlFileStream.read(path);
+        if (doc == null) {
+            return false;
+        }
+        
+        OperationHistory history = Xml2Operation.convert(doc);
+        if (history == null) {
+            return false;
+        }
+        
+        for (IOperation op : history.getOperations()) {
+            handler.handle(op);
+        }
+        return true;
+    }
+    
+    /**
+     * Closes the pull parser and its input stream.
+     * @param reader the pull parser
+     * @param in the input stream
+     */
+    private static void close(XMLStreamReader reader, InputStream in) {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+        }
+        
+        try {
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+        }
+    }
+    
+    /**
+     * Reads the operations in the first <code>operations</code> element.
+     * @param handler the handler that receives the read operations
+     * @return <code>true</code> if the operations were read, <code>false</code> if the file is not an operation history,
+     * or <code>null</code> if the file must be read through the DOM tree
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private Boolean readHistory(OperationHandler handler) throws XMLStreamException {
+        boolean inHistory = false;
+        boolean read = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event != XMLStreamConstants.START_ELEMENT || read) {
+                continue;
+            }
+            
+            String name = reader.getLocalName();
+            if (!inHistory && name.equals(XmlConstantStrings.OperationHistoryElem)) {
+                inHistory = true;
+                if (!getAttribute(XmlConstantStrings.VersionAttr).endsWith("a")) {
+                    return null;
+                }
+                
+            } else if (name.equals(XmlConstantStrings.OperationsElem)) {
+                if (!inHistory) {
+                    return null;
+                }
+                
+                event = reader.next();
+                while (event != XMLStreamConstants.END_ELEMENT) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        IOperation op = readOperation();
+                        if (op != null) {
+                            handler.handle(op);
+                        }
+                    }
+                    event = reader.next();
+                }
+                read = true;
+            }
+        }
+        
+        if (!inHistory) {
+            System.err.print("invalid operation history format");
+        }
+        return Boolean.valueOf(read);
+    }
+    
+    /**
+     * Reads an operation from the current element and moves to its end.
+     * @return the operation, or <code>null</code> if the element does not represent an operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private IOperation readOperation() throws XMLStreamException {
+        String name = reader.getLocalName();
+        if (name.equals(XmlConstantStrings.NormalOperationElem)) {
+            return readNormalOperation();
+            
+        } else if (name.equals(XmlConstantStrings.CompoundOperationElem)) {
+            return readCompoundOperation();
+            
+        } else if (name.equals(XmlConstantStrings.FileOperationElem)) {
+            return readFileOperation();
+            
+        } else if (name.equals(XmlConstantStrings.MenuOperationElem)) {
+            return readMenuOperation();
+            
+        } else if (name.equals(XmlConstantStrings.CopyOperationElem)) {
+            return readCopyOperation();
+            
+        } else if (name.equals(XmlConstantStrings.ResourceOperationElem)) {
+            return readResourceOperation();
+        }
+        
+        readTexts();
+        return null;
+    }
+    
+    /**
+     * Creates a normal operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private NormalOperation readNormalOperation() throws XMLStreamException {
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String seq = getAttribute(XmlConstantStrings.SeqAttr);
+        String offset = getAttribute(XmlConstantStrings.OffsetAttr);
+        String file = getAttribute(XmlConstantStrings.FileAttr);
+        String action = getAttribute(XmlConstantStrings.ActionAttr);
+        String author = getAttribute(XmlConstantStrings.AuthorAttr);
+        
+        String[] texts = readTexts(XmlConstantStrings.InsertedElem, XmlConstantStrings.DeletedElem);
+        
+        NormalOperation op = new NormalOperation(Long.parseLong(time), Integer.parseInt(seq),
+            file, author, Integer.parseInt(offset), texts[0], texts[1], NormalOperation.Type.parseType(action));
+        return op;
+    }
+    
+    /**
+     * Creates a compound operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private CompoundOperation readCompoundOperation() throws XMLStreamException {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String label = getAttribute(XmlConstantStrings.LabelAttr);
+        
+        int event = reader.next();
+        while (event != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ops.add(readOperation());
+            }
+            event = reader.next();
+        }
+        
+        CompoundOperation op = new CompoundOperation(Long.parseLong(time), ops, label);
+        return op;
+    }
+    
+    /**
+     * Creates a copy operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private CopyOperation readCopyOperation() throws XMLStreamException {
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String offset = getAttribute(XmlConstantStrings.OffsetAttr);
+        String file = getAttribute(XmlConstantStrings.FileAttr);
+        String author = getAttribute(XmlConstantStrings.AuthorAttr);
+        
+        String[] texts = readTexts(XmlConstantStrings.CopiedElem);
+        
+        CopyOperation op = new CopyOperation(Long.parseLong(time),
+            file, author, Integer.parseInt(offset), texts[0]);
+        return op;
+    }
+    
+    /**
+     * Creates a file operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private FileOperation readFileOperation() throws XMLStreamException {
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String file = getAttribute(XmlConstantStrings.FileAttr);
+        String action = getAttribute(XmlConstantStrings.ActionAttr);
+        String author = getAttribute(XmlConstantStrings.AuthorAttr);
+        String snapshot = getAttribute(XmlConstantStrings.SnapshotAttr);
+        
+        String code = readTexts(XmlConstantStrings.CodeElem)[0];
+        if (code == null && snapshot.length() == 0) {
+            code = "";
+        }
+        
+        FileOperation op = new FileOperation(Long.parseLong(time),
+            file, author, FileOperation.Type.parseType(action), code);
+        if (snapshot.length() != 0) {
+            op.setSnapshot(snapshot);
+        }
+        return op;
+    }
+    
+    /**
+     * Creates a menu operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private MenuOperation readMenuOperation() throws XMLStreamException {
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String file = getAttribute(XmlConstantStrings.FileAttr);
+        String label = getAttribute(XmlConstantStrings.LabelAttr);
+        String author = getAttribute(XmlConstantStrings.AuthorAttr);
+        readTexts();
+        
+        MenuOperation op = new MenuOperation(Long.parseLong(time), file, author, label);
+        return op;
+    }
+    
+    /**
+     * Creates the resource change operation from the current element.
+     * @return the created operation
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private IOperation readResourceOperation() throws XMLStreamException {
+        String time = getAttribute(XmlConstantStrings.TimeAttr);
+        String file = getAttribute(XmlConstantStrings.FileAttr);
+        String action = getAttribute(XmlConstantStrings.ActionAttr);
+        String target = getAttribute(XmlConstantStrings.TargetAttr);
+        String apath = getAttribute(XmlConstantStrings.APathAttr);
+        String author = getAttribute(XmlConstantStrings.AuthorAttr);
+        readTexts();
+        
+        ResourceOperation.Type actionValue = ResourceOperation.Type.parseType(action);
+        ResourceOperation.Target targetValue = ResourceOperation.Target.parseType(target);
+        ResourceOperation op = new ResourceOperation(Long.parseLong(time),
+            file, author, actionValue, targetValue, apath);
+        return op;
+    }
+    
+    /**
+     * Obtains the value of an attribute of the current element.
+     * @param name the name of the attribute
+     * @return the value of the attribute, or an empty string if the attribute does not exist
+     */
+    private String getAttribute(String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+    
+    /**
+     * Moves to the end of the current element while collecting texts of descendant elements.
+     * For each name, the text stored in the first child of the first descendant element having
+     * the name is collected, as <code>getElementsByTagName</code> and the first child of the DOM tree find.
+     * @param names the names of the descendant elements
+     * @return the collected texts, each of which is <code>null</code> if no text was found
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private String[] readTexts(String... names) throws XMLStreamException {
+        String[] texts = new String[names.length];
+        boolean[] found = new boolean[names.length];
+        int depth = 1;
+        int event = reader.next();
+        while (true) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                int idx = indexOf(names, found, reader.getLocalName());
+                if (idx >= 0) {
+                    found[idx] = true;
+                    event = reader.next();
+                    if (isText(event)) {
+                        StringBuilder buf = new StringBuilder();
+                        while (isText(event)) {
+                            buf.append(reader.getText());
+                            event = reader.next();
+                        }
+                        texts[idx] = buf.toString();
+                    }
+                    continue;
+                }
+                
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth == 0) {
+                    return texts;
+                }
+            }
+            event = reader.next();
+        }
+    }
+    
+    /**
+     * Finds a name that has not been found yet.
+     * @param names the names
+     * @param found the flags indicating if the respective names have been found
+     * @param name the name to be found
+     * @return the index of the name, or <code>-1</code> if none
+     */
+    private static int indexOf(String[] names, boolean[] found, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (!found[i] && names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Tests if an event of the pull parser is a part of a text node of the DOM tree.
+     * @param event the event
+     * @return <code>true</code> if the event is a part of a text node, otherwise <code>false</code>
+     */
+    private static boolean isText(int event) {
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE;
+    }
+}
@@ -176,7 +176,7 @@ public abstract class AbstractOperation implements IOperation {
             return false;
         }
         
-        return time == op.getTime() && sequenceNumber == getSequenceNumber() &&
+        return time == op.getTime() && sequenceNumber == op.getSequenceNumber() &&
                StringComparator.isSame(path, op.getFilePath()) &&
                StringComparator.isSame(author, op.getAuthor());
     }
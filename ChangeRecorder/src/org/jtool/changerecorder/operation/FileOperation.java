@@ -57,6 +57,11 @@ public class FileOperation extends AbstractOperation {
      */
     protected String code;
     
+    /**
+     * The content hash of the source code stored in a snapshot store, or <code>null</code> if none.
+     */
+    protected String snapshot;
+    
     /**
      * Creates an instance storing information on this file operation.
      * @param time the time when this operation was performed
@@ -106,6 +111,22 @@ public class FileOperation extends AbstractOperation {
         this.code = code;
     }
     
+    /**
+     * Returns the content hash that refers to the source code stored in a snapshot store.
+     * @return the content hash, or <code>null</code> if the code is not stored in a snapshot store
+     */
+    public String getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Sets the content hash that refers to the source code stored in a snapshot store.
+     * @param snapshot the content hash
+     */
+    public void setSnapshot(String snapshot) {
+        this.snapshot = snapshot;
+    }
+    
     /**
      * Returns the sort of this operation.
      * @return the string indicating the operation sort
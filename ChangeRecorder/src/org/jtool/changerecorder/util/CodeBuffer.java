@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.util;
+
+/**
+ * Stores the content of source code that is modified in place by successive operations.
+ * The characters are kept in a gap buffer, so that a run of edits close to each other
+ * only moves the characters between them instead of copying the whole code.
+ * @author Katsuhisa Maruyama
+ */
+public class CodeBuffer {
+    
+    /**
+     * The minimum size of the gap.
+     */
+    private static final int MIN_GAP = 256;
+    
+    /**
+     * The characters of the code, including the gap.
+     */
+    private char[] chars;
+    
+    /**
+     * The index of the first character of the gap.
+     */
+    private int gapStart;
+    
+    /**
+     * The index of the first character after the gap.
+     */
+    private int gapEnd;
+    
+    /**
+     * Creates a buffer storing the content of source code.
+     * @param code the content of the source code
+     */
+    public CodeBuffer(String code) {
+        int len = code.length();
+        chars = new char[len + Math.max(MIN_GAP, len / 8)];
+        code.getChars(0, len, chars, 0);
+        gapStart = len;
+        gapEnd = chars.length;
+    }
+    
+    /**
+     * Returns the number of characters of the code.
+     * @return the length of the code
+     */
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+    
+    /**
+     * Returns the character at a given position.
+     * @param pos the position of the character
+     * @return the character
+     */
+    public char charAt(int pos) {
+        if (pos < 0 || pos >= length()) {
+            throw new StringIndexOutOfBoundsException(pos);
+        }
+        
+        if (pos < gapStart) {
+            return chars[pos];
+        }
+        return chars[pos + gapEnd - gapStart];
+    }
+    
+    /**
+     * Tests if a text appears at a given position of the code.
+     * @param start the position where the text starts
+     * @param text the text to be compared
+     * @return <code>true</code> if the code contains the text at the position, otherwise <code>false</code>
+     */
+    public boolean matches(int start, String text) {
+        int len = text.length();
+        if (start < 0 || start + len > length()) {
+            return false;
+        }
+        
+        int gap = gapEnd - gapStart;
+        for (int i = 0; i < len; i++) {
+            int pos = start + i;
+            char c = (pos < gapStart) ? chars[pos] : chars[pos + gap];
+            if (c != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns a part of the code.
+     * @param start the beginning position (inclusive)
+     * @param end the ending position (exclusive)
+     * @return the text between the positions
+     */
+    public String substring(int start, int end) {
+        if (start < 0 || end < start || end > length()) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+        }
+        
+        char[] text = new char[end - start];
+        for (int i = start; i < end; i++) {
+            text[i - start] = charAt(i);
+        }
+        return new String(text);
+    }
+    
+    /**
+     * Replaces a part of the code with a text.
+     * @param start the beginning position (inclusive)
+     * @param end the ending position (exclusive)
+     * @param text the text that replaces the part
+     */
+    public void replace(int start, int end, String text) {
+        if (start < 0 || end < start || end > length()) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+        }
+        
+        moveGap(start);
+        gapEnd = gapEnd + (end - start);
+        
+        int len = text.length();
+        ensureGap(len);
+        text.getChars(0, len, chars, gapStart);
+        gapStart = gapStart + len;
+    }
+    
+    /**
+     * Moves the gap so that it starts at a given position.
+     * @param pos the position
+     */
+    private void moveGap(int pos) {
+        if (pos < gapStart) {
+            int num = gapStart - pos;
+            System.arraycopy(chars, pos, chars, gapEnd - num, num);
+            gapStart = pos;
+            gapEnd = gapEnd - num;
+            
+        } else if (pos > gapStart) {
+            int num = pos - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, num);
+            gapStart = gapStart + num;
+            gapEnd = gapEnd + num;
+        }
+    }
+    
+    /**
+     * Enlarges the buffer if the gap is smaller than a given size.
+     * @param size the required size of the gap
+     */
+    private void ensureGap(int size) {
+        if (gapEnd - gapStart >= size) {
+            return;
+        }
+        
+        int capacity = Math.max(chars.length * 2, length() + size + MIN_GAP);
+        char[] newChars = new char[capacity];
+        System.arraycopy(chars, 0, newChars, 0, gapStart);
+        int tail = chars.length - gapEnd;
+        System.arraycopy(chars, gapEnd, newChars, capacity - tail, tail);
+        gapEnd = capacity - tail;
+        chars = newChars;
+    }
+    
+    /**
+     * Returns the content of the code.
+     * @return the code
+     */
+    @Override
+    public String toString() {
+        char[] text = new char[length()];
+        System.arraycopy(chars, 0, text, 0, gapStart);
+        System.arraycopy(chars, gapEnd, text, gapStart, chars.length - gapEnd);
+        return new String(text);
+    }
+}
@@ -30,7 +30,7 @@ public class Whoami {
      * Obtains the user name by using the <code>whoami</code> command.
      * @return the user name
      */
-    public static String getUserName() {
+    public static synchronized String getUserName() {
         if (userName != null) {
             return userName;
         }
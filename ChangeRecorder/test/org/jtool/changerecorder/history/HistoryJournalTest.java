@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the journal that receives recorded operations and its recovery.
+ * @author Katsuhisa Maruyama
+ */
+public class HistoryJournalTest {
+    
+    /**
+     * The directory that stores the journal files.
+     */
+    private File dir;
+    
+    /**
+     * Creates the directory that stores the journal files.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+    }
+    
+    /**
+     * Deletes the directory that stores the journal files.
+     */
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    /**
+     * Creates operations to be journaled.
+     * @param num the number of the normal operations
+     * @return the created operations
+     */
+    private static List<IOperation> createOperations(int num) {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new FileOperation(900, "/P/src/A0.java", FileOperation.Type.OPEN, "class A0 {}"));
+        for (int i = 0; i < num; i++) {
+            ops.add(new NormalOperation(1000 + i * 7, i, "/P/src/A" + (i % 3) + ".java", "me", i, "x" + (i % 5), ""));
+        }
+        return ops;
+    }
+    
+    /**
+     * Writes operations into a new journal.
+     * @param path the path of the journal file
+     * @param ops the operations
+     * @return the number of bytes in the journal
+     */
+    private static long writeJournal(String path, List<IOperation> ops) {
+        HistoryJournal journal = new HistoryJournal(path);
+        assertTrue(journal.open());
+        for (IOperation op : ops) {
+            journal.append(op);
+        }
+        journal.close();
+        
+        assertEquals(new File(path).length(), journal.getSize());
+        return journal.getSize();
+    }
+    
+    /**
+     * Tests that the operations appended to a journal are read back.
+     */
+    @Test
+    public void testReadBack() {
+        String path = new File(dir, "1" + HistoryJournal.JOURNAL_EXT).getPath();
+        List<IOperation> ops = createOperations(100);
+        writeJournal(path, ops);
+        
+        List<IOperation> read = HistoryJournal.read(path).getOperations();
+        assertEquals(ops.size(), read.size());
+        for (int i = 0; i < ops.size(); i++) {
+            assertEquals(ops.get(i).toString(), read.get(i).toString());
+        }
+    }
+    
+    /**
+     * Tests that the records preceding a broken tail are recovered.
+     * @throws IOException if the journal cannot be truncated
+     */
+    @Test
+    public void testTruncatedTail() throws IOException {
+        String path = new File(dir, "2" + HistoryJournal.JOURNAL_EXT).getPath();
+        List<IOperation> ops = createOperations(100);
+        long size = writeJournal(path, ops);
+        
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(size - 3);
+        } finally {
+            file.close();
+        }
+        
+        List<IOperation> read = HistoryJournal.read(path).getOperations();
+        assertEquals(ops.size() - 1, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(ops.get(i).toString(), read.get(i).toString());
+        }
+    }
+    
+    /**
+     * Tests that a file of an unknown format is read as an empty journal.
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testUnknownFormat() throws IOException {
+        File file = new File(dir, "3" + HistoryJournal.JOURNAL_EXT);
+        Files.write(file.toPath(), "not a journal".getBytes("UTF-8"));
+        
+        assertEquals(0, HistoryJournal.read(file.getPath()).size());
+    }
+    
+    /**
+     * Tests that an existing journal is never overwritten.
+     */
+    @Test
+    public void testOpenExisting() {
+        String path = new File(dir, "4" + HistoryJournal.JOURNAL_EXT).getPath();
+        writeJournal(path, createOperations(1));
+        
+        assertFalse(new HistoryJournal(path).open());
+        assertEquals(2, HistoryJournal.read(path).size());
+    }
+    
+    /**
+     * Tests that the journal and compacting files are listed in the order of their names.
+     * @throws IOException if the files cannot be created
+     */
+    @Test
+    public void testPaths() throws IOException {
+        new File(dir, "20" + HistoryJournal.JOURNAL_EXT).createNewFile();
+        new File(dir, "10" + HistoryJournal.JOURNAL_EXT).createNewFile();
+        new File(dir, "15" + HistoryJournal.COMPACTING_EXT).createNewFile();
+        
+        List<String> journals = HistoryJournal.getJournalPaths(dir.getPath());
+        assertEquals(2, journals.size());
+        assertTrue(journals.get(0).endsWith("10" + HistoryJournal.JOURNAL_EXT));
+        assertTrue(journals.get(1).endsWith("20" + HistoryJournal.JOURNAL_EXT));
+        assertEquals(1, HistoryJournal.getCompactingPaths(dir.getPath()).size());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the conversion between operations and their binary representation.
+ * @author Katsuhisa Maruyama
+ */
+public class Operation2BinaryTest {
+    
+    /**
+     * The directory that stores the history files.
+     */
+    private File dir;
+    
+    /**
+     * Creates the directory that stores the history files.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+    }
+    
+    /**
+     * Deletes the directory that stores the history files.
+     */
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    /**
+     * Creates operations of all the kinds.
+     * @return the created operations
+     */
+    private static List<IOperation> createOperations() {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new FileOperation(1000, "/P/src/A.java", "me", FileOperation.Type.OPEN, "class A {\n}\n"));
+        ops.add(new NormalOperation(1001, 0, "/P/src/A.java", "me", 9, "int x;", "", NormalOperation.Type.EDIT));
+        ops.add(new NormalOperation(1002, 1, "/P/src/A.java", "me", 9, "変数", "int x;", NormalOperation.Type.EDIT));
+        ops.add(new NormalOperation(1002, 2, "/P/src/A.java", "you", 0, "", "class", NormalOperation.Type.CUT));
+        ops.add(new CopyOperation(1003, "/P/src/A.java", "me", 3, "ss A"));
+        ops.add(new MenuOperation(1004, "/P/src/A.java", "me", "org.eclipse.ui.edit.undo"));
+        ops.add(new ResourceOperation(1005, "/P/src/B.java", "me", ResourceOperation.Type.MOVED_FROM,
+                                      ResourceOperation.Target.JFILE, "/P/src/b/B.java"));
+        
+        List<IOperation> children = new ArrayList<IOperation>();
+        children.add(new NormalOperation(1006, 0, "/P/src/A.java", "me", 0, "a", "", NormalOperation.Type.EDIT));
+        children.add(new NormalOperation(1006, 1, "/P/src/A.java", "me", 1, "", "b", NormalOperation.Type.EDIT));
+        ops.add(new CompoundOperation(1006, "me", children, "Rename"));
+        
+        ops.add(new FileOperation(1007, "/P/src/A.java", "me", FileOperation.Type.CLOSE, ""));
+        return ops;
+    }
+    
+    /**
+     * Tests that operations written into a binary history file are read back field by field.
+     */
+    @Test
+    public void testFileRoundTrip() {
+        List<IOperation> ops = createOperations();
+        String path = new File(dir, "1" + OperationHistory.BINARY_FILE_EXT).getPath();
+        
+        assertTrue(Operation2Binary.write(new OperationHistory(ops), path));
+        OperationHistory history = Binary2Operation.read(path);
+        
+        assertEquals(ops.size(), history.size());
+        assertEquals(-1, HistoryConverter.findMismatch(ops, history.getOperations()));
+    }
+    
+    /**
+     * Tests that operations converted into bytes are converted back field by field.
+     */
+    @Test
+    public void testBytesRoundTrip() {
+        List<IOperation> ops = createOperations();
+        
+        OperationHistory history = Binary2Operation.convert(Operation2Binary.convert(new OperationHistory(ops)));
+        
+        assertEquals(-1, HistoryConverter.findMismatch(ops, history.getOperations()));
+        for (int idx = 0; idx < ops.size(); idx++) {
+            assertEquals(ops.get(idx).toString(), history.getOperations().get(idx).toString());
+        }
+    }
+    
+    /**
+     * Tests that operations converted one at a time for a journal are converted back field by field.
+     */
+    @Test
+    public void testJournalRoundTrip() {
+        List<IOperation> ops = createOperations();
+        Operation2Binary writer = Operation2Binary.createJournalWriter();
+        Binary2Operation reader = Binary2Operation.createJournalReader();
+        
+        List<IOperation> rops = new ArrayList<IOperation>();
+        for (IOperation op : ops) {
+            rops.add(reader.convertNext(writer.convertNext(op)));
+        }
+        
+        assertEquals(-1, HistoryConverter.findMismatch(ops, rops));
+    }
+    
+    /**
+     * Tests that a difference in any field of an operation is detected.
+     */
+    @Test
+    public void testFindMismatch() {
+        List<IOperation> ops = createOperations();
+        
+        List<IOperation> rops = new ArrayList<IOperation>(ops);
+        rops.set(2, new NormalOperation(1002, 1, "/P/src/A.java", "me", 9, "変数", "int y;", NormalOperation.Type.EDIT));
+        assertEquals(2, HistoryConverter.findMismatch(ops, rops));
+        
+        rops = new ArrayList<IOperation>(ops);
+        rops.set(3, new NormalOperation(1002, 3, "/P/src/A.java", "you", 0, "", "class", NormalOperation.Type.CUT));
+        assertEquals(3, HistoryConverter.findMismatch(ops, rops));
+        
+        rops = new ArrayList<IOperation>(ops.subList(0, ops.size() - 1));
+        assertEquals(ops.size() - 1, HistoryConverter.findMismatch(ops, rops));
+    }
+    
+    /**
+     * Tests that an XML history file is replaced with the binary one only after the operations are verified.
+     */
+    @Test
+    public void testConvert() {
+        List<IOperation> ops = createOperations();
+        File xfile = new File(dir, "2" + OperationHistory.XML_FILE_EXT);
+        File bfile = new File(dir, "2" + OperationHistory.BINARY_FILE_EXT);
+        new OperationHistory(ops).write(xfile.getPath(), "UTF-8");
+        List<IOperation> xops = OperationHistory.read(xfile.getPath()).getOperations();
+        
+        assertEquals(1, HistoryConverter.convert(dir.getPath()));
+        assertFalse(xfile.exists());
+        assertTrue(bfile.exists());
+        assertEquals(-1, HistoryConverter.findMismatch(xops, Binary2Operation.read(bfile.getPath()).getOperations()));
+    }
+}
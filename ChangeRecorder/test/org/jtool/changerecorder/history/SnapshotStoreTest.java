@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the store of snapshots that history files refer to.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotStoreTest {
+    
+    /**
+     * The directory that stores the history files.
+     */
+    private File dir;
+    
+    /**
+     * Creates the directory that stores the history files.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+    }
+    
+    /**
+     * Deletes the directory that stores the history files.
+     */
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+    
+    /**
+     * Deletes a file or a directory with its contents.
+     * @param file the file or the directory
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+    
+    /**
+     * Returns the files in the snapshot directory.
+     * @return the names of the files
+     */
+    private List<String> getSnapshotFiles() {
+        List<String> names = new ArrayList<String>();
+        File[] files = new File(dir, SnapshotStore.SNAPSHOT_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                names.add(file.getName());
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Tests that the same code is stored once and no temporary file is left.
+     */
+    @Test
+    public void testPut() {
+        SnapshotStore store = SnapshotStore.getStore(new File(dir, "1.ophist").getPath());
+        
+        String hash = store.put("class A {}");
+        assertEquals(hash, store.put("class A {}"));
+        assertEquals("class A {}", store.get(hash));
+        
+        List<String> names = getSnapshotFiles();
+        assertEquals(1, names.size());
+        assertEquals(hash + SnapshotStore.SNAPSHOT_EXT, names.get(0));
+    }
+    
+    /**
+     * Tests that the code of a file operation is restored from the snapshot its history file refers to.
+     */
+    @Test
+    public void testResolve() {
+        String path = new File(dir, "2" + OperationHistory.BINARY_FILE_EXT).getPath();
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new FileOperation(1000, "/P/src/B.java", FileOperation.Type.OPEN, "class B {}"));
+        
+        assertTrue(new OperationHistory(ops).write(path, "UTF-8", true));
+        assertEquals(1, getSnapshotFiles().size());
+        
+        FileOperation fop = (FileOperation)OperationHistory.read(path).getOperations().get(0);
+        assertEquals("class B {}", fop.getCode());
+    }
+    
+    /**
+     * Tests that a reference to a missing snapshot is kept unresolved.
+     */
+    @Test
+    public void testUnresolved() {
+        String path = new File(dir, "3" + OperationHistory.BINARY_FILE_EXT).getPath();
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new FileOperation(1000, "/P/src/C.java", FileOperation.Type.OPEN, "class C {}"));
+        
+        assertTrue(new OperationHistory(ops).write(path, "UTF-8", true));
+        delete(new File(dir, SnapshotStore.SNAPSHOT_DIR));
+        
+        FileOperation fop = (FileOperation)OperationHistory.read(path).getOperations().get(0);
+        assertNull(fop.getCode());
+        assertTrue(fop.getSnapshot() != null);
+        assertFalse(SnapshotStore.getStore(path).resolve(fop));
+    }
+}
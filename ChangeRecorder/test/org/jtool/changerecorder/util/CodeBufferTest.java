@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerecorder.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests the gap buffer that stores the content of source code.
+ * @author Katsuhisa Maruyama
+ */
+public class CodeBufferTest {
+    
+    /**
+     * Tests that replacements produce the same code as a string builder.
+     */
+    @Test
+    public void testRandomReplacements() {
+        Random random = new Random(1);
+        StringBuilder expected = new StringBuilder();
+        CodeBuffer buf = new CodeBuffer("");
+        
+        for (int i = 0; i < 20000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(4));
+            String text = (random.nextInt(10) == 0) ? "long inserted text " + i : "ab".substring(0, random.nextInt(3));
+            
+            expected.replace(start, end, text);
+            buf.replace(start, end, text);
+            
+            assertEquals(expected.length(), buf.length());
+        }
+        assertEquals(expected.toString(), buf.toString());
+    }
+    
+    /**
+     * Tests that the characters around the gap are accessed correctly.
+     */
+    @Test
+    public void testAccessAroundGap() {
+        CodeBuffer buf = new CodeBuffer("hello world");
+        buf.replace(5, 6, ", ");
+        
+        assertEquals("hello, world", buf.toString());
+        assertEquals(',', buf.charAt(5));
+        assertEquals('w', buf.charAt(7));
+        assertEquals("lo, w", buf.substring(3, 8));
+        assertTrue(buf.matches(4, "o, wo"));
+        assertFalse(buf.matches(4, "o wo"));
+        assertFalse(buf.matches(10, "ldx"));
+    }
+    
+    /**
+     * Tests that a text larger than the gap enlarges the buffer.
+     */
+    @Test
+    public void testEnlarge() {
+        CodeBuffer buf = new CodeBuffer("ab");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append((char)('a' + i % 26));
+        }
+        buf.replace(1, 1, text.toString());
+        buf.replace(0, 1, "");
+        
+        assertEquals(text.toString() + "b", buf.toString());
+    }
+    
+    /**
+     * Tests that an out-of-range replacement is rejected.
+     */
+    @Test(expected = StringIndexOutOfBoundsException.class)
+    public void testReplaceOutOfRange() {
+        CodeBuffer buf = new CodeBuffer("abc");
+        buf.replace(2, 4, "x");
+    }
+    
+    /**
+     * Tests that an out-of-range character is rejected.
+     */
+    @Test(expected = StringIndexOutOfBoundsException.class)
+    public void testCharAtOutOfRange() {
+        CodeBuffer buf = new CodeBuffer("abc");
+        buf.replace(0, 3, "");
+        buf.charAt(0);
+    }
+}
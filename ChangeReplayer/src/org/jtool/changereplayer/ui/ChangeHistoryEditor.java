@@ -144,6 +144,9 @@ public class ChangeHistoryEditor extends EditorPart implements RepositoryChanged
      */
     @Override
     public void notify(RepositoryChangedEvent evt) {
+        if (evt.getType() == RepositoryChangedEvent.Type.UPDATE) {
+            return;
+        }
         dispose();
     }
     
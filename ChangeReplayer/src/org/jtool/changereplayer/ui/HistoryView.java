@@ -208,6 +208,16 @@ public class HistoryView extends ViewPart implements RepositoryChangedListener,
         }
     }
     
+    /**
+     * Updates the contents of operation table after operations were added to the current file.
+     */
+    protected void updateOperationTable() {
+        createTableItems(fileInfo.getOperations());
+        operationTable.deselectAll();
+        operationTable.select(currentOperationIndex);
+        operationTable.update();
+    }
+    
     /**
      * Resets the contents of operation table.
      */
@@ -337,6 +347,10 @@ public class HistoryView extends ViewPart implements RepositoryChangedListener,
      */
     @Override
     public void notify(RepositoryChangedEvent evt) {
+        if (evt.getType() == RepositoryChangedEvent.Type.UPDATE && fileInfo != null) {
+            updateOperationTable();
+            return;
+        }
         resetOperationTable();
     }
     
@@ -92,4 +92,13 @@ public class Activator extends AbstractUIPlugin implements IStartup {
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
         return store.getBoolean(PreferencePage.MERGE_OPERATIONS);
     }
+    
+    /**
+     * Tests if the texts of operations will be loaded only when they are needed.
+     * @return <code>true</code> if the lazy loading is required, otherwise <code>false</code>
+     */
+    public static boolean loadTextsLazily() {
+        IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        return store.getBoolean(PreferencePage.LOAD_TEXTS_LAZILY);
+    }
 }
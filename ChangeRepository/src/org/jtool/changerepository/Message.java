@@ -6,6 +6,8 @@
 
 package org.jtool.changerepository;
 
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.dialogs.MessageDialog;
 
 /**
@@ -58,10 +60,29 @@ public class Message {
     }
     
     /**
-     * Displays an error message on the console.
+     * Records an error message in the log of this plug-in, or displays it on the console if the plug-in is not running.
      * @param msg the message to be presented
      */
     public static void error(String msg) {
+        error(msg, null);
+    }
+    
+    /**
+     * Records an error message with its cause in the log of this plug-in,
+     * or displays it on the console if the plug-in is not running.
+     * @param msg the message to be presented
+     * @param e the exception that caused the error, or <code>null</code> if none
+     */
+    public static void error(String msg, Throwable e) {
+        Activator plugin = Activator.getDefault();
+        if (plugin != null) {
+            plugin.getLog().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, msg, e));
+            return;
+        }
+        
         System.err.println(msg);
+        if (e != null) {
+            e.printStackTrace();
+        }
     }
 }
@@ -21,5 +21,6 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
     public void initializeDefaultPreferences() {
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
         store.setDefault(PreferencePage.MERGE_OPERATIONS, PreferencePage.MERGE_OPERATIONS_DEFAULT);
+        store.setDefault(PreferencePage.LOAD_TEXTS_LAZILY, PreferencePage.LOAD_TEXTS_LAZILY_DEFAULT);
     }
 }
@@ -28,6 +28,16 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
      */
     static final boolean MERGE_OPERATIONS_DEFAULT = true;
     
+    /**
+     * Keeps the texts of operations in the repository index and loads them when they are needed if this value is true.
+     */
+    static final String LOAD_TEXTS_LAZILY = "load.texts.lazily";
+    
+    /**
+     * The default value that indicates if the texts of operations will be loaded lazily.
+     */
+    static final boolean LOAD_TEXTS_LAZILY_DEFAULT = false;
+    
     /**
      * Creates an object for a preference page.
      */
@@ -46,6 +56,9 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
         
         addField(new BooleanFieldEditor(MERGE_OPERATIONS,
           "Merges two successive operations with respect to the Kana-Kanji conversion", getFieldEditorParent()));
+        
+        addField(new BooleanFieldEditor(LOAD_TEXTS_LAZILY,
+          "Loads the texts of operations from the repository index only when they are needed", getFieldEditorParent()));
     }
     
     /**
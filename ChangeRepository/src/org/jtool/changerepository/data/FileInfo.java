@@ -10,6 +10,7 @@ import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import org.jtool.changerecorder.diff.DiffOperationGenerator;
 import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.util.Time;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -54,6 +55,11 @@ public class FileInfo extends RepositoryElementInfo {
      */
     private FileInfo fileInfoTo = null;
     
+    /**
+     * The qualified name of this file, which is created once.
+     */
+    private String qualifiedName = null;
+    
     /**
      * Creates an instance that stores information on this file.
      * @param name the name of this file
@@ -86,6 +92,49 @@ public class FileInfo extends RepositoryElementInfo {
         super.setTimeRange();
     }
     
+    /**
+     * Extends the time range for this file with the operations added after the time range was set.
+     * The restoration points for the preceding operations are kept, and the file is marked as modified.
+     * @return the collection of the added operations after their fabrication
+     */
+    protected List<UnifiedOperation> extendTimeRange() {
+        List<UnifiedOperation> ops;
+        if (operationManager == null) {
+            setTimeRange();
+            ops = operations;
+        } else {
+            ops = operationManager.extendOperationInfo(operations);
+            super.setTimeRange();
+        }
+        
+        lastModifiedTime = Time.getCurrentTime();
+        return ops;
+    }
+    
+    /**
+     * Prepares the extension of the time range for this file with operations performed after the time range was set.
+     * The operations are fabricated and replayed without changing this file, which must have its time range set.
+     * @param ops the operations to be added, which are related to this file
+     * @return the prepared extension
+     */
+    protected OperationManager.Extension prepareExtension(List<UnifiedOperation> ops) {
+        return operationManager.prepareExtension(ops);
+    }
+    
+    /**
+     * Extends the time range for this file with a prepared extension.
+     * @param ext the extension prepared for the operations added after the time range was set
+     * @return the collection of the added operations after their fabrication
+     */
+    protected List<UnifiedOperation> extendTimeRange(OperationManager.Extension ext) {
+        operations.addAll(ext.getOperations());
+        operationManager.applyExtension(ext);
+        super.setTimeRange();
+        
+        lastModifiedTime = Time.getCurrentTime();
+        return ext.getOperations();
+    }
+    
     /**
      * Sets the information on the file which exists before the file rename or move.
      * @param finfo the previous file information which is backward connected to this file
@@ -117,25 +166,21 @@ public class FileInfo extends RepositoryElementInfo {
     public FileInfo getFileInfoTo() {
         return fileInfoTo;
     }
-
-    /**
-     * Returns the unique key for this file.
-     * @return the unique key
-     */
-    public String getKey() {
-        return getKey(getQualifiedName(), getTimeFrom(), getTimeTo());
-    }
     
     /**
      * Returns the qualified name of this file.
      * @return the qualified name of the file
      */
     public String getQualifiedName() {
-        String paname = packageInfo.getName();
-        if (paname.length() == 0) {
-            return projectInfo.getName() + "#" + getName();
+        if (qualifiedName == null) {
+            String paname = packageInfo.getName();
+            if (paname.length() == 0) {
+                qualifiedName = projectInfo.getName() + "#" + getName();
+            } else {
+                qualifiedName = projectInfo.getName() + "#" + paname + "." + getName();
+            }
         }
-        return projectInfo.getName() + "#" + paname + "." + getName();
+        return qualifiedName;
     }
     
     /**
@@ -207,6 +252,7 @@ public class FileInfo extends RepositoryElementInfo {
     
     /**
      * Checks mismatches between two operations.
+     * The mismatches were already found while the restoration points were created, so this does not replay any operation.
      * @return <code>true</code> if mismatches were found, otherwise <code>false</code>
      */
     public boolean checkMismatches() {
@@ -217,9 +263,7 @@ public class FileInfo extends RepositoryElementInfo {
             UnifiedOperation op = ops.get(i);
             
             if (op.isNormalOperation()) {
-                String code = getCode(i);
-                
-                if (code == null) {
+                if (!operationManager.isRestorable(i)) {
                     System.out.println(" -- ERROR IN " + getFilePath() + " " + i);
                     errflag = true;
                     
@@ -243,6 +287,7 @@ public class FileInfo extends RepositoryElementInfo {
     
     /**
      * Fixes mismatches between a close operation and a open one.
+     * The code of both the operations is the one they recorded, so this does not replay any operation.
      */
     public void fixCloseOpenMismatches() {
         int gap = 1;
@@ -253,12 +298,12 @@ public class FileInfo extends RepositoryElementInfo {
             UnifiedOperation op = ops.get(i);
             
             if (op.isFileCloseOperation()) {
-                String closedCode = getCode(i);
+                String closedCode = op.getCode();
                 
                 if (i + 1 < ops.size()) {
                     UnifiedOperation o = ops.get(i + 1);
                     if (o.isFileOpenOperation()) {
-                        String openedCode = getCode(i + 1);
+                        String openedCode = o.getCode();
                         
                         if (closedCode != null && closedCode.compareTo(openedCode) != 0) {
                             System.out.println("-- CLOSE/OPEN MISMATCH IN " + getFilePath() + " " + (i + 1) + "FIX IT ...");
@@ -271,6 +316,10 @@ public class FileInfo extends RepositoryElementInfo {
                 }
             }
         }
+        
+        if (gap > 1) {
+            operationManager.updateRestorationPoints();
+        }
     }
     
     /**
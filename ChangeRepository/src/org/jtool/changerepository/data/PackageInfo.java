@@ -8,7 +8,10 @@ package org.jtool.changerepository.data;
 
 import org.jtool.changerepository.operation.UnifiedOperation;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Stores information on a package.
@@ -26,6 +29,21 @@ public class PackageInfo extends RepositoryElementInfo {
      */
     private List<FileInfo> files = new ArrayList<FileInfo>();
     
+    /**
+     * The set of the files in this package, which detects duplicated registration.
+     */
+    private Set<FileInfo> fileSet = new HashSet<FileInfo>();
+    
+    /**
+     * A flag indicating if the collection of the files is sorted.
+     */
+    private boolean filesSorted = true;
+    
+    /**
+     * The qualified name of this package, which is created once.
+     */
+    private String qualifiedName = null;
+    
     /**
      * Creates an instance that stores information on this package.
      * @param name the name of this package
@@ -36,24 +54,20 @@ public class PackageInfo extends RepositoryElementInfo {
         this.projectInfo = pinfo;
     }
     
-    /**
-     * Returns the unique key for this package.
-     * @return the unique key
-     */
-    public String getKey() {
-        return getKey(getQualifiedName(), getTimeFrom(), getTimeTo());
-    }
-    
     /**
      * Returns the qualified name of this package.
      * @return the qualified name of the package
      */
     public String getQualifiedName() {
-        String paname = getName();
-        if (paname.length() == 0) {
-            return projectInfo.getName() + "#";
+        if (qualifiedName == null) {
+            String paname = getName();
+            if (paname.length() == 0) {
+                qualifiedName = projectInfo.getName() + "#";
+            } else {
+                qualifiedName = projectInfo.getName() + "#" + paname;
+            }
         }
-        return projectInfo.getName() + "#" + paname;
+        return qualifiedName;
     }
     
     /**
@@ -69,8 +83,9 @@ public class PackageInfo extends RepositoryElementInfo {
      * @param finfo the file information to be stored
      */
     public void addFileInfo(FileInfo finfo) {
-        if (!files.contains(finfo)) {
+        if (fileSet.add(finfo)) {
             files.add(finfo);
+            filesSorted = false;
         }
     }
     
@@ -79,8 +94,11 @@ public class PackageInfo extends RepositoryElementInfo {
      * @return the collection of the file information
      */
     public List<FileInfo> getAllFileInfo() {
-        FileInfo.sort(files);
-        return files;
+        if (!filesSorted) {
+            FileInfo.sort(files);
+            filesSorted = true;
+        }
+        return Collections.unmodifiableList(files);
     }
     
     /**
@@ -88,15 +106,33 @@ public class PackageInfo extends RepositoryElementInfo {
      */
     protected void setTimeRange() {
         for (FileInfo finfo : files) {
-            for (UnifiedOperation op : finfo.getOperations()) {
-                op.setPackageInfo(this);
-                addOperation(op);
-            }
+            addOperations(finfo.getOperations());
         }
         
         super.setTimeRange();
     }
     
+    /**
+     * Extends the time range for this package with operations newly performed on files within this package.
+     * @param ops the operations to be added
+     */
+    protected void extendTimeRange(List<UnifiedOperation> ops) {
+        addOperations(ops);
+        
+        super.setTimeRange();
+    }
+    
+    /**
+     * Stores operations performed on a file within this package.
+     * @param ops the operations to be stored
+     */
+    private void addOperations(List<UnifiedOperation> ops) {
+        for (UnifiedOperation op : ops) {
+            op.setPackageInfo(this);
+            addOperation(op);
+        }
+    }
+    
     /**
      * Tests if a given package is equals to this.
      * @param painfo the package to be checked
@@ -0,0 +1,322 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.data;
+
+import org.jtool.changerepository.operation.OperationManager;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.history.OperationHandler;
+import org.jtool.changerecorder.history.OperationHistory;
+import org.jtool.changerecorder.operation.IOperation;
+import org.eclipse.core.runtime.IProgressMonitor;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads history files concurrently on a fork-join pool.
+ * Each file is converted into a run of operations sorted by time and sequence number,
+ * and the runs are merged into a single list with a k-way merge. Operations having the same
+ * time and sequence number keep the order of their files and their positions in the files,
+ * which is the same order that a stable sort of all the operations produces.
+ * @author Katsuhisa Maruyama
+ */
+class ParallelHistoryReader {
+    
+    /**
+     * The time in milliseconds between two checks of the progress and cancellation.
+     */
+    private static final long POLL_INTERVAL = 100;
+    
+    /**
+     * The pool whose parallelism is the number of available processors.
+     */
+    private static ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * The history files to be read.
+     */
+    private List<File> files;
+    
+    /**
+     * The sorted runs of operations read from the respective files.
+     */
+    private List<List<UnifiedOperation>> runs;
+    
+    /**
+     * The number of files that have been read.
+     */
+    private AtomicInteger readCount = new AtomicInteger(0);
+    
+    /**
+     * A flag indicating if the reading was canceled.
+     */
+    private volatile boolean canceled = false;
+    
+    /**
+     * The path of a file that could not be read, or <code>null</code> if none.
+     */
+    private volatile String failedPath = null;
+    
+    /**
+     * Creates an object that reads history files.
+     * @param files the history files to be read
+     */
+    private ParallelHistoryReader(List<File> files) {
+        this.files = files;
+        runs = new ArrayList<List<UnifiedOperation>>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            runs.add(null);
+        }
+    }
+    
+    /**
+     * Reads history files and returns all the operations stored in them in time order.
+     * @param files the history files
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the collection of all the operations sorted by time and sequence number
+     * @throws InterruptedException if the operation detects a request to cancel or any failure
+     */
+    static List<UnifiedOperation> read(List<File> files, IProgressMonitor monitor) throws InterruptedException {
+        ParallelHistoryReader reader = new ParallelHistoryReader(files);
+        reader.readRuns(monitor);
+        return merge(reader.runs);
+    }
+    
+    /**
+     * Reads all the files into sorted runs while reporting progress.
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @throws InterruptedException if the operation detects a request to cancel or any failure
+     */
+    private void readRuns(IProgressMonitor monitor) throws InterruptedException {
+        RunTask task = new RunTask(0, files.size());
+        pool.execute(task);
+        
+        int reported = 0;
+        while (true) {
+            try {
+                task.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+            } catch (ExecutionException e) {
+                throw new InterruptedException("Fails to read the history files: " + e.getCause());
+            }
+            
+            if (monitor.isCanceled()) {
+                canceled = true;
+            }
+            reported = reportProgress(monitor, reported);
+        }
+        reportProgress(monitor, reported);
+        
+        if (canceled) {
+            monitor.done();
+            throw new InterruptedException("User interrupted");
+        }
+        if (failedPath != null) {
+            throw new InterruptedException("Fails to read the history files " + failedPath);
+        }
+    }
+    
+    /**
+     * Reports the number of files read since the last report.
+     * @param monitor the progress monitor
+     * @param reported the number of files already reported
+     * @return the number of files reported so far
+     */
+    private int reportProgress(IProgressMonitor monitor, int reported) {
+        int count = readCount.get();
+        if (count > reported) {
+            monitor.worked(count - reported);
+        }
+        return count;
+    }
+    
+    /**
+     * Reads a history file into a sorted run of operations.
+     * @param idx the index of the file
+     */
+    private void readRun(int idx) {
+        if (canceled || failedPath != null) {
+            return;
+        }
+        
+        String fpath = files.get(idx).getAbsolutePath();
+        final List<UnifiedOperation> run = new ArrayList<UnifiedOperation>();
+        boolean read = false;
+        try {
+            read = OperationHistory.read(fpath, new OperationHandler() {
+                
+                /**
+                 * Converts a read operation into unified operations.
+                 * @param op the read operation
+                 */
+                @Override
+                public void handle(IOperation op) {
+                    run.addAll(UnifiedOperation.create(op));
+                }
+            });
+        } catch (RuntimeException e) {
+            read = false;
+        }
+        
+        if (!read) {
+            failedPath = fpath;
+            return;
+        }
+        
+        OperationManager.sort(run);
+        runs.set(idx, run);
+        readCount.incrementAndGet();
+    }
+    
+    /**
+     * Merges sorted runs into a single sorted list.
+     * Operations having the same time and sequence number are arranged in the order of the runs.
+     * @param runs the sorted runs of operations
+     * @return the merged list of operations
+     */
+    static List<UnifiedOperation> merge(List<List<UnifiedOperation>> runs) {
+        int size = 0;
+        PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(Math.max(1, runs.size()));
+        for (int i = 0; i < runs.size(); i++) {
+            List<UnifiedOperation> run = runs.get(i);
+            size = size + run.size();
+            if (run.size() > 0) {
+                heads.add(new Cursor(i, run));
+            }
+        }
+        
+        List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>(Math.max(size, 65536));
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            operations.add(cursor.current());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return operations;
+    }
+    
+    /**
+     * A task that reads a range of files, splitting the range until a single file remains.
+     */
+    @SuppressWarnings("serial")
+    private class RunTask extends RecursiveAction {
+        
+        /**
+         * The index of the first file in the range (inclusive).
+         */
+        private int from;
+        
+        /**
+         * The index of the last file in the range (exclusive).
+         */
+        private int to;
+        
+        /**
+         * Creates a task that reads a range of files.
+         * @param from the index of the first file (inclusive)
+         * @param to the index of the last file (exclusive)
+         */
+        RunTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        /**
+         * Reads the files in the range.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    readRun(from);
+                }
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new RunTask(from, mid), new RunTask(mid, to));
+        }
+    }
+    
+    /**
+     * The position of the next operation to be merged in a sorted run.
+     */
+    private static class Cursor implements Comparable<Cursor> {
+        
+        /**
+         * The index of the file from which the run was read.
+         */
+        private int runIdx;
+        
+        /**
+         * The sorted run of operations.
+         */
+        private List<UnifiedOperation> run;
+        
+        /**
+         * The position of the next operation in the run.
+         */
+        private int pos = 0;
+        
+        /**
+         * Creates a cursor at the beginning of a run.
+         * @param runIdx the index of the file from which the run was read
+         * @param run the sorted run of operations
+         */
+        Cursor(int runIdx, List<UnifiedOperation> run) {
+            this.runIdx = runIdx;
+            this.run = run;
+        }
+        
+        /**
+         * Returns the next operation to be merged.
+         * @return the operation
+         */
+        UnifiedOperation current() {
+            return run.get(pos);
+        }
+        
+        /**
+         * Moves to the following operation.
+         * @return <code>true</code> if an operation remains in the run, otherwise <code>false</code>
+         */
+        boolean advance() {
+            pos++;
+            return pos < run.size();
+        }
+        
+        /**
+         * Compares the next operations of two runs by time, sequence number and the order of the files.
+         * @param cursor the cursor to be compared
+         * @return a negative integer, zero, or a positive integer as this cursor goes first, the same, or later
+         */
+        @Override
+        public int compareTo(Cursor cursor) {
+            UnifiedOperation o1 = current();
+            UnifiedOperation o2 = cursor.current();
+            if (o1.getTime() != o2.getTime()) {
+                return (o1.getTime() < o2.getTime()) ? -1 : 1;
+            }
+            if (o1.getSequenceNumber() != o2.getSequenceNumber()) {
+                return (o1.getSequenceNumber() < o2.getSequenceNumber()) ? -1 : 1;
+            }
+            if (runIdx != cursor.runIdx) {
+                return (runIdx < cursor.runIdx) ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
@@ -9,6 +9,9 @@ package org.jtool.changerepository.data;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Stores information on a project.
@@ -26,11 +29,31 @@ public class ProjectInfo extends RepositoryElementInfo {
      */
     private List<FileInfo> files = new ArrayList<FileInfo>();
     
+    /**
+     * The set of the files within this project, which detects duplicated registration.
+     */
+    private Set<FileInfo> fileSet = new HashSet<FileInfo>();
+    
+    /**
+     * A flag indicating if the collection of the files is sorted.
+     */
+    private boolean filesSorted = true;
+    
     /**
      * The collection of all packages within this project.
      */
     private List<PackageInfo> packages = new ArrayList<PackageInfo>();;
     
+    /**
+     * The set of the packages within this project, which detects duplicated registration.
+     */
+    private Set<PackageInfo> packageSet = new HashSet<PackageInfo>();
+    
+    /**
+     * A flag indicating if the collection of the packages is sorted.
+     */
+    private boolean packagesSorted = true;
+    
     /**
      * Creates an instance that stores information on this project.
      * @param name the name of this project
@@ -49,14 +72,6 @@ public class ProjectInfo extends RepositoryElementInfo {
         return workspaceInfo;
     }
     
-    /**
-     * Returns the unique key for this project.
-     * @return the unique key
-     */
-    public String getKey() {
-        return getKey(getQualifiedName(), getTimeFrom(), getTimeTo());
-    }
-    
     /**
      * Returns the qualified name of this project.
      * @return the qualified name of the project
@@ -70,8 +85,9 @@ public class ProjectInfo extends RepositoryElementInfo {
      * @param finfo the file information to be stored
      */
     public void addFileInfo(FileInfo finfo) {
-        if (!files.contains(finfo)) {
+        if (fileSet.add(finfo)) {
             files.add(finfo);
+            filesSorted = false;
         }
     }
     
@@ -80,8 +96,11 @@ public class ProjectInfo extends RepositoryElementInfo {
      * @return the collection of the file information
      */
     public List<FileInfo> getAllFileInfo() {
-        RepositoryElementInfo.sort(files);
-        return files;
+        if (!filesSorted) {
+            RepositoryElementInfo.sort(files);
+            filesSorted = true;
+        }
+        return Collections.unmodifiableList(files);
     }
     
     /**
@@ -89,8 +108,9 @@ public class ProjectInfo extends RepositoryElementInfo {
      * @param finfo the package information to be stored
      */
     public void addPackageInfo(PackageInfo painfo) {
-        if (!packages.contains(painfo)) {
+        if (packageSet.add(painfo)) {
             packages.add(painfo);
+            packagesSorted = false;
         }
     }
     
@@ -99,8 +119,11 @@ public class ProjectInfo extends RepositoryElementInfo {
      * @return the collection of the package information
      */
     public List<PackageInfo> getAllPackageInfo() {
-        RepositoryElementInfo.sort(packages);
-        return packages;
+        if (!packagesSorted) {
+            RepositoryElementInfo.sort(packages);
+            packagesSorted = true;
+        }
+        return Collections.unmodifiableList(packages);
     }
     
     /**
@@ -108,16 +131,34 @@ public class ProjectInfo extends RepositoryElementInfo {
      */
     protected void setTimeRange() {
         for (FileInfo finfo : files) {
-            for (UnifiedOperation op : finfo.getOperations()) {
-                op.setProjectInfo(this);
-                addOperation(op);
-                op.setId(getOperationNumber());
-            }
+            addOperations(finfo.getOperations());
         }
         
         super.setTimeRange();
     }
     
+    /**
+     * Extends the time range for this project with operations newly performed on files within this project.
+     * @param ops the operations to be added
+     */
+    protected void extendTimeRange(List<UnifiedOperation> ops) {
+        addOperations(ops);
+        
+        super.setTimeRange();
+    }
+    
+    /**
+     * Stores operations performed on a file within this project, which are numbered in the order of their storing.
+     * @param ops the operations to be stored
+     */
+    private void addOperations(List<UnifiedOperation> ops) {
+        for (UnifiedOperation op : ops) {
+            op.setProjectInfo(this);
+            addOperation(op);
+            op.setId(getOperationNumber());
+        }
+    }
+    
     /**
      * Tests if a given project is equals to this.
      * @param pinfo the project to be checked
@@ -33,6 +33,11 @@ public class RepositoryElementInfo {
      */
     protected TimeRange timeRange;
     
+    /**
+     * The unique key for this element, which is cached until the time range changes.
+     */
+    private String key = null;
+    
     /**
      * Creates an instance that stores information on this element.
      * @param name the name of this element
@@ -97,6 +102,7 @@ public class RepositoryElementInfo {
             to = operations.get(operations.size() - 1).getTime();
         }
         timeRange = new TimeRange(from, to);
+        key = null;
     }
     
     /**
@@ -123,6 +129,25 @@ public class RepositoryElementInfo {
         return timeRange.getTo();
     }
     
+    /**
+     * Returns the unique key for this element.
+     * @return the unique key
+     */
+    public String getKey() {
+        if (key == null) {
+            key = getKey(getQualifiedName(), getTimeFrom(), getTimeTo());
+        }
+        return key;
+    }
+    
+    /**
+     * Returns the qualified name of this element.
+     * @return the qualified name of the element
+     */
+    public String getQualifiedName() {
+        return getName();
+    }
+    
     /**
      * Returns the key for an element, which combines the name and creation time of the element with the symbol <code>"@"</code>. 
      * @param name the name of the element
@@ -143,7 +168,7 @@ public class RepositoryElementInfo {
         int indexOf = key.indexOf('@');
         return key.substring(0, indexOf);
     }
-     
+    
     /**
      * Sorts the collection of elements in alphabetical order.
      * @param elements the collection of the elements to be sorted
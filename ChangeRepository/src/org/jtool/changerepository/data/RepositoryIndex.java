@@ -0,0 +1,734 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.data;
+
+import org.jtool.changerepository.operation.TextStore;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.operation.AbstractOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.eclipse.core.runtime.IProgressMonitor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the operations read from history files in a persistent index placed in the history directory.
+ * The index consists of immutable segments, each of which holds the operations of the history files
+ * ingested at the same time. A segment is a columnar table of the operations' metadata with the texts
+ * kept in a separate blob file, and both files are memory-mapped when the segment is loaded.
+ * Only history files that have not been ingested yet are read, and they are appended as a new segment.
+ * If an ingested history file was changed or removed, the whole index is rebuilt.
+ * In the lazy mode, the texts of operations are not decoded until they are needed.
+ * The same code of file operations is stored only once in each segment.
+ * @author Katsuhisa Maruyama
+ */
+class RepositoryIndex {
+    
+    /**
+     * The name of the directory storing the index.
+     */
+    static final String INDEX_DIR = ".index";
+    
+    /**
+     * The name of the manifest file of the index.
+     */
+    private static final String MANIFEST_FILE = "manifest";
+    
+    /**
+     * The extension of the segment files storing the metadata of operations.
+     */
+    private static final String OPERATIONS_EXT = ".ops";
+    
+    /**
+     * The extension of the segment files storing the texts of operations.
+     */
+    private static final String TEXTS_EXT = ".txt";
+    
+    /**
+     * The magic number at the beginning of the manifest and segment files.
+     */
+    private static final int MAGIC = 0x4F504958;
+    
+    /**
+     * The version of the index format.
+     */
+    private static final int VERSION = 1;
+    
+    /**
+     * The number of bytes that the columns of a segment occupy for each operation.
+     */
+    private static final int COLUMN_BYTES = 53;
+    
+    /**
+     * The kind of normal operations.
+     */
+    private static final byte NORMAL = 1;
+    
+    /**
+     * The kind of copy operations.
+     */
+    private static final byte COPY = 2;
+    
+    /**
+     * The kind of file operations.
+     */
+    private static final byte FILE = 3;
+    
+    /**
+     * The character set of the texts.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The directory storing the index.
+     */
+    private File indexDir;
+    
+    /**
+     * The directory storing the history files.
+     */
+    private File historyDir;
+    
+    /**
+     * A flag indicating if the texts of operations are kept in the index until they are needed.
+     */
+    private boolean lazy;
+    
+    /**
+     * The strings shared by all the segments, where the first one is <code>null</code>.
+     */
+    private List<String> strings = new ArrayList<String>();
+    
+    /**
+     * The indexes of the strings in the string table.
+     */
+    private Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+    
+    /**
+     * The generation numbers of the segments in the order of their creation.
+     */
+    private List<Integer> segments = new ArrayList<Integer>();
+    
+    /**
+     * The ingested history files, which map their relative paths to their stamps.
+     */
+    private Map<String, FileStamp> ingested = new LinkedHashMap<String, FileStamp>();
+    
+    /**
+     * Creates an index for a history directory.
+     * @param historyDir the directory storing the history files
+     * @param lazy <code>true</code> if the texts of operations are kept in the index until they are needed
+     */
+    private RepositoryIndex(File historyDir, boolean lazy) {
+        this.historyDir = historyDir;
+        this.lazy = lazy;
+        indexDir = new File(historyDir, INDEX_DIR);
+        clearStrings();
+    }
+    
+    /**
+     * Reads all the operations stored in history files, using the index of the history directory.
+     * If the index is not available, all the history files are read.
+     * @param path the top path for the directory storing the history files
+     * @param files the history files existing in the directory
+     * @param lazy <code>true</code> if the texts of operations are kept in the index until they are needed
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the collection of all the operations sorted by time and sequence number
+     * @throws InterruptedException if the operation detects a request to cancel or any failure
+     */
+    static List<UnifiedOperation> read(String path, List<File> files, boolean lazy, IProgressMonitor monitor) throws InterruptedException {
+        TextStore.clearCache();
+        File dir = new File(path);
+        if (!dir.isDirectory()) {
+            return ParallelHistoryReader.read(files, monitor);
+        }
+        
+        RepositoryIndex index = new RepositoryIndex(dir, lazy);
+        return index.read(files, monitor);
+    }
+    
+    /**
+     * Reads all the operations from the index and the history files that have not been ingested yet.
+     * @param files the history files existing in the directory
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the collection of all the operations sorted by time and sequence number
+     * @throws InterruptedException if the operation detects a request to cancel or any failure
+     */
+    private List<UnifiedOperation> read(List<File> files, IProgressMonitor monitor) throws InterruptedException {
+        List<List<UnifiedOperation>> runs = new ArrayList<List<UnifiedOperation>>();
+        Map<String, File> current = new LinkedHashMap<String, File>();
+        for (File file : files) {
+            current.put(getRelativePath(file), file);
+        }
+        
+        try {
+            if (readManifest() && isValid(current)) {
+                for (int gen : segments) {
+                    runs.add(readSegment(gen));
+                }
+            } else {
+                clear();
+            }
+        } catch (IOException e) {
+            System.err.println("Index: Read error occurred in " + indexDir + ": " + e.getMessage() + ".");
+            runs.clear();
+            clear();
+        }
+        monitor.worked(ingested.size());
+        
+        List<File> newFiles = new ArrayList<File>();
+        for (Map.Entry<String, File> entry : current.entrySet()) {
+            if (!ingested.containsKey(entry.getKey())) {
+                newFiles.add(entry.getValue());
+            }
+        }
+        if (newFiles.size() == 0) {
+            return ParallelHistoryReader.merge(runs);
+        }
+        
+        List<UnifiedOperation> ops = ParallelHistoryReader.read(newFiles, monitor);
+        try {
+            writeSegment(ops, newFiles);
+            if (lazy) {
+                ops = readSegment(segments.get(segments.size() - 1));
+            }
+        } catch (IOException e) {
+            System.err.println("Index: Write error occurred in " + indexDir + ": " + e.getMessage() + ".");
+        }
+        runs.add(ops);
+        
+        return ParallelHistoryReader.merge(runs);
+    }
+    
+    /**
+     * Tests if all the ingested history files still exist without any change.
+     * @param current the history files currently existing, which map their relative paths to the files
+     * @return <code>true</code> if the index is valid, otherwise <code>false</code>
+     */
+    private boolean isValid(Map<String, File> current) {
+        for (Map.Entry<String, FileStamp> entry : ingested.entrySet()) {
+            File file = current.get(entry.getKey());
+            if (file == null || !entry.getValue().matches(file)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Discards all the contents of the index.
+     * The cached texts are dropped before the segment files are deleted, since they refer to the mapped
+     * buffers of the files. The operations read from the files must be dropped by the caller in advance.
+     */
+    private void clear() {
+        clearStrings();
+        segments.clear();
+        ingested.clear();
+        TextStore.clearCache();
+        
+        File[] children = indexDir.listFiles();
+        if (children != null) {
+            for (File f : children) {
+                if (!f.delete()) {
+                    System.err.println("Index: Cannot delete " + f + ".");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Clears the string table.
+     */
+    private void clearStrings() {
+        strings.clear();
+        stringIndexes.clear();
+        strings.add(null);
+    }
+    
+    /**
+     * Returns the path of a history file relative to the history directory.
+     * @param file the history file
+     * @return the relative path
+     */
+    private String getRelativePath(File file) {
+        return historyDir.toURI().relativize(file.toURI()).getPath();
+    }
+    
+    /**
+     * Reads the manifest of the index.
+     * @return <code>true</code> if the manifest exists, otherwise <code>false</code>
+     * @throws IOException if an I/O error occurs or the manifest is invalid
+     */
+    private boolean readManifest() throws IOException {
+        File file = new File(indexDir, MANIFEST_FILE);
+        if (!file.isFile()) {
+            return false;
+        }
+        
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            
+            int num = in.readInt();
+            for (int i = 0; i < num; i++) {
+                addString(in.readUTF());
+            }
+            
+            num = in.readInt();
+            for (int i = 0; i < num; i++) {
+                segments.add(in.readInt());
+            }
+            
+            num = in.readInt();
+            for (int i = 0; i < num; i++) {
+                String path = in.readUTF();
+                ingested.put(path, new FileStamp(in.readLong(), in.readLong()));
+            }
+            return true;
+            
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Writes the manifest of the index, which replaces the previous one at once.
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeManifest() throws IOException {
+        File file = new File(indexDir, MANIFEST_FILE);
+        File tmp = new File(indexDir, MANIFEST_FILE + ".tmp");
+        
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            out.writeInt(strings.size() - 1);
+            for (int i = 1; i < strings.size(); i++) {
+                out.writeUTF(strings.get(i));
+            }
+            
+            out.writeInt(segments.size());
+            for (int gen : segments) {
+                out.writeInt(gen);
+            }
+            
+            out.writeInt(ingested.size());
+            for (Map.Entry<String, FileStamp> entry : ingested.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().length);
+                out.writeLong(entry.getValue().lastModified);
+            }
+        } finally {
+            out.close();
+        }
+        
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("cannot replace " + file);
+        }
+    }
+    
+    /**
+     * Reads the operations stored in a segment.
+     * @param gen the generation number of the segment
+     * @return the operations sorted by time and sequence number
+     * @throws IOException if an I/O error occurs or the segment is invalid
+     */
+    private List<UnifiedOperation> readSegment(int gen) throws IOException {
+        MappedByteBuffer ops = map(new File(indexDir, gen + OPERATIONS_EXT));
+        MappedByteBuffer texts = map(new File(indexDir, gen + TEXTS_EXT));
+        if (ops.capacity() < 12 || ops.getInt(0) != MAGIC || ops.getInt(4) != VERSION) {
+            throw new IOException("invalid segment " + gen);
+        }
+        
+        int size = ops.getInt(8);
+        if (size < 0 || size > ops.capacity() / COLUMN_BYTES) {
+            throw new IOException("broken segment " + gen);
+        }
+        int times = 12;
+        int seqs = times + 8 * size;
+        int kinds = seqs + 4 * size;
+        int starts = kinds + size;
+        int paths = starts + 4 * size;
+        int authors = paths + 4 * size;
+        int actions = authors + 4 * size;
+        int textOffsets = actions + 4 * size;
+        int textLengths = textOffsets + 8 * size;
+        int subtextOffsets = textLengths + 4 * size;
+        int subtextLengths = subtextOffsets + 8 * size;
+        if (ops.capacity() != subtextLengths + 4 * size) {
+            throw new IOException("broken segment " + gen);
+        }
+        
+        TextStore store = null;
+        if (lazy) {
+            store = new TextStore(texts);
+        }
+        
+        List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>(size);
+        Map<Long, String> snapshots = new HashMap<Long, String>();
+        for (int i = 0; i < size; i++) {
+            long time = ops.getLong(times + 8 * i);
+            int seq = ops.getInt(seqs + 4 * i);
+            byte kind = ops.get(kinds + i);
+            int start = ops.getInt(starts + 4 * i);
+            String path = getString(ops.getInt(paths + 4 * i));
+            String author = getString(ops.getInt(authors + 4 * i));
+            String action = getString(ops.getInt(actions + 4 * i));
+            long textOffset = ops.getLong(textOffsets + 8 * i);
+            int textLength = ops.getInt(textLengths + 4 * i);
+            long subtextOffset = ops.getLong(subtextOffsets + 8 * i);
+            int subtextLength = ops.getInt(subtextLengths + 4 * i);
+            checkText(texts, textOffset, textLength);
+            checkText(texts, subtextOffset, subtextLength);
+            
+            String text = null;
+            String subtext = null;
+            if (store == null) {
+                if (kind == FILE) {
+                    text = snapshots.get(textOffset);
+                }
+                if (text == null) {
+                    text = getText(texts, textOffset, textLength);
+                }
+                subtext = getText(texts, subtextOffset, subtextLength);
+                if (kind == FILE && text != null) {
+                    snapshots.put(textOffset, text);
+                }
+            }
+            
+            IOperation op;
+            if (kind == NORMAL) {
+                op = new NormalOperation(time, seq, path, author, start, text, subtext, NormalOperation.Type.parseType(action));
+                
+            } else if (kind == COPY) {
+                op = new CopyOperation(time, path, author, start, text);
+                
+            } else if (kind == FILE) {
+                op = new FileOperation(time, path, author, FileOperation.Type.parseType(action), text);
+                
+            } else {
+                throw new IOException("unknown operation kind " + kind);
+            }
+            
+            ((AbstractOperation)op).setSequenceNumber(seq);
+            if (store != null) {
+                operations.add(UnifiedOperation.create(op, store, textOffset, textLength, subtextOffset, subtextLength));
+            } else {
+                operations.add(UnifiedOperation.create(op).get(0));
+            }
+        }
+        return operations;
+    }
+    
+    /**
+     * Maps a file into memory for reading.
+     * The channel of the file is closed as soon as the file is mapped, and the mapping is released
+     * when the returned buffer is no longer referenced.
+     * @param file the file to be mapped
+     * @return the mapped buffer
+     * @throws IOException if an I/O error occurs or the file is too large to be mapped
+     */
+    private MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("too large segment file " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+    
+    /**
+     * Returns the string with a given index in the string table.
+     * @param index the index of the string
+     * @return the string, which might be <code>null</code>
+     * @throws IOException if the index is invalid
+     */
+    private String getString(int index) throws IOException {
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("invalid string index " + index);
+        }
+        return strings.get(index);
+    }
+    
+    /**
+     * Checks if a text is within a text blob.
+     * @param texts the text blob
+     * @param offset the offset of the text in the blob
+     * @param length the number of bytes of the text, or <code>-1</code> for <code>null</code>
+     * @throws IOException if the text is out of the blob
+     */
+    private static void checkText(MappedByteBuffer texts, long offset, int length) throws IOException {
+        if (length >= 0 && (offset < 0 || offset + length > texts.capacity())) {
+            throw new IOException("invalid text range " + offset);
+        }
+    }
+    
+    /**
+     * Decodes a text stored in a text blob.
+     * @param texts the text blob
+     * @param offset the offset of the text in the blob
+     * @param length the number of bytes of the text, or <code>-1</code> for <code>null</code>
+     * @return the text, which might be <code>null</code>
+     * @throws IOException if the text is out of the blob
+     */
+    private static String getText(MappedByteBuffer texts, long offset, int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        checkText(texts, offset, length);
+        
+        byte[] bytes = new byte[length];
+        ByteBuffer buf = texts.duplicate();
+        buf.position((int)offset);
+        buf.get(bytes);
+        return new String(bytes, UTF8);
+    }
+    
+    /**
+     * Writes operations read from history files as a new segment and records the files as ingested ones.
+     * @param ops the operations sorted by time and sequence number
+     * @param files the history files from which the operations were read
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeSegment(List<UnifiedOperation> ops, List<File> files) throws IOException {
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            throw new IOException("cannot create " + indexDir);
+        }
+        
+        int gen = 1;
+        for (int g : segments) {
+            gen = Math.max(gen, g + 1);
+        }
+        while (new File(indexDir, gen + OPERATIONS_EXT).exists() || new File(indexDir, gen + TEXTS_EXT).exists()) {
+            gen++;
+        }
+        
+        int size = ops.size();
+        long[] textOffsets = new long[size];
+        int[] textLengths = new int[size];
+        long[] subtextOffsets = new long[size];
+        int[] subtextLengths = new int[size];
+        Map<String, Integer> snapshots = new HashMap<String, Integer>();
+        
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(indexDir, gen + TEXTS_EXT))));
+        try {
+            long offset = 0;
+            for (int i = 0; i < size; i++) {
+                IOperation op = ops.get(i).getIOperation();
+                String text = null;
+                String subtext = null;
+                if (op instanceof NormalOperation) {
+                    text = ((NormalOperation)op).getInsertedText();
+                    subtext = ((NormalOperation)op).getDeletedText();
+                } else if (op instanceof CopyOperation) {
+                    text = ((CopyOperation)op).getCopiedText();
+                } else if (op instanceof FileOperation) {
+                    text = ((FileOperation)op).getCode();
+                    Integer prev = snapshots.get(text);
+                    if (prev != null) {
+                        textOffsets[i] = textOffsets[prev];
+                        textLengths[i] = textLengths[prev];
+                        subtextOffsets[i] = offset;
+                        subtextLengths[i] = -1;
+                        continue;
+                    }
+                    if (text != null) {
+                        snapshots.put(text, i);
+                    }
+                }
+                
+                textOffsets[i] = offset;
+                textLengths[i] = writeText(out, text);
+                offset = offset + Math.max(textLengths[i], 0);
+                subtextOffsets[i] = offset;
+                subtextLengths[i] = writeText(out, subtext);
+                offset = offset + Math.max(subtextLengths[i], 0);
+            }
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("too large segment");
+            }
+        } finally {
+            out.close();
+        }
+        
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(indexDir, gen + OPERATIONS_EXT))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for (UnifiedOperation op : ops) {
+                out.writeLong(op.getTime());
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeInt(op.getSequenceNumber());
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeByte(getKind(op.getIOperation()));
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeInt(op.getStart());
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeInt(addString(op.getIOperation().getFilePath()));
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeInt(addString(op.getIOperation().getAuthor()));
+            }
+            for (UnifiedOperation op : ops) {
+                out.writeInt(addString(getAction(op.getIOperation())));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(textOffsets[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(textLengths[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(subtextOffsets[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(subtextLengths[i]);
+            }
+        } finally {
+            out.close();
+        }
+        
+        segments.add(gen);
+        for (File file : files) {
+            ingested.put(getRelativePath(file), new FileStamp(file.length(), file.lastModified()));
+        }
+        writeManifest();
+    }
+    
+    /**
+     * Writes a text in UTF-8.
+     * @param out the stream receiving the text
+     * @param text the text, which might be <code>null</code>
+     * @return the number of written bytes, or <code>-1</code> if the text is <code>null</code>
+     * @throws IOException if an I/O error occurs
+     */
+    private static int writeText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            return -1;
+        }
+        
+        byte[] bytes = text.getBytes(UTF8);
+        out.write(bytes);
+        return bytes.length;
+    }
+    
+    /**
+     * Returns the kind of an operation stored in the index.
+     * @param op the operation
+     * @return the kind of the operation
+     * @throws IOException if the operation cannot be stored
+     */
+    private static byte getKind(IOperation op) throws IOException {
+        if (op instanceof NormalOperation) {
+            return NORMAL;
+        } else if (op instanceof CopyOperation) {
+            return COPY;
+        } else if (op instanceof FileOperation) {
+            return FILE;
+        }
+        throw new IOException("cannot store " + op.getOperationType());
+    }
+    
+    /**
+     * Returns the action type of an operation stored in the index.
+     * @param op the operation
+     * @return the string of the action type, or <code>null</code> if the operation has no action type
+     */
+    private static String getAction(IOperation op) {
+        if (op instanceof NormalOperation) {
+            return ((NormalOperation)op).getActionType().toString();
+        } else if (op instanceof FileOperation) {
+            return ((FileOperation)op).getActionType().toString();
+        }
+        return null;
+    }
+    
+    /**
+     * Registers a string with the string table.
+     * @param str the string, which might be <code>null</code>
+     * @return the index of the string
+     */
+    private int addString(String str) {
+        if (str == null) {
+            return 0;
+        }
+        
+        Integer index = stringIndexes.get(str);
+        if (index == null) {
+            index = strings.size();
+            strings.add(str);
+            stringIndexes.put(str, index);
+        }
+        return index;
+    }
+    
+    /**
+     * The length and the last modified time of a history file, which detect its change.
+     */
+    private static class FileStamp {
+        
+        /**
+         * The length of the file.
+         */
+        private long length;
+        
+        /**
+         * The last modified time of the file.
+         */
+        private long lastModified;
+        
+        /**
+         * Creates a stamp of a file.
+         * @param length the length of the file
+         * @param lastModified the last modified time of the file
+         */
+        FileStamp(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+        
+        /**
+         * Tests if a file has the same length and last modified time as this stamp.
+         * @param file the file to be checked
+         * @return <code>true</code> if the file was not changed, otherwise <code>false</code>
+         */
+        boolean matches(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
@@ -9,21 +9,27 @@ package org.jtool.changerepository.data;
 import org.jtool.changerepository.Activator;
 import org.jtool.changerepository.event.RepositoryEventSource;
 import org.jtool.changerepository.event.RepositoryChangedEvent;
+import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
-import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.editor.HistoryManager;
+import org.jtool.changerecorder.event.OperationEvent;
+import org.jtool.changerecorder.event.OperationEventListener;
 import org.jtool.changerecorder.history.OperationHistory;
-import org.jtool.changerecorder.history.Xml2Operation;
-import org.jtool.changerecorder.util.XmlFileStream;
-import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.jtool.changerecorder.operation.IOperation;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.ui.IWorkbenchWindow;
-import org.w3c.dom.Document;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
 import java.io.File;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
-import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Collects information on a workspace and elements (projects, packages, and files) under it.
@@ -36,6 +42,11 @@ public class RepositoryManager {
      */
     private static RepositoryManager singleton = new RepositoryManager();
     
+    /**
+     * The time in milliseconds during which recorded operations are coalesced into a single update.
+     */
+    private static final long LIVE_UPDATE_DELAY = 500;
+    
     /**
      * The map stores projects currently existing in this repository.
      */
@@ -51,10 +62,22 @@ public class RepositoryManager {
      */
     private Map<String, FileInfo> fileInfoMap = new HashMap<String, FileInfo>();
     
+    /**
+     * The map stores files currently existing in this repository, which are indexed by the paths of the operations.
+     * Each distinct path is decomposed into the names of its project, package, and file only once.
+     */
+    private Map<String, FileInfo> pathInfoMap = new HashMap<String, FileInfo>();
+    
+    /**
+     * The workspace whose projects, packages, and files are kept in the maps, or <code>null</code> if none.
+     * The maps are kept across the updates with operations recorded in the current session.
+     */
+    private WorkspaceInfo restoredWorkspaceInfo = null;
+    
     /**
      * The information on the workspace, which indicates either internal one or external one.
      */
-    private WorkspaceInfo workspaceInfo;
+    private volatile WorkspaceInfo workspaceInfo;
     
     /**
      * The information on the internal workspace, which indicates Eclipse's default workspace.
@@ -66,10 +89,80 @@ public class RepositoryManager {
      */
     private WorkspaceInfo externalWorkspaceInfo;
     
+    /**
+     * The rule that prevents two jobs collecting operations from running at the same time.
+     */
+    private ISchedulingRule collectionRule = new ISchedulingRule() {
+        
+        /**
+         * Tests if this rule contains a given rule.
+         * @param rule the rule to be checked
+         * @return <code>true</code> if the rules are the same, otherwise <code>false</code>
+         */
+        @Override
+        public boolean contains(ISchedulingRule rule) {
+            return rule == this;
+        }
+        
+        /**
+         * Tests if this rule conflicts with a given rule.
+         * @param rule the rule to be checked
+         * @return <code>true</code> if the rules are the same, otherwise <code>false</code>
+         */
+        @Override
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule == this;
+        }
+    };
+    
+    /**
+     * The operations recorded in the current session, which have not been added to the internal workspace yet.
+     */
+    private List<UnifiedOperation> liveOperations = new ArrayList<UnifiedOperation>();
+    
+    /**
+     * A flag indicating if this manager receives operations recorded in the current session.
+     */
+    private boolean listening = false;
+    
+    /**
+     * A listener that receives operations recorded in the current session.
+     */
+    private OperationEventListener liveOperationListener = new OperationEventListener() {
+        
+        /**
+         * Receives an operation event when operation history was updated.
+         * @param evt the received event
+         */
+        @Override
+        public void historyNotification(OperationEvent evt) {
+            addLiveOperation(evt.getOperation());
+        }
+    };
+    
+    /**
+     * The job that adds the operations recorded in the current session to the internal workspace.
+     */
+    private Job liveUpdateJob = new Job("Updating operations") {
+        
+        /**
+         * Adds the recorded operations to the internal workspace.
+         * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+         * @return the result of the update
+         */
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            updateOperations();
+            return Status.OK_STATUS;
+        }
+    };
+    
     /**
      * Creates an empty object.
      */
     private RepositoryManager() {
+        liveUpdateJob.setRule(collectionRule);
+        liveUpdateJob.setSystem(true);
     }
     
     /**
@@ -108,7 +201,7 @@ public class RepositoryManager {
      */
     public void collectOperationsInDefaultPath() {
         String defaultDirPath = OperationHistory.getOperationHistoryDirPath().toString();
-        internalWorkspaceInfo = registOperations(defaultDirPath);
+        registOperations(defaultDirPath, true);
     }
     
     /**
@@ -117,32 +210,316 @@ public class RepositoryManager {
      */
     public void collectOperationsInRepository(String path) {
         externalWorkspaceInfo.clear();
-        externalWorkspaceInfo = registOperations(path);
+        registOperations(path, false);
     }
     
     /**
-     * Collects all operations stored in the history files existing in a specified directory.
+     * Collects all operations stored in the history files existing in a specified directory in the background.
+     * The collected workspace becomes the current one and listeners are notified of it on the UI thread.
+     * For the internal workspace, the operations recorded in the current session are compacted into a history file
+     * before the files are listed. The live operations received before the compaction are discarded since they are
+     * read from the files, and the ones received after it are added once the collection has finished.
      * @param path the top path for the directory storing the history files
-     * @return the information on the workspace
+     * @param internal <code>true</code> if the directory stores the history of the internal workspace
      */
-    private WorkspaceInfo registOperations(String path) {
+    private void registOperations(final String path, final boolean internal) {
         if (path == null) {
-            return null;
+            setWorkspaceInfo(null, internal);
+            return;
         }
         
-        List<File> files = getAllHistoryFiles(path);
-        if (files.size() == 0) {
-            return null;
+        if (internal) {
+            startListening();
+        }
+        
+        Job job = new Job("Extracting operations") {
+            
+            /**
+             * Reads history files existing in the specified directory.
+             * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+             * @return the result of the reading
+             */
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                if (internal) {
+                    HistoryManager.getInstance().compactHistory(new Runnable() {
+                        
+                        /**
+                         * Discards the live operations that have been written into the history files.
+                         */
+                        @Override
+                        public void run() {
+                            synchronized (liveOperations) {
+                                liveOperations.clear();
+                            }
+                        }
+                    });
+                }
+                
+                List<File> files = getAllHistoryFiles(path);
+                if (files.size() == 0) {
+                    setWorkspaceInfo(null, internal);
+                    return Status.OK_STATUS;
+                }
+                
+                WorkspaceInfo winfo = collectOperations(path, files, monitor);
+                if (winfo == null) {
+                    return Status.CANCEL_STATUS;
+                }
+                
+                setWorkspaceInfo(winfo, internal);
+                fireRepositoryChanged();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setRule(collectionRule);
+        job.setUser(true);
+        job.schedule();
+    }
+    
+    /**
+     * Sets the information on a collected workspace as the current one.
+     * @param winfo the information on the collected workspace
+     * @param internal <code>true</code> if the collected workspace is the internal one
+     */
+    private synchronized void setWorkspaceInfo(WorkspaceInfo winfo, boolean internal) {
+        if (internal) {
+            internalWorkspaceInfo = winfo;
+        } else {
+            externalWorkspaceInfo = winfo;
+        }
+        if (winfo != null) {
+            workspaceInfo = winfo;
+        }
+    }
+    
+    /**
+     * Starts receiving the operations recorded in the current session.
+     * The listener is added before the history files are read, so that no operation recorded while they are read is missed.
+     */
+    private synchronized void startListening() {
+        if (!listening) {
+            HistoryManager.getInstance().addOperationEventListener(liveOperationListener);
+            listening = true;
+        }
+    }
+    
+    /**
+     * Notifies listeners of the change of the repository on the UI thread.
+     */
+    private void fireRepositoryChanged() {
+        fireRepositoryChanged(RepositoryChangedEvent.Type.DEFAULT);
+    }
+    
+    /**
+     * Notifies listeners of the change of the repository on the UI thread.
+     * @param type the type of the change
+     */
+    private void fireRepositoryChanged(final RepositoryChangedEvent.Type type) {
+        Display.getDefault().asyncExec(new Runnable() {
+            
+            /**
+             * Sends the event to the listeners.
+             */
+            @Override
+            public void run() {
+                RepositoryChangedEvent evt = new RepositoryChangedEvent(RepositoryManager.this, type);
+                RepositoryEventSource.getInstance().fire(evt);
+            }
+        });
+    }
+    
+    /**
+     * Stores an operation recorded in the current session and schedules the update of the internal workspace.
+     * Operations recorded while the update is sleeping are coalesced into the same update.
+     * @param op the recorded operation
+     */
+    private void addLiveOperation(IOperation op) {
+        List<UnifiedOperation> ops = UnifiedOperation.create(op);
+        synchronized (liveOperations) {
+            liveOperations.addAll(ops);
         }
         
-        workspaceInfo = collectOperations(path, files);
+        if (liveUpdateJob.getState() != Job.SLEEPING) {
+            liveUpdateJob.schedule(LIVE_UPDATE_DELAY);
+        }
+    }
+    
+    /**
+     * Adds the operations recorded in the current session to the internal workspace and notifies listeners of the update.
+     * The maps of the projects, packages, and files are kept from the collection of the internal workspace,
+     * and are restored on the UI thread only if they were replaced, since the elements are sorted while being traversed.
+     * A resource change operation is added separately from the other operations, since it may change the files
+     * on which the following operations are performed.
+     */
+    private void updateOperations() {
+        List<UnifiedOperation> ops;
+        synchronized (liveOperations) {
+            ops = new ArrayList<UnifiedOperation>(liveOperations);
+            liveOperations.clear();
+        }
         
-        if (workspaceInfo != null) {
-            RepositoryChangedEvent evt = new RepositoryChangedEvent(this);
-            RepositoryEventSource.getInstance().fire(evt);
+        final WorkspaceInfo winfo = internalWorkspaceInfo;
+        if (winfo == null || ops.size() == 0) {
+            return;
         }
         
-        return workspaceInfo;
+        if (restoredWorkspaceInfo != winfo) {
+            Display.getDefault().syncExec(new Runnable() {
+            
+                /**
+                 * Restores the maps from the workspace.
+                 */
+                @Override
+                public void run() {
+                    clearAllInfo();
+                    restoreAllInfo(winfo);
+                    restoredWorkspaceInfo = winfo;
+                }
+            });
+        }
+        
+        int from = 0;
+        while (from < ops.size()) {
+            int to = from + 1;
+            if (!ops.get(from).isResourceOperation()) {
+                while (to < ops.size() && !ops.get(to).isResourceOperation()) {
+                    to++;
+                }
+            }
+            extendOperations(winfo, ops.subList(from, to));
+            from = to;
+        }
+        
+        if (workspaceInfo == winfo) {
+            fireRepositoryChanged(RepositoryChangedEvent.Type.UPDATE);
+        }
+    }
+    
+    /**
+     * Adds operations performed after all the operations within a workspace to it.
+     * The operations on the files already having their time ranges are fabricated and replayed in the calling job,
+     * and the workspace is modified only with the prepared results on the UI thread so that views never see it
+     * partially updated. The other operations are registered on the UI thread, where only they are replayed.
+     * @param winfo the information on the workspace
+     * @param ops the operations to be added, which contain no resource change operation unless it is the only one
+     */
+    private void extendOperations(final WorkspaceInfo winfo, final List<UnifiedOperation> ops) {
+        Map<FileInfo, List<UnifiedOperation>> fileOps = new LinkedHashMap<FileInfo, List<UnifiedOperation>>();
+        final List<UnifiedOperation> others = new ArrayList<UnifiedOperation>();
+        for (UnifiedOperation op : ops) {
+            FileInfo finfo = null;
+            if (!op.isResourceOperation()) {
+                finfo = findFileInfo(op.getFile());
+            }
+            
+            if (finfo != null && finfo.getTimeRange() != null) {
+                op.setFileInfo(finfo);
+                List<UnifiedOperation> fops = fileOps.get(finfo);
+                if (fops == null) {
+                    fops = new ArrayList<UnifiedOperation>();
+                    fileOps.put(finfo, fops);
+                }
+                fops.add(op);
+            } else {
+                others.add(op);
+            }
+        }
+        
+        final Map<FileInfo, OperationManager.Extension> extensions = new LinkedHashMap<FileInfo, OperationManager.Extension>();
+        for (Map.Entry<FileInfo, List<UnifiedOperation>> entry : fileOps.entrySet()) {
+            extensions.put(entry.getKey(), entry.getKey().prepareExtension(entry.getValue()));
+        }
+        
+        Display.getDefault().syncExec(new Runnable() {
+            
+            /**
+             * Adds the operations to the workspace.
+             */
+            @Override
+            public void run() {
+                publishOperations(winfo, ops, extensions, others);
+            }
+        });
+    }
+    
+    /**
+     * Modifies a workspace with operations added to it.
+     * If the modification fails, the maps are cleared so that they are restored at the next update.
+     * @param winfo the information on the workspace
+     * @param ops the operations to be added
+     * @param extensions the extensions prepared for the files on which the operations were performed
+     * @param others the operations to be added for which no extension was prepared
+     */
+    private void publishOperations(WorkspaceInfo winfo, List<UnifiedOperation> ops,
+            Map<FileInfo, OperationManager.Extension> extensions, List<UnifiedOperation> others) {
+        try {
+            for (Map.Entry<FileInfo, OperationManager.Extension> entry : extensions.entrySet()) {
+                FileInfo finfo = entry.getKey();
+                List<UnifiedOperation> fops = finfo.extendTimeRange(entry.getValue());
+                finfo.getProjectInfo().extendTimeRange(fops);
+                finfo.getPackageInfo().extendTimeRange(fops);
+            }
+            
+            Set<FileInfo> files = new LinkedHashSet<FileInfo>();
+            for (UnifiedOperation op : others) {
+                registOperation(winfo, op);
+                
+                if (op.getFileInfo() != null) {
+                    files.add(op.getFileInfo());
+                }
+            }
+            
+            for (FileInfo finfo : files) {
+                List<UnifiedOperation> fops = finfo.extendTimeRange();
+                finfo.getProjectInfo().extendTimeRange(fops);
+                finfo.getPackageInfo().extendTimeRange(fops);
+            }
+            winfo.extendTimeRange(ops);
+            
+        } catch (RuntimeException e) {
+            clearAllInfo();
+            throw e;
+        }
+    }
+    
+    /**
+     * Finds the information on a file already registered, which is looked up by the path of the operations on it.
+     * @param path the path for the file
+     * @return the file information, or <code>null</code> if the file has not been registered
+     */
+    private FileInfo findFileInfo(String path) {
+        FileInfo finfo = pathInfoMap.get(path);
+        if (finfo == null) {
+            finfo = fileInfoMap.get(getFileKey(getProjectName(path), getPackageName(path), getFileName(path)));
+            if (finfo != null) {
+                pathInfoMap.put(path, finfo);
+            }
+        }
+        return finfo;
+    }
+    
+    /**
+     * Restores information on the projects, packages, and files within a workspace that was already collected,
+     * so that operations can be registered on them.
+     * @param winfo the information on the workspace
+     */
+    private void restoreAllInfo(WorkspaceInfo winfo) {
+        for (ProjectInfo pinfo : winfo.getAllProjectInfo()) {
+            projectInfoMap.put(getProjectKey(pinfo.getName()), pinfo);
+            
+            for (PackageInfo painfo : pinfo.getAllPackageInfo()) {
+                packageInfoMap.put(getPackageKey(pinfo.getName(), painfo.getName()), painfo);
+                
+                for (FileInfo finfo : painfo.getAllFileInfo()) {
+                    String key = getFileKey(pinfo.getName(), painfo.getName(), finfo.getName());
+                    FileInfo last = fileInfoMap.get(key);
+                    if (last == null || last.getTimeFrom() < finfo.getTimeFrom()) {
+                        fileInfoMap.put(key, finfo);
+                    }
+                }
+            }
+        }
     }
     
     /**
@@ -152,55 +529,42 @@ public class RepositoryManager {
         projectInfoMap.clear();
         packageInfoMap.clear();
         fileInfoMap.clear();
+        pathInfoMap.clear();
+        restoredWorkspaceInfo = null;
     }
     
     /**
      * Collects all operations stored in history files existing in a specified directory.
+     * The maps of the projects, packages, and files are kept for the collected workspace.
      * @param path the top path for the directory storing the history files
      * @param files the collection of history files storing the operations
-     * @return the information on the workspace
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the information on the workspace, or <code>null</code> if the collection was canceled or failed
      */
-    private WorkspaceInfo collectOperations(String path, final List<File> files) {
-        final WorkspaceInfo workspaceInfo = new WorkspaceInfo(path);
+    private WorkspaceInfo collectOperations(String path, List<File> files, IProgressMonitor monitor) {
+        WorkspaceInfo workspaceInfo = new WorkspaceInfo(path);
+        clearAllInfo();
         try {
-            IWorkbenchWindow window = Activator.getWorkbenchWindow();
-            window.run(false, true, new IRunnableWithProgress() {
-                
-                /**
-                 * Reads history files existing in the specified directory.
-                 * @param monitor the progress monitor to use to display progress and receive requests for cancellation
-                 * @exception InterruptedException if the operation detects a request to cancel
-                 */
-                @Override
-                public void run(IProgressMonitor monitor) throws InterruptedException {
-                    monitor.beginTask("Extracting operations", files.size() * 2);
-                    
-                    List<UnifiedOperation> ops = readHistoryFiles(files, monitor);
-                    workspaceInfo.setOperations(ops);
-                    
-                    registOperations(workspaceInfo, ops, monitor);
-                    
-                    workspaceInfo.setTimeRange();
-                    workspaceInfo.fixMismatches();
-                    
-                    monitor.done();
-                }
-            });
+            monitor.beginTask("Extracting operations", files.size() * 2);
             
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-            System.err.println(e.getCause());
-            clearAllInfo();
-            return null;
+            List<UnifiedOperation> ops = RepositoryIndex.read(path, files, Activator.loadTextsLazily(), monitor);
+            workspaceInfo.setOperations(ops);
+            
+            registOperations(workspaceInfo, ops, monitor);
+            
+            workspaceInfo.setTimeRange();
+            workspaceInfo.fixMismatches();
+            restoredWorkspaceInfo = workspaceInfo;
             
         } catch (InterruptedException e) {
-            System.err.println(e.getCause());
+            System.err.println(e.getMessage());
             clearAllInfo();
             return null;
+            
+        } finally {
+            monitor.done();
         }
         
-        clearAllInfo();
-        
         return workspaceInfo;
     }
     
@@ -214,7 +578,7 @@ public class RepositoryManager {
         
         File dir = new File(path);
         if (dir.isFile()) {
-            if (path.endsWith(".xml")) {
+            if (OperationHistory.isHistoryFile(path)) {
                 files.add(dir);
             }
         } else if (dir.isDirectory()) {
@@ -227,47 +591,6 @@ public class RepositoryManager {
         return files;
     }
     
-    /**
-     * Reads the history files.
-     * @param files the collection of the history files
-     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
-     * @return the collection of all the operations stored in the history files
-     * @throws InterruptedException if the operation detects a request to cancel or any failure
-     */
-    private List<UnifiedOperation> readHistoryFiles(List<File> files, IProgressMonitor monitor) throws InterruptedException {
-        List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>(65536);
-        for (File file : files) {
-            String fpath = file.getAbsolutePath();
-            Document doc = null;
-            try {
-                doc = XmlFileStream.read(fpath);
-            } catch (Exception e) {
-                throw new InterruptedException("Fails to read the history files " + fpath);
-            }
-            
-            OperationHistory history = Xml2Operation.convert(doc);
-            
-            if (history == null) {
-                throw new InterruptedException("Fails to convert the history files " + fpath);
-            }
-            
-            for (int i = 0; i < history.size(); i++) {
-                IOperation op = history.getOperation(i);
-                List<UnifiedOperation> ops = UnifiedOperation.create(op);
-                operations.addAll(ops);
-            }
-            
-            if (monitor.isCanceled()) {
-                monitor.done();
-                throw new InterruptedException("User interrupted");
-            }
-            
-            monitor.worked(1);
-        }
-        
-        return operations;
-    }
-    
     /**
      * Registers operations on information of their respective files, packages, and projects.
      * @param winfo the information on the workspace
@@ -277,19 +600,7 @@ public class RepositoryManager {
      */
     private void registOperations(WorkspaceInfo winfo, List<UnifiedOperation> ops, IProgressMonitor monitor) throws InterruptedException {
         for (int idx = 0; idx < ops.size(); idx++) {
-            UnifiedOperation op = ops.get(idx);
-            
-            String filePath = op.getFile();
-            String projectName = getProjectName(filePath);
-            String packageName = getPackageName(filePath);
-            String fileName = getFileName(filePath);
-            
-            if (op.isResourceOperation()) {
-                resourecChange(winfo, op, projectName, packageName, fileName);
-                
-            } else {
-                registOperation(winfo, op, projectName, packageName, fileName);
-            }
+            registOperation(winfo, ops.get(idx));
             
             if (monitor.isCanceled()) {
                 monitor.done();
@@ -300,6 +611,38 @@ public class RepositoryManager {
         }
     }
     
+    /**
+     * Registers an operation on information of its file, package, and project.
+     * The file is looked up by the path of the operation, so that no name or key is created
+     * unless the path appears for the first time or a resource change operation was performed.
+     * @param winfo the information on the workspace
+     * @param op the operation to be stored
+     */
+    private void registOperation(WorkspaceInfo winfo, UnifiedOperation op) {
+        String filePath = op.getFile();
+        if (!op.isResourceOperation()) {
+            FileInfo fileInfo = pathInfoMap.get(filePath);
+            if (fileInfo != null) {
+                op.setFileInfo(fileInfo);
+                fileInfo.addOperation(op);
+                return;
+            }
+        }
+        
+        String projectName = getProjectName(filePath);
+        String packageName = getPackageName(filePath);
+        String fileName = getFileName(filePath);
+        
+        if (op.isResourceOperation()) {
+            resourecChange(winfo, op, projectName, packageName, fileName);
+            pathInfoMap.clear();
+            
+        } else {
+            registOperation(winfo, op, projectName, packageName, fileName);
+            pathInfoMap.put(filePath, op.getFileInfo());
+        }
+    }
+    
     /**
      * Registers resource change operations on information of their respective files.
      * @param winfo the information on the workspace
@@ -10,6 +10,11 @@ import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Stores information on a workspace.
@@ -17,6 +22,11 @@ import java.util.ArrayList;
  */
 public class WorkspaceInfo extends RepositoryElementInfo {
     
+    /**
+     * The pool that processes files in parallel, whose parallelism is the number of available processors.
+     */
+    private static ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    
     /**
      * The collection of all projects within this workspace.
      */
@@ -27,6 +37,31 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      */
     private List<FileInfo> files = new ArrayList<FileInfo>();
     
+    /**
+     * A flag indicating if the collection of the projects is sorted.
+     */
+    private boolean projectsSorted = true;
+    
+    /**
+     * A flag indicating if the collection of the files is sorted.
+     */
+    private boolean filesSorted = true;
+    
+    /**
+     * The index of the projects by their keys, or <code>null</code> if it must be rebuilt.
+     */
+    private Map<String, ProjectInfo> projectIndex = null;
+    
+    /**
+     * The index of the files by their keys, or <code>null</code> if it must be rebuilt.
+     */
+    private Map<String, FileInfo> fileIndex = null;
+    
+    /**
+     * The index of the files by their paths, or <code>null</code> if it must be rebuilt.
+     */
+    private Map<String, List<FileInfo>> filePathIndex = null;
+    
     /**
      * The operations related to the whole repository.
      */
@@ -47,6 +82,17 @@ public class WorkspaceInfo extends RepositoryElementInfo {
         projects.clear();
         files.clear();
         operations.clear();
+        invalidateIndexes();
+    }
+    
+    /**
+     * Discards the indexes of the projects and files, which are rebuilt when they are used next.
+     * The keys of the projects and files change when their time ranges are set.
+     */
+    private void invalidateIndexes() {
+        projectIndex = null;
+        fileIndex = null;
+        filePathIndex = null;
     }
     
     /**
@@ -63,10 +109,19 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      */
     public void setTimeRange() {
         super.setTimeRange();
+        invalidateIndexes();
         
-        for (FileInfo finfo : files) {
-            finfo.setTimeRange();
-        }
+        pool.invoke(new FileTask(0, files.size(), new FileVisitor() {
+            
+            /**
+             * Sets the time range for a file.
+             * @param finfo the file
+             */
+            @Override
+            public void visit(FileInfo finfo) {
+                finfo.setTimeRange();
+            }
+        }));
         
         for (ProjectInfo pinfo : projects) {
             pinfo.setTimeRange();
@@ -77,13 +132,95 @@ public class WorkspaceInfo extends RepositoryElementInfo {
         }
     }
     
+    /**
+     * Extends the time range for this workspace with operations newly performed.
+     * The time ranges for the projects, packages, and files on which the operations were performed must be extended beforehand.
+     * @param ops the operations to be added, which were performed after all the operations within this workspace
+     */
+    public void extendTimeRange(List<UnifiedOperation> ops) {
+        operations.addAll(ops);
+        
+        super.setTimeRange();
+        invalidateIndexes();
+    }
+    
     /**
      * Fixes mismatches between two operations.
      */
     public void fixMismatches() {
-        for (FileInfo finfo : files) {
-            finfo.checkMismatches();
-            finfo.fixCloseOpenMismatches();
+        pool.invoke(new FileTask(0, files.size(), new FileVisitor() {
+            
+            /**
+             * Fixes mismatches in a file.
+             * @param finfo the file
+             */
+            @Override
+            public void visit(FileInfo finfo) {
+                finfo.checkMismatches();
+                finfo.fixCloseOpenMismatches();
+            }
+        }));
+    }
+    
+    /**
+     * Processes a file, where files are independently processed in parallel.
+     */
+    private interface FileVisitor {
+        
+        /**
+         * Processes a file.
+         * @param finfo the file
+         */
+        public void visit(FileInfo finfo);
+    }
+    
+    /**
+     * A task that processes a range of files, splitting the range until a single file remains.
+     */
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveAction {
+        
+        /**
+         * The index of the first file in the range (inclusive).
+         */
+        private int from;
+        
+        /**
+         * The index of the last file in the range (exclusive).
+         */
+        private int to;
+        
+        /**
+         * The visitor that processes each file.
+         */
+        private FileVisitor visitor;
+        
+        /**
+         * Creates a task that processes a range of files.
+         * @param from the index of the first file (inclusive)
+         * @param to the index of the last file (exclusive)
+         * @param visitor the visitor that processes each file
+         */
+        FileTask(int from, int to, FileVisitor visitor) {
+            this.from = from;
+            this.to = to;
+            this.visitor = visitor;
+        }
+        
+        /**
+         * Processes the files in the range.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    visitor.visit(files.get(from));
+                }
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new FileTask(from, mid, visitor), new FileTask(mid, to, visitor));
         }
     }
     
@@ -93,6 +230,8 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      */
     public void addProjectInfo(ProjectInfo pinfo) {
         projects.add(pinfo);
+        projectsSorted = false;
+        projectIndex = null;
     }
     
     /**
@@ -101,6 +240,9 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      */
     public void addFileInfo(FileInfo finfo) {
         files.add(finfo);
+        filesSorted = false;
+        fileIndex = null;
+        filePathIndex = null;
     }
     
     /**
@@ -108,8 +250,11 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      * @return the collection of information on the projects
      */
     public List<ProjectInfo> getAllProjectInfo() {
-        RepositoryElementInfo.sort(projects);
-        return projects;
+        if (!projectsSorted) {
+            RepositoryElementInfo.sort(projects);
+            projectsSorted = true;
+        }
+        return Collections.unmodifiableList(projects);
     }
     
     /**
@@ -117,8 +262,11 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      * @return the collection of information on the files
      */
     public List<FileInfo> getAllFileInfo() {
-        RepositoryElementInfo.sort(files);
-        return files;
+        if (!filesSorted) {
+            RepositoryElementInfo.sort(files);
+            filesSorted = true;
+        }
+        return Collections.unmodifiableList(files);
     }
     
     /**
@@ -143,13 +291,16 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      * @return the matched project, or <code>null</code> if none
      */
     public ProjectInfo getProjectInfo(String key) {
-        for (ProjectInfo pinfo : projects) {
-            if (pinfo.getKey().compareTo(key) == 0) {
-                return pinfo;
+        if (projectIndex == null) {
+            projectIndex = new HashMap<String, ProjectInfo>();
+            for (ProjectInfo pinfo : projects) {
+                if (!projectIndex.containsKey(pinfo.getKey())) {
+                    projectIndex.put(pinfo.getKey(), pinfo);
+                }
             }
         }
         
-        return null;
+        return projectIndex.get(key);
     }
     
     /**
@@ -158,13 +309,41 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      * @return the matched file, or <code>null</code> if none
      */
     public FileInfo getFileInfo(String key) {
-        for (FileInfo finfo : files) {
-            if (finfo.getKey().compareTo(key) == 0) {
-                return finfo;
+        if (fileIndex == null) {
+            fileIndex = new HashMap<String, FileInfo>();
+            for (FileInfo finfo : files) {
+                if (!fileIndex.containsKey(finfo.getKey())) {
+                    fileIndex.put(finfo.getKey(), finfo);
+                }
             }
         }
         
-        return null;
+        return fileIndex.get(key);
+    }
+    
+    /**
+     * Obtains the files with a given path.
+     * @param path the path of the files to be retrieved
+     * @return the collection of the matched files, which might be empty
+     */
+    private List<FileInfo> getFileInfoByPath(String path) {
+        if (filePathIndex == null) {
+            filePathIndex = new HashMap<String, List<FileInfo>>();
+            for (FileInfo finfo : files) {
+                List<FileInfo> finfos = filePathIndex.get(finfo.getFilePath());
+                if (finfos == null) {
+                    finfos = new ArrayList<FileInfo>(1);
+                    filePathIndex.put(finfo.getFilePath(), finfos);
+                }
+                finfos.add(finfo);
+            }
+        }
+        
+        List<FileInfo> finfos = filePathIndex.get(path);
+        if (finfos == null) {
+            return new ArrayList<FileInfo>(0);
+        }
+        return finfos;
     }
     
     /**
@@ -181,9 +360,9 @@ public class WorkspaceInfo extends RepositoryElementInfo {
         String opath = ofinfo.getFilePath();
         
         UnifiedOperation oop = ofinfo.getOperation(0);
-        for (FileInfo finfo : files) {
+        for (FileInfo finfo : getFileInfoByPath(opath)) {
             
-            if (finfo.getKey().compareTo(okey) != 0 && finfo.getFilePath().compareTo(opath) == 0) {
+            if (finfo.getKey().compareTo(okey) != 0) {
                 UnifiedOperation op = finfo.getOperation(0);
                 
                 if (oop.getTime() == op.getTime() && oop.getSequenceNumber() == op.getSequenceNumber()) {
@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.dependencygraph;
+
+import org.jtool.changerepository.data.FileInfo;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * Stores an operation dependency graph of a project in a compact form for traversal.
+ * The nodes are numbered consecutively for each file in the order of their identification numbers,
+ * and their attributes are kept in arrays indexed by the numbers. The edges are kept in the
+ * compressed sparse row format, where the destination (or source) nodes of a node are stored
+ * in a contiguous range of an array of node numbers for each direction.
+ * This graph is not changed after its creation.
+ * @author Katsuhisa Maruyama
+ */
+public class CompactOpDepGraph {
+    
+    /**
+     * The nodes of the original graph indexed by their numbers.
+     */
+    private OpDepGraphNode[] nodes;
+    
+    /**
+     * The identification numbers of the nodes within their files.
+     */
+    private int[] gids;
+    
+    /**
+     * The identification numbers of the operations corresponding to the nodes.
+     */
+    private int[] ids;
+    
+    /**
+     * The times of the operations corresponding to the nodes.
+     */
+    private long[] times;
+    
+    /**
+     * The number of the first node of each file, which is indexed by the file information.
+     * The file information is compared by identity as well as the nodes, since different files may have the same path.
+     */
+    private Map<FileInfo, Integer> fileBases = new IdentityHashMap<FileInfo, Integer>();
+    
+    /**
+     * The start positions of the destination nodes of each node in <code>dstNodes</code>.
+     */
+    private int[] dstOffsets;
+    
+    /**
+     * The numbers of the destination nodes of all the nodes.
+     */
+    private int[] dstNodes;
+    
+    /**
+     * The start positions of the source nodes of each node in <code>srcNodes</code>.
+     */
+    private int[] srcOffsets;
+    
+    /**
+     * The numbers of the source nodes of all the nodes.
+     */
+    private int[] srcNodes;
+    
+    /**
+     * Creates the compact form of an operation dependency graph.
+     * @param graph the operation dependency graph
+     */
+    CompactOpDepGraph(OpDepGraph graph) {
+        List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
+        Set<OpDepGraphEdge> es = new HashSet<OpDepGraphEdge>();
+        for (FileOpDepGraph fgraph : graph.getFileGraphs()) {
+            List<OpDepGraphNode> fnodes = new ArrayList<OpDepGraphNode>(fgraph.getAllNodes());
+            OpDepGraph.sortNodes(fnodes);
+            if (fnodes.size() > 0) {
+                fileBases.put(fnodes.get(0).getOperation().getFileInfo(), Integer.valueOf(ns.size()));
+                ns.addAll(fnodes);
+            }
+            es.addAll(fgraph.getAllEdges());
+        }
+        es.addAll(graph.getInterEdges());
+        
+        int size = ns.size();
+        nodes = ns.toArray(new OpDepGraphNode[size]);
+        gids = new int[size];
+        ids = new int[size];
+        times = new long[size];
+        for (int idx = 0; idx < size; idx++) {
+            gids[idx] = nodes[idx].getGId();
+            ids[idx] = nodes[idx].getId();
+            times[idx] = nodes[idx].getTime();
+        }
+        
+        int[] srcs = new int[es.size()];
+        int[] dsts = new int[es.size()];
+        int num = 0;
+        for (OpDepGraphEdge edge : es) {
+            int src = indexOf(edge.getSrcNode());
+            int dst = indexOf(edge.getDstNode());
+            if (src >= 0 && dst >= 0) {
+                srcs[num] = src;
+                dsts[num] = dst;
+                num++;
+            }
+        }
+        
+        dstOffsets = new int[size + 1];
+        dstNodes = new int[num];
+        fill(srcs, dsts, num, dstOffsets, dstNodes);
+        
+        srcOffsets = new int[size + 1];
+        srcNodes = new int[num];
+        fill(dsts, srcs, num, srcOffsets, srcNodes);
+    }
+    
+    /**
+     * Stores edges in the compressed sparse row format.
+     * @param froms the numbers of the nodes from which the edges are traced
+     * @param tos the numbers of the nodes to which the edges are traced
+     * @param num the number of the edges
+     * @param offsets the array that stores the start positions of the adjacent nodes of each node
+     * @param adjacents the array that stores the numbers of the adjacent nodes
+     */
+    private static void fill(int[] froms, int[] tos, int num, int[] offsets, int[] adjacents) {
+        for (int i = 0; i < num; i++) {
+            offsets[froms[i] + 1]++;
+        }
+        for (int idx = 1; idx < offsets.length; idx++) {
+            offsets[idx] = offsets[idx] + offsets[idx - 1];
+        }
+        
+        int[] positions = new int[offsets.length];
+        System.arraycopy(offsets, 0, positions, 0, offsets.length);
+        for (int i = 0; i < num; i++) {
+            adjacents[positions[froms[i]]] = tos[i];
+            positions[froms[i]]++;
+        }
+    }
+    
+    /**
+     * Returns the number of the nodes in this graph.
+     * @return the number of the nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+    
+    /**
+     * Obtains the number of a given node.
+     * @param node the node of the original graph, which is compared by reference
+     * @return the number of the node, or <code>-1</code> if this graph does not contain the node
+     */
+    public int indexOf(OpDepGraphNode node) {
+        Integer base = fileBases.get(node.getOperation().getFileInfo());
+        if (base == null) {
+            return -1;
+        }
+        
+        int idx = base.intValue() + node.getGId();
+        if (idx < base.intValue() || idx >= nodes.length || nodes[idx] != node) {
+            return -1;
+        }
+        return idx;
+    }
+    
+    /**
+     * Returns the node of the original graph with a given number.
+     * @param idx the number of the node
+     * @return the node of the original graph
+     */
+    public OpDepGraphNode getNode(int idx) {
+        return nodes[idx];
+    }
+    
+    /**
+     * Returns the identification number within the file of the node with a given number.
+     * @param idx the number of the node
+     * @return the identification number of the node
+     */
+    public int getGId(int idx) {
+        return gids[idx];
+    }
+    
+    /**
+     * Returns the identification number of the operation of the node with a given number.
+     * @param idx the number of the node
+     * @return the identification number of the operation
+     */
+    public int getId(int idx) {
+        return ids[idx];
+    }
+    
+    /**
+     * Returns the time of the operation of the node with a given number.
+     * @param idx the number of the node
+     * @return the time of the operation
+     */
+    public long getTime(int idx) {
+        return times[idx];
+    }
+    
+    /**
+     * Returns the number of the destination nodes of the node with a given number.
+     * @param idx the number of the source node
+     * @return the number of the destination nodes
+     */
+    public int getDstNodeNumber(int idx) {
+        return dstOffsets[idx + 1] - dstOffsets[idx];
+    }
+    
+    /**
+     * Returns a destination node of the node with a given number.
+     * @param idx the number of the source node
+     * @param k the index of the destination node, which is less than the number of the destination nodes
+     * @return the number of the destination node
+     */
+    public int getDstNode(int idx, int k) {
+        return dstNodes[dstOffsets[idx] + k];
+    }
+    
+    /**
+     * Returns the number of the source nodes of the node with a given number.
+     * @param idx the number of the destination node
+     * @return the number of the source nodes
+     */
+    public int getSrcNodeNumber(int idx) {
+        return srcOffsets[idx + 1] - srcOffsets[idx];
+    }
+    
+    /**
+     * Returns a source node of the node with a given number.
+     * @param idx the number of the destination node
+     * @param k the index of the source node, which is less than the number of the source nodes
+     * @return the number of the source node
+     */
+    public int getSrcNode(int idx, int k) {
+        return srcNodes[srcOffsets[idx] + k];
+    }
+}
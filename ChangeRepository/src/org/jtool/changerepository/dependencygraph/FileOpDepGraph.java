@@ -12,6 +12,8 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.HashMap;
 
 /**
  * Stores information on the operation dependency graph.
@@ -29,6 +31,17 @@ public class FileOpDepGraph {
      */
     private Set<OpDepGraphNode> nodes = new HashSet<OpDepGraphNode>();
     
+    /**
+     * The nodes of this graph indexed by their identification numbers.
+     */
+    private List<OpDepGraphNode> nodesByGId = new ArrayList<OpDepGraphNode>();
+    
+    /**
+     * The nodes of this graph indexed by the identification numbers of their operations.
+     * An operation producing several nodes is mapped to the node with the smallest identification number.
+     */
+    private Map<Integer, OpDepGraphNode> operationNodes = new HashMap<Integer, OpDepGraphNode>();
+    
     /**
      * The collection of edges of this graph.
      */
@@ -61,6 +74,19 @@ public class FileOpDepGraph {
      */
     void add(OpDepGraphNode node) {
         nodes.add(node);
+        
+        int gid = node.getGId();
+        if (gid >= 0) {
+            while (nodesByGId.size() <= gid) {
+                nodesByGId.add(null);
+            }
+            nodesByGId.set(gid, node);
+        }
+        
+        OpDepGraphNode n = operationNodes.get(node.getId());
+        if (n == null || n.getGId() > gid) {
+            operationNodes.put(node.getId(), node);
+        }
     }
     
     /**
@@ -95,12 +121,10 @@ public class FileOpDepGraph {
      * @return the found operation node, or <code>null</code> if none
      */
     public OpDepGraphNode getNode(int gid) {
-        for (OpDepGraphNode n : nodes) {
-            if (n.getGId() == gid) {
-                return n;
-            }
+        if (gid < 0 || gid >= nodesByGId.size()) {
+            return null;
         }
-        return null;
+        return nodesByGId.get(gid);
     }
     
     /**
@@ -110,8 +134,8 @@ public class FileOpDepGraph {
      * @return <code>true</code> an edge was found, otherwise <code>false</code>
      */
     public boolean connect(OpDepGraphNode src, OpDepGraphNode dst) {
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getSrcNode().equals(src) && edge.getDstNode().equals(dst)) {
+        for (OpDepGraphEdge.Sort sort : OpDepGraphEdge.Sort.values()) {
+            if (edges.contains(new OpDepGraphEdge(src, dst, sort))) {
                 return true;
             }
         }
@@ -125,9 +149,12 @@ public class FileOpDepGraph {
      */
     public List<OpDepGraphNode> getSrcNodes(OpDepGraphNode dst) {
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getDstNode().equals(dst)) {
-                ns.add(edge.getSrcNode());
+        OpDepGraphNode node = getNode(dst.getGId());
+        if (dst.equals(node)) {
+            for (OpDepGraphEdge edge : node.getIncomingEdges()) {
+                if (edges.contains(edge)) {
+                    ns.add(edge.getSrcNode());
+                }
             }
         }
         return ns;
@@ -140,9 +167,12 @@ public class FileOpDepGraph {
      */
     public List<OpDepGraphNode> getDstNodes(OpDepGraphNode src) {
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getSrcNode().equals(src)) {
-                ns.add(edge.getDstNode());
+        OpDepGraphNode node = getNode(src.getGId());
+        if (src.equals(node)) {
+            for (OpDepGraphEdge edge : node.getOutgoingEdges()) {
+                if (edges.contains(edge)) {
+                    ns.add(edge.getDstNode());
+                }
             }
         }
         return ns;
@@ -154,12 +184,7 @@ public class FileOpDepGraph {
      * @return <code>true</code> if this graph contains the node, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphNode node) {
-        for (OpDepGraphNode n : nodes) {
-            if (n.equals(node)) {
-                return true;
-            }
-        }
-        return false;
+        return nodes.contains(node);
     }
     
     /**
@@ -168,12 +193,7 @@ public class FileOpDepGraph {
      * @return <code>true</code> if this graph contains the edge, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphEdge edge) {
-        for (OpDepGraphEdge e : edges) {
-            if (e.equals(edge)) {
-                return true;
-            }
-        }
-        return false;
+        return edges.contains(edge);
     }
     
     /**
@@ -252,12 +272,15 @@ public class FileOpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public OpDepGraphNode getOperationNode(UnifiedOperation op) {
-        for (OpDepGraphNode node : getAllNodes()) {
-            if (node.getId() == op.getId()) {
-                return node;
-            }
-        }
-        return null;
+        return operationNodes.get(op.getId());
+    }
+    
+    /**
+     * Returns the nodes of this graph indexed by the identification numbers of their operations.
+     * @return the map from the identification numbers of the operations to the nodes
+     */
+    Map<Integer, OpDepGraphNode> getOperationNodes() {
+        return operationNodes;
     }
     
     /**
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -31,14 +32,26 @@ public class OpDepGraph {
     
     /**
      * The collection of all operation dependency graphs for files with in the project.
+     * The graphs are indexed by the files themselves since the keys of the files change when operations are added to them.
      */
-    private HashMap<String, FileOpDepGraph> fileGraphs = new HashMap<String, FileOpDepGraph>();
+    private HashMap<FileInfo, FileOpDepGraph> fileGraphs = new HashMap<FileInfo, FileOpDepGraph>();
     
     /**
      * The collection of edges of this graph.
      */
     private Set<OpDepGraphEdge> interEdges = new HashSet<OpDepGraphEdge>();
     
+    /**
+     * The nodes of this graph indexed by the identification numbers of their operations,
+     * which is built on demand and discarded whenever a sub-graph is registered or removed.
+     */
+    private Map<Integer, OpDepGraphNode> operationNodes = null;
+    
+    /**
+     * The compact form of this graph, which is created on demand and discarded whenever this graph is changed.
+     */
+    private CompactOpDepGraph compactGraph = null;
+    
     /**
      * Creates a new object storing information on the operation dependency graph.
      * @param pinfo the information of the project corresponding to this operation dependency graph
@@ -60,7 +73,9 @@ public class OpDepGraph {
      * @param fgraph the operation dependency graph to be registered
      */
     void regist(FileOpDepGraph fgraph) {
-        fileGraphs.put(fgraph.getFileInfo().getKey(), fgraph);
+        fileGraphs.put(fgraph.getFileInfo(), fgraph);
+        operationNodes = null;
+        compactGraph = null;
     }
     
     /**
@@ -81,7 +96,7 @@ public class OpDepGraph {
      * @return the operation dependency graph for the file
      */
     public FileOpDepGraph get(FileInfo finfo) {
-        return fileGraphs.get(finfo.getKey());
+        return fileGraphs.get(finfo);
     }
     
     /**
@@ -89,7 +104,9 @@ public class OpDepGraph {
      * @param finfo the information on the file to be removed
      */
     void remove(FileInfo finfo) {
-        fileGraphs.remove(finfo.getKey());
+        fileGraphs.remove(finfo);
+        operationNodes = null;
+        compactGraph = null;
     }
     
     /**
@@ -100,6 +117,7 @@ public class OpDepGraph {
         interEdges.add(edge);
         edge.getSrcNode().addOutgoingEdge(edge);
         edge.getDstNode().addIncomingEdge(edge);
+        compactGraph = null;
     }
     
     /**
@@ -110,6 +128,7 @@ public class OpDepGraph {
         interEdges.remove(edge);
         edge.getSrcNode().removeOutgoingEdge(edge);
         edge.getDstNode().removeIncomingEdge(edge);
+        compactGraph = null;
     }
     
     /**
@@ -118,8 +137,8 @@ public class OpDepGraph {
      * @return <code>true</code> if this graph contains the node, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphNode node) {
-        for (OpDepGraphNode n : getAllNodes()) {
-            if (n.equals(node)) {
+        for (FileOpDepGraph fgraph : fileGraphs.values()) {
+            if (fgraph.contains(node)) {
                 return true;
             }
         }
@@ -132,8 +151,11 @@ public class OpDepGraph {
      * @return <code>true</code> if this graph contains the edge, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphEdge edge) {
-        for (OpDepGraphEdge e : getAllEdges()) {
-            if (e.equals(edge)) {
+        if (interEdges.contains(edge)) {
+            return true;
+        }
+        for (FileOpDepGraph fgraph : fileGraphs.values()) {
+            if (fgraph.contains(edge)) {
                 return true;
             }
         }
@@ -157,6 +179,27 @@ public class OpDepGraph {
             edge.getDstNode().removeIncomingEdge(edge);
         }
         interEdges.clear();
+        compactGraph = null;
+    }
+    
+    /**
+     * Returns the edges across operation dependency graphs for files in this graph.
+     * @return the collection of the inter-edges
+     */
+    Set<OpDepGraphEdge> getInterEdges() {
+        return interEdges;
+    }
+    
+    /**
+     * Returns the compact form of this graph, which is suitable for traversal.
+     * The compact form is created when it is first requested after this graph was changed.
+     * @return the compact form of this graph
+     */
+    public CompactOpDepGraph freeze() {
+        if (compactGraph == null) {
+            compactGraph = new CompactOpDepGraph(this);
+        }
+        return compactGraph;
     }
     
     /**
@@ -190,10 +233,9 @@ public class OpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public UnifiedOperation getOperationNode(int id) {
-        for (OpDepGraphNode n : getAllNodes()) {
-            if (n.getId() == id) {
-                return n.getOperation();
-            }
+        OpDepGraphNode node = getOperationNodes().get(id);
+        if (node != null) {
+            return node.getOperation();
         }
         return null;
     }
@@ -204,12 +246,21 @@ public class OpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public OpDepGraphNode getOperationNode(UnifiedOperation op) {
-        for (OpDepGraphNode node : getAllNodes()) {
-            if (node.getId() == op.getId()) {
-                return node;
+        return getOperationNodes().get(op.getId());
+    }
+    
+    /**
+     * Returns the nodes of this graph indexed by the identification numbers of their operations.
+     * @return the map from the identification numbers of the operations to the nodes
+     */
+    private Map<Integer, OpDepGraphNode> getOperationNodes() {
+        if (operationNodes == null) {
+            operationNodes = new HashMap<Integer, OpDepGraphNode>();
+            for (FileOpDepGraph fgraph : fileGraphs.values()) {
+                operationNodes.putAll(fgraph.getOperationNodes());
             }
         }
-        return null;
+        return operationNodes;
     }
     
     /**
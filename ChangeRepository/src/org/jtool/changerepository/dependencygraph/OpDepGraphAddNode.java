@@ -59,10 +59,10 @@ public class OpDepGraphAddNode extends OpDepGraphNode {
         if (node.isAddNode() || node.isOpenNode()) {
             int offset_i = node.getOffset();
             int length_i = node.getLength();
-            int offset_j = adjustedOffsets.get(0).intValue();
+            int offset_j = getFirstAdjustedOffset();
             
             if (offset_i < offset_j && offset_j < offset_i + length_i) {
-                adjustedOffsets.clear();
+                clearAdjustedOffsets();
                 return true;
                 
             } else {
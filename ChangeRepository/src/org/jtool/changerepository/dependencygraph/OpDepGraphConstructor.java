@@ -120,6 +120,8 @@ public class OpDepGraphConstructor {
     
     /**
      * Collects dependence edges of the operation graph.
+     * The nodes are visited forward in time while the owners of the text are tracked, which determines
+     * the dependence of most nodes without going back to the previous nodes.
      * @param graph the operation graph under creation
      * @param monitor the progress monitor to use to display progress and receive requests for cancellation
      * @throws InterruptedException if the operation detects a request to cancel
@@ -128,6 +130,7 @@ public class OpDepGraphConstructor {
         int idx = 0;
         List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>(fgraph.getAllNodes());
         OpDepGraph.sortNodes(nodes);
+        OwnershipMap owners = new OwnershipMap();
         for (OpDepGraphNode node : nodes) {
             
             if (monitor.isCanceled()) {
@@ -138,7 +141,20 @@ public class OpDepGraphConstructor {
             monitor.subTask("Collecting dependence edges " + String.valueOf(idx + 1) + "/" + nodes.size());
             
             if (node.getGId() != 0) {
-                collectDependenceEdge(node);
+                int gid = OwnershipMap.UNKNOWN;
+                if (owners != null) {
+                    gid = owners.findDependence(node);
+                }
+                
+                if (gid == OwnershipMap.UNKNOWN) {
+                    collectDependenceEdge(node);
+                } else if (gid != OwnershipMap.NONE) {
+                    fgraph.add(new OpDepGraphEdge(fgraph.getNode(gid), node, OpDepGraphEdge.Sort.NORMAL));
+                }
+            }
+            
+            if (owners != null && !owners.apply(node)) {
+                owners = null;
             }
             
             idx++;
@@ -155,7 +171,7 @@ public class OpDepGraphConstructor {
         for (int idx = node.getGId() - 1; idx >= 0; idx--) {
             OpDepGraphNode n = fgraph.getNode(idx);
             
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
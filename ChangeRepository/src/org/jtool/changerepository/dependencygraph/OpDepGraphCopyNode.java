@@ -7,8 +7,6 @@
 package org.jtool.changerepository.dependencygraph;
 
 import org.jtool.changerepository.operation.UnifiedOperation;
-import java.util.List;
-import java.util.ArrayList;
 
 /**
  * Manages information on a copy operation node.
@@ -62,19 +60,11 @@ public class OpDepGraphCopyNode extends OpDepGraphNode {
             int offset_i = node.getOffset();
             int length_i = node.getLength();
             
-            List<Integer> adjustedOffsets2 = new ArrayList<Integer>(adjustedOffsets);
-            for (Integer offset : adjustedOffsets2) {
-                int offset_j = offset.intValue();
-                if (offset_i <= offset_j && offset_j < offset_i + length_i) {
-                    adjustedOffsets.remove(offset);
-                }
-            }
-            
-            return adjustedOffsets.size() < adjustedOffsets2.size();
+            return removeAdjustedOffsets(offset_i, offset_i + length_i);
             
         } else if (node.isRemoveNode()) {
             int offset_i = node.getOffset();
-            int offset_j = adjustedOffsets.get(0).intValue();
+            int offset_j = getFirstAdjustedOffset();
             int length_j = getLength();
             
             return offset_j < offset_i && offset_i < offset_j + length_j;
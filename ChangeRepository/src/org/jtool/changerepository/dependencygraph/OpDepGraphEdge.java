@@ -96,14 +96,32 @@ public class OpDepGraphEdge {
     
     /**
      * Tests if a given graph edge is the same as this.
-     * @param member the instance of a graph edge
+     * @param obj the instance of a graph edge
      * @return <code>true</code> if the two edges are the same source node and the same destination node, otherwise <code>false</code>
      */
-    public boolean equals(OpDepGraphEdge edge) {
-        return edge != null && edge.getSort() == getSort() &&
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof OpDepGraphEdge)) {
+            return false;
+        }
+        
+        OpDepGraphEdge edge = (OpDepGraphEdge)obj;
+        return edge.getSort() == getSort() &&
                edge.getSrcNode().equals(getSrcNode()) && edge.getDstNode().equals(getDstNode());
     }
     
+    /**
+     * Returns the hash code of this edge, which is consistent with the equality of edges.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return (getSrcNode().hashCode() * 31 + getDstNode().hashCode()) * 31 + getSort().hashCode();
+    }
+    
     /**
      * Returns the string for printing, which does not contain a new line character at its end. 
      * @return the string for printing
@@ -22,8 +22,9 @@ public class OpDepGraphInfo {
     
     /**
      * The collection of all operation dependency graphs within this workspace.
+     * The graphs are indexed by the projects themselves since the keys of the projects change when operations are added to them.
      */
-    private static Map<String, OpDepGraph> allGraphs = new HashMap<String, OpDepGraph>();
+    private static Map<ProjectInfo, OpDepGraph> allGraphs = new HashMap<ProjectInfo, OpDepGraph>();
     
     /**
      * Resets the operation dependency graph information.
@@ -38,7 +39,7 @@ public class OpDepGraphInfo {
      * @return the found operation dependency graph, or <code>null</code> if none
      */
     public static OpDepGraph getGraph(ProjectInfo pinfo) {
-        return allGraphs.get(pinfo.getKey());
+        return allGraphs.get(pinfo);
     }
     
     /**
@@ -51,13 +52,13 @@ public class OpDepGraphInfo {
             return null;
         }
         
-        OpDepGraph graph = allGraphs.get(pinfo.getKey());
+        OpDepGraph graph = allGraphs.get(pinfo);
         
         List<FileInfo> files = new ArrayList<FileInfo>(); 
         if (graph != null) {
             for (FileInfo finfo : pinfo.getAllFileInfo()) {
                 FileOpDepGraph fgraph = graph.get(finfo);
-                if (finfo.getLastModifiedTime() > fgraph.getLastModifiedTime()) {
+                if (fgraph == null || finfo.getLastModifiedTime() > fgraph.getLastModifiedTime()) {
                     files.add(finfo);
                 }
             }
@@ -77,7 +78,7 @@ public class OpDepGraphInfo {
             
         } else {
             graph = new OpDepGraph(pinfo);
-            allGraphs.put(pinfo.getKey(), graph);
+            allGraphs.put(pinfo, graph);
             
             for (FileInfo finfo : pinfo.getAllFileInfo()) {
                 FileOpDepGraph fgraph = OpDepGraphConstructor.createGraph(finfo);
@@ -110,14 +111,14 @@ public class OpDepGraphInfo {
             return false; 
         }
         
-        OpDepGraph graph = allGraphs.get(pinfo.getKey());
+        OpDepGraph graph = allGraphs.get(pinfo);
         if (graph == null) {
             return false;
         }
         
         for (FileInfo finfo : pinfo.getAllFileInfo()) {
             FileOpDepGraph fgraph = graph.get(finfo);
-            if (finfo.getLastModifiedTime() > fgraph.getLastModifiedTime()) {
+            if (fgraph == null || finfo.getLastModifiedTime() > fgraph.getLastModifiedTime()) {
                 return false;
             }
         }
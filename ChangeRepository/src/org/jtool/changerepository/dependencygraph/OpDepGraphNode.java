@@ -12,6 +12,7 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Stores the information on the node of the operation dependency graph.
@@ -40,9 +41,16 @@ public abstract class OpDepGraphNode {
     private HashSet<OpDepGraphEdge> outgoingEdges = new HashSet<OpDepGraphEdge>();
     
     /**
-     * The collection of the offsets after adjustment.
+     * The ranges of the offsets after adjustment, each of which is stored as a pair of
+     * its start offset (inclusive) and end offset (exclusive).
+     * The ranges are kept in the order of the offsets before adjustment.
      */
-    protected List<Integer> adjustedOffsets = new ArrayList<Integer>();
+    private int[] adjustedRanges = new int[4];
+    
+    /**
+     * The number of the ranges of the offsets after adjustment.
+     */
+    private int adjustedRangeNumber = 0;
     
     /**
      * Creates a operation node for the operation dependency graph.
@@ -58,12 +66,10 @@ public abstract class OpDepGraphNode {
      * Resets the adjustment for offsets.
      */
     public void reset() {
-        adjustedOffsets.clear();
+        adjustedRangeNumber = 0;
         
         if (getLength() > 0) {
-            for (int o = getOffset(); o < getOffset() + getLength(); o++) {
-                adjustedOffsets.add(new Integer(o));
-            }
+            insertAdjustedRange(0, getOffset(), getOffset() + getLength());
         }
     }
     
@@ -133,11 +139,32 @@ public abstract class OpDepGraphNode {
     
     /**
      * Tests if a given graph node is the same as this.
-     * @param node the node of the operation dependency graph
+     * Two nodes are the same if they have the same identification number within the same file information.
+     * The file information is compared by identity, since different files may have the same path
+     * (e.g., a file deleted and created again).
+     * @param obj the node of the operation dependency graph
      * @return <code>true</code> if the two nodes are the same, otherwise <code>false</code>
      */
-    public boolean equals(OpDepGraphNode node) {
-        return node != null && gid == node.getGId() && operation.getFile().compareTo(node.operation.getFile()) == 0;
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof OpDepGraphNode)) {
+            return false;
+        }
+        
+        OpDepGraphNode node = (OpDepGraphNode)obj;
+        return gid == node.getGId() && operation.getFileInfo() == node.operation.getFileInfo();
+    }
+    
+    /**
+     * Returns the hash code of this node, which is consistent with the equality of nodes.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(operation.getFileInfo()) * 31 + gid;
     }
     
     /**
@@ -223,17 +250,141 @@ public abstract class OpDepGraphNode {
     
     /**
      * Returns the collection of the offsets after adjustment.
+     * The collection is created from the ranges of the offsets whenever this method is called.
      * @return the collection of the adjusted offsets
      */
     public List<Integer> getAdjustedOffsets() {
-        return adjustedOffsets;
+        List<Integer> offsets = new ArrayList<Integer>();
+        for (int i = 0; i < adjustedRangeNumber; i++) {
+            for (int o = adjustedRanges[2 * i]; o < adjustedRanges[2 * i + 1]; o++) {
+                offsets.add(Integer.valueOf(o));
+            }
+        }
+        return offsets;
+    }
+    
+    /**
+     * Tests if any offset remains after adjustment.
+     * @return <code>true</code> if the adjusted offsets are not empty, otherwise <code>false</code>
+     */
+    public boolean hasAdjustedOffsets() {
+        return adjustedRangeNumber > 0;
+    }
+    
+    /**
+     * Tests if any offset after adjustment is within a given range.
+     * @param start the start offset of the range (inclusive)
+     * @param end the end offset of the range (inclusive)
+     * @return <code>true</code> if an adjusted offset is within the range, otherwise <code>false</code>
+     */
+    public boolean containsAdjustedOffset(int start, int end) {
+        for (int i = 0; i < adjustedRangeNumber; i++) {
+            if (adjustedRanges[2 * i] <= end && start < adjustedRanges[2 * i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the first offset after adjustment, which corresponds to the leftmost offset before adjustment.
+     * @return the first adjusted offset
+     */
+    protected int getFirstAdjustedOffset() {
+        return adjustedRanges[0];
     }
     
     /**
      * Clears the collection of the offsets after adjustment.
      */
     public void clearAdjustedOffsets() {
-        adjustedOffsets.clear();
+        adjustedRangeNumber = 0;
+    }
+    
+    /**
+     * Inserts a range of offsets after adjustment.
+     * @param pos the position where the range is inserted
+     * @param start the start offset of the range (inclusive)
+     * @param end the end offset of the range (exclusive)
+     */
+    private void insertAdjustedRange(int pos, int start, int end) {
+        if (2 * adjustedRangeNumber + 2 > adjustedRanges.length) {
+            adjustedRanges = Arrays.copyOf(adjustedRanges, adjustedRanges.length * 2);
+        }
+        System.arraycopy(adjustedRanges, 2 * pos, adjustedRanges, 2 * pos + 2, 2 * (adjustedRangeNumber - pos));
+        adjustedRanges[2 * pos] = start;
+        adjustedRanges[2 * pos + 1] = end;
+        adjustedRangeNumber++;
+    }
+    
+    /**
+     * Deletes a range of offsets after adjustment.
+     * @param pos the position of the range to be deleted
+     */
+    private void deleteAdjustedRange(int pos) {
+        System.arraycopy(adjustedRanges, 2 * pos + 2, adjustedRanges, 2 * pos, 2 * (adjustedRangeNumber - pos - 1));
+        adjustedRangeNumber--;
+    }
+    
+    /**
+     * Shifts the offsets after adjustment that are not less than a given offset,
+     * where a range containing the offset is split into two ranges.
+     * @param from the least offset to be shifted
+     * @param delta the amount of the shift
+     */
+    private void shiftAdjustedOffsets(int from, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        
+        for (int i = 0; i < adjustedRangeNumber; i++) {
+            int start = adjustedRanges[2 * i];
+            int end = adjustedRanges[2 * i + 1];
+            if (from <= start) {
+                adjustedRanges[2 * i] = start + delta;
+                adjustedRanges[2 * i + 1] = end + delta;
+                
+            } else if (from < end) {
+                adjustedRanges[2 * i + 1] = from;
+                insertAdjustedRange(i + 1, from + delta, end + delta);
+                i++;
+            }
+        }
+    }
+    
+    /**
+     * Removes the offsets after adjustment that are within a given range.
+     * @param from the start offset of the range (inclusive)
+     * @param to the end offset of the range (exclusive)
+     * @return <code>true</code> if any offset was removed, otherwise <code>false</code>
+     */
+    protected boolean removeAdjustedOffsets(int from, int to) {
+        boolean removed = false;
+        for (int i = 0; i < adjustedRangeNumber; i++) {
+            int start = adjustedRanges[2 * i];
+            int end = adjustedRanges[2 * i + 1];
+            if (end <= from || to <= start) {
+                continue;
+            }
+            
+            removed = true;
+            if (start < from && to < end) {
+                adjustedRanges[2 * i + 1] = from;
+                insertAdjustedRange(i + 1, to, end);
+                i++;
+                
+            } else if (start < from) {
+                adjustedRanges[2 * i + 1] = from;
+                
+            } else if (to < end) {
+                adjustedRanges[2 * i] = to;
+                
+            } else {
+                deleteAdjustedRange(i);
+                i--;
+            }
+        }
+        return removed;
     }
     
     
@@ -281,30 +432,16 @@ public abstract class OpDepGraphNode {
      * @param node the node corresponding to the next operation
      */
     public void adjustOffsetsForward(OpDepGraphNode node) {
-        if (adjustedOffsets.size() == 0) {
+        if (adjustedRangeNumber == 0) {
             return;
         }
         
         int offset_j = node.getOffset();
-        List<Integer> adjustedOffsets2 = new ArrayList<Integer>(adjustedOffsets);
-        for (Integer offset : adjustedOffsets2) {
-            int offset_i = offset.intValue();
-            if (isAddNode()) {
-                if (offset_i > offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_i = offset_i - node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_i));
-                }
+        if (isAddNode()) {
+            shiftAdjustedOffsets(offset_j + 1, -node.getAdjustedLength());
                 
-            } else if (isRemoveNode() || isCopyNode()) {
-                if (offset_i >= offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_i = offset_i - node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_i));
-                }
-            }
+        } else if (isRemoveNode() || isCopyNode()) {
+            shiftAdjustedOffsets(offset_j, -node.getAdjustedLength());
         }
     }
     
@@ -313,31 +450,16 @@ public abstract class OpDepGraphNode {
      * @param node the node corresponding to the previous operation
      */
     public void adjustOffsetsBackward(OpDepGraphNode node) {
-        if (adjustedOffsets.size() == 0) {
+        if (adjustedRangeNumber == 0) {
             return;
         }
         
         int offset_i = node.getOffset();
-        List<Integer> adjustedOffsets2 = new ArrayList<Integer>(adjustedOffsets);
-        for (Integer offset : adjustedOffsets2) {
-            int offset_j = offset.intValue();
-            
-            if (isAddNode()) {
-                if (offset_i < offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_j = offset_j + node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_j));
-                }
+        if (isAddNode()) {
+            shiftAdjustedOffsets(offset_i + 1, node.getAdjustedLength());
                 
-            } else if (isRemoveNode() || isCopyNode()) {
-                if (offset_i <= offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_j = offset_j + node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_j));
-                }
-            }
+        } else if (isRemoveNode() || isCopyNode()) {
+            shiftAdjustedOffsets(offset_i, node.getAdjustedLength());
         }
     }
     
@@ -430,9 +552,11 @@ public abstract class OpDepGraphNode {
     public String getOffsets() {
         StringBuilder buf = new StringBuilder();
         buf.append("{");
-        for (Integer offset : adjustedOffsets) {
-            buf.append(" ");
-            buf.append(offset.intValue());
+        for (int i = 0; i < adjustedRangeNumber; i++) {
+            for (int o = adjustedRanges[2 * i]; o < adjustedRanges[2 * i + 1]; o++) {
+                buf.append(" ");
+                buf.append(o);
+            }
         }
         buf.append(" }");
         return buf.toString();
@@ -29,7 +29,7 @@ public class OpDepGraphOpenNode extends OpDepGraphNode {
      * Resets the adjustment for offsets.
      */
     public void reset() {
-        adjustedOffsets.clear();
+        clearAdjustedOffsets();
     }
     
     /**
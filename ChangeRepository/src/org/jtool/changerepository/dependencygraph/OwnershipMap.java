@@ -0,0 +1,361 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.dependencygraph;
+
+import java.util.Random;
+
+/**
+ * Maps each character of the text under editing to the nodes that wrote it, while the nodes of
+ * an operation dependency graph are visited forward in time.
+ * The text is kept as a sequence of segments in a randomized balanced tree indexed by offsets.
+ * A segment stores the node that added its characters, and the nodes that last changed the gap
+ * just before its first character. The gaps inside a segment belong to the node adding the segment.
+ * Each query and change of the text takes logarithmic time in the number of the segments.
+ * @author Katsuhisa Maruyama
+ */
+class OwnershipMap {
+    
+    /**
+     * The value indicating that a node depends on no node.
+     */
+    static final int NONE = -1;
+    
+    /**
+     * The value indicating that the dependence of a node cannot be determined by this map.
+     */
+    static final int UNKNOWN = -2;
+    
+    /**
+     * The generator of the priorities of the segments.
+     */
+    private Random random = new Random();
+    
+    /**
+     * The root of the tree of the segments.
+     */
+    private Segment root = null;
+    
+    /**
+     * Creates a map for an empty text.
+     */
+    OwnershipMap() {
+    }
+    
+    /**
+     * Finds the node on which a given node depends in terms of the text before the change of the node.
+     * The result is the same as the one obtained by adjusting the offsets of the given node backward
+     * until it depends on a node, as long as the offsets are adjusted without any inconsistency.
+     * An addition node depends on the addition or open node that added the text surrounding its offset.
+     * A removal or copy node depends on the addition or open node that added all of its text,
+     * which is determined only if no other node added or removed text within the range of the node.
+     * @param node the node of the operation dependency graph
+     * @return the identification number of the found node, <code>NONE</code> if the node depends on no node,
+     *         or <code>UNKNOWN</code> if the dependence cannot be determined
+     */
+    int findDependence(OpDepGraphNode node) {
+        int offset = node.getOffset();
+        int length = node.getLength();
+        if (offset < 0 || length < 0) {
+            return UNKNOWN;
+        }
+        
+        if (node.isAddNode()) {
+            fill(offset + 1);
+            Segment[] lr = split(root, offset);
+            int gid = leftmost(lr[1]).gapAdder;
+            root = merge(lr[0], lr[1]);
+            return gid;
+            
+        } else if (node.isRemoveNode() || node.isCopyNode()) {
+            if (length == 0) {
+                return NONE;
+            }
+            
+            fill(offset + length + 1);
+            Segment[] lr = split(root, offset);
+            Segment[] mr = split(lr[1], length);
+            
+            Segment range = mr[0];
+            int gapRemover = getMaxGapRemoverExceptFirst(range);
+            int gid = UNKNOWN;
+            if (range.minAdder == range.maxAdder && gapRemover < range.maxAdder) {
+                gid = range.maxAdder;
+            } else if (range.maxAdder == NONE && gapRemover == NONE) {
+                gid = NONE;
+            }
+            
+            root = merge(lr[0], merge(range, mr[1]));
+            return gid;
+        }
+        
+        // node.isOpenNode()
+        return NONE;
+    }
+    
+    /**
+     * Changes the text according to a given node.
+     * @param node the node of the operation dependency graph
+     * @return <code>true</code> if the text was successfully changed, otherwise <code>false</code>
+     */
+    boolean apply(OpDepGraphNode node) {
+        int offset = node.getOffset();
+        int length = node.getLength();
+        if (offset < 0 || length < 0) {
+            return false;
+        }
+        
+        if (node.isAddNode() || node.isOpenNode()) {
+            if (length > 0) {
+                fill(offset + 1);
+                Segment[] lr = split(root, offset);
+                Segment seg = new Segment(length, node.getGId(), leftmost(lr[1]).gapAdder, NONE);
+                root = merge(merge(lr[0], seg), lr[1]);
+            }
+            
+        } else if (node.isRemoveNode() && length > 0) {
+            fill(offset + length + 1);
+            Segment[] lr = split(root, offset);
+            Segment[] mr = split(lr[1], length);
+            
+            int gapAdder = leftmost(mr[0]).gapAdder;
+            setFirstGap(mr[1], gapAdder, node.getGId());
+            root = merge(lr[0], mr[1]);
+        }
+        
+        // node.isCopyNode() does not change the text
+        return true;
+    }
+    
+    /**
+     * Appends characters added by no node so that the text has at least a given length.
+     * @param length the least length of the text
+     */
+    private void fill(int length) {
+        int size = size(root);
+        if (size < length) {
+            root = merge(root, new Segment(length - size, NONE, NONE, NONE));
+        }
+    }
+    
+    /**
+     * Splits a tree into two trees.
+     * @param seg the root of the tree to be split
+     * @param offset the number of the characters contained in the left tree
+     * @return the pair of the roots of the left and right trees
+     */
+    private Segment[] split(Segment seg, int offset) {
+        if (seg == null) {
+            return new Segment[] { null, null };
+        }
+        
+        int leftSize = size(seg.left);
+        if (offset <= leftSize) {
+            Segment[] lr = split(seg.left, offset);
+            seg.left = lr[1];
+            update(seg);
+            lr[1] = seg;
+            return lr;
+        }
+        
+        if (offset >= leftSize + seg.length) {
+            Segment[] lr = split(seg.right, offset - leftSize - seg.length);
+            seg.right = lr[0];
+            update(seg);
+            lr[0] = seg;
+            return lr;
+        }
+        
+        Segment rest = new Segment(leftSize + seg.length - offset, seg.adder, seg.adder, NONE);
+        seg.length = offset - leftSize;
+        Segment right = merge(rest, seg.right);
+        seg.right = null;
+        update(seg);
+        return new Segment[] { seg, right };
+    }
+    
+    /**
+     * Merges two trees into one tree.
+     * @param left the root of the left tree
+     * @param right the root of the right tree
+     * @return the root of the merged tree
+     */
+    private Segment merge(Segment left, Segment right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+    
+    /**
+     * Returns the first segment of a tree.
+     * @param seg the root of the tree, which must not be <code>null</code>
+     * @return the first segment
+     */
+    private Segment leftmost(Segment seg) {
+        while (seg.left != null) {
+            seg = seg.left;
+        }
+        return seg;
+    }
+    
+    /**
+     * Sets the nodes that changed the gap before the first character of a tree.
+     * @param seg the root of the tree, which must not be <code>null</code>
+     * @param gapAdder the identification number of the node that added text around the gap
+     * @param gapRemover the identification number of the node that removed text at the gap
+     */
+    private void setFirstGap(Segment seg, int gapAdder, int gapRemover) {
+        if (seg.left != null) {
+            setFirstGap(seg.left, gapAdder, gapRemover);
+        } else {
+            seg.gapAdder = gapAdder;
+            seg.gapRemover = gapRemover;
+        }
+        update(seg);
+    }
+    
+    /**
+     * Obtains the latest removal node of the gaps in a tree except the gap before its first character.
+     * @param seg the root of the tree, which must not be <code>null</code>
+     * @return the identification number of the removal node, or <code>NONE</code> if none
+     */
+    private int getMaxGapRemoverExceptFirst(Segment seg) {
+        int max = maxGapRemover(seg.right);
+        if (seg.left != null) {
+            max = Math.max(max, seg.gapRemover);
+            max = Math.max(max, getMaxGapRemoverExceptFirst(seg.left));
+        }
+        return max;
+    }
+    
+    /**
+     * Recalculates the summary of a tree from its children.
+     * @param seg the root of the tree
+     */
+    private void update(Segment seg) {
+        seg.size = seg.length + size(seg.left) + size(seg.right);
+        seg.maxAdder = seg.adder;
+        seg.minAdder = seg.adder;
+        seg.maxGapRemover = seg.gapRemover;
+        if (seg.left != null) {
+            seg.maxAdder = Math.max(seg.maxAdder, seg.left.maxAdder);
+            seg.minAdder = Math.min(seg.minAdder, seg.left.minAdder);
+            seg.maxGapRemover = Math.max(seg.maxGapRemover, seg.left.maxGapRemover);
+        }
+        if (seg.right != null) {
+            seg.maxAdder = Math.max(seg.maxAdder, seg.right.maxAdder);
+            seg.minAdder = Math.min(seg.minAdder, seg.right.minAdder);
+            seg.maxGapRemover = Math.max(seg.maxGapRemover, seg.right.maxGapRemover);
+        }
+    }
+    
+    /**
+     * Returns the number of characters in a tree.
+     * @param seg the root of the tree
+     * @return the number of the characters
+     */
+    private static int size(Segment seg) {
+        return (seg != null) ? seg.size : 0;
+    }
+    
+    /**
+     * Returns the latest removal node of the gaps in a tree.
+     * @param seg the root of the tree
+     * @return the identification number of the removal node, or <code>NONE</code> if none
+     */
+    private static int maxGapRemover(Segment seg) {
+        return (seg != null) ? seg.maxGapRemover : NONE;
+    }
+    
+    /**
+     * A run of characters added by the same node, which is a node of the tree.
+     */
+    private class Segment {
+        
+        /**
+         * The number of the characters of this segment.
+         */
+        int length;
+        
+        /**
+         * The identification number of the node that added the characters.
+         */
+        int adder;
+        
+        /**
+         * The identification number of the node that added text around the gap before the first character.
+         */
+        int gapAdder;
+        
+        /**
+         * The identification number of the node that last removed text at the gap before the first character.
+         */
+        int gapRemover;
+        
+        /**
+         * The priority of this segment in the tree.
+         */
+        int priority = random.nextInt();
+        
+        /**
+         * The left child of this segment.
+         */
+        Segment left;
+        
+        /**
+         * The right child of this segment.
+         */
+        Segment right;
+        
+        /**
+         * The number of characters in the tree rooted at this segment.
+         */
+        int size;
+        
+        /**
+         * The latest node that added characters in the tree rooted at this segment.
+         */
+        int maxAdder;
+        
+        /**
+         * The earliest node that added characters in the tree rooted at this segment.
+         */
+        int minAdder;
+        
+        /**
+         * The latest node that removed text at a gap in the tree rooted at this segment.
+         */
+        int maxGapRemover;
+        
+        /**
+         * Creates a segment.
+         * @param length the number of the characters
+         * @param adder the identification number of the node that added the characters
+         * @param gapAdder the identification number of the node that added text around the gap before the first character
+         * @param gapRemover the identification number of the node that last removed text at the gap before the first character
+         */
+        Segment(int length, int adder, int gapAdder, int gapRemover) {
+            this.length = length;
+            this.adder = adder;
+            this.gapAdder = gapAdder;
+            this.gapRemover = gapRemover;
+            update(this);
+        }
+    }
+}
@@ -7,9 +7,13 @@
 package org.jtool.changerepository.operation;
 
 import org.jtool.changerepository.Activator;
+import org.jtool.changerepository.Message;
 import org.jtool.changerepository.data.FileInfo;
+import org.jtool.changerecorder.util.CodeBuffer;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -19,15 +23,70 @@ import java.util.Comparator;
  */
 public class OperationManager {
     
+    /**
+     * The number of text operations replayed between two successive checkpoints.
+     */
+    private static final int CHECKPOINT_OPERATIONS = 200;
+    
+    /**
+     * The number of characters changed between two successive checkpoints.
+     */
+    private static final int CHECKPOINT_CHARS = 64 * 1024;
+    
+    /**
+     * The upper limit of bytes occupied by the compressed code of checkpoints for a file.
+     */
+    private static final int CHECKPOINT_BUDGET = 4 * 1024 * 1024;
+    
     /**
      * The information on the file.
      */
     private FileInfo fileInfo;
     
     /**
-     * The collection of all restoration points for the file.
+     * The restoration points for the file in the order of their sequence numbers.
+     */
+    private RestorationPoint[] restorations;
+    
+    /**
+     * The sequence numbers of the operations at the respective restoration points.
+     */
+    private int[] restorationIndexes;
+    
+    /**
+     * The times of the respective operations for the file.
+     */
+    private long[] times;
+    
+    /**
+     * The sequence numbers of normal operations whose code cannot be restored because of mismatches.
+     */
+    private BitSet mismatches;
+    
+    /**
+     * The multiplier of the interval between two successive checkpoints, which is doubled whenever checkpoints are thinned.
+     */
+    private int checkpointInterval;
+    
+    /**
+     * The number of text operations replayed since the last restoration point.
+     */
+    private int checkpointOperations;
+    
+    /**
+     * The number of characters changed since the last restoration point.
      */
-    private List<RestorationPoint> restorations;
+    private int checkpointChars;
+    
+    /**
+     * The number of bytes occupied by the compressed code of the checkpoints.
+     */
+    private int checkpointSize;
+    
+    /**
+     * A flag indicating if the code after the last operation can be restored.
+     */
+    private boolean lastRestorable;
     
     /**
      * Creates an instance managing all the operations for the file.
@@ -45,10 +104,127 @@ public class OperationManager {
     public List<UnifiedOperation> createOperationInfo(List<UnifiedOperation> ops) {
         List<UnifiedOperation> operations = getFabricatedOperations(ops);
         
-        restorations = getRestorationPoints(operations);
+        applyExtension(buildIndexes(operations));
         return operations;
     }
     
+    /**
+     * Extends information on the operations for the file with operations appended to them.
+     * Only the appended operations are fabricated and replayed, starting from the code after the last operation
+     * that was already replayed, so the existing restoration points are kept.
+     * @param ops the collection of the fabricated operations followed by the appended original operations, which is updated
+     * @return the collection of the appended operations after the fabrication
+     */
+    public List<UnifiedOperation> extendOperationInfo(List<UnifiedOperation> ops) {
+        List<UnifiedOperation> appended = ops.subList(times.length, ops.size());
+        Extension ext = prepareExtension(new ArrayList<UnifiedOperation>(appended));
+        appended.clear();
+        ops.addAll(ext.getOperations());
+        applyExtension(ext);
+        return ext.getOperations();
+    }
+    
+    /**
+     * Prepares the extension of information on the operations for the file with operations to be appended to them.
+     * The appended operations are fabricated and replayed without changing the operations and the restoration points
+     * for the file, so that the preparation can be done while they are used.
+     * @param appended the original operations to be appended, which were performed after all the operations for the file
+     * @return the prepared extension
+     */
+    public Extension prepareExtension(List<UnifiedOperation> appended) {
+        int from = times.length;
+        List<UnifiedOperation> operations = getFabricatedOperations(appended);
+        List<UnifiedOperation> ops = new ArrayList<UnifiedOperation>(from + operations.size());
+        ops.addAll(fileInfo.getOperations().subList(0, from));
+        ops.addAll(operations);
+        
+        CodeBuffer buf = null;
+        if (from > 0 && lastRestorable) {
+            String code = restore(from - 1);
+            if (code != null) {
+                buf = new CodeBuffer(code);
+            }
+        }
+        
+        Extension ext = new Extension(operations);
+        ext.restorations = restorations;
+        ext.times = times;
+        ext.mismatches = (BitSet)mismatches.clone();
+        ext.checkpointInterval = checkpointInterval;
+        ext.checkpointOperations = checkpointOperations;
+        ext.checkpointChars = checkpointChars;
+        ext.checkpointSize = checkpointSize;
+        extendIndexes(ext, ops, from, buf);
+        return ext;
+    }
+    
+    /**
+     * Replaces the restoration points and the time column with the prepared ones.
+     * The operations of the extension must be appended to the operations for the file at the same time.
+     * @param ext the prepared extension
+     */
+    public void applyExtension(Extension ext) {
+        restorations = ext.restorations;
+        restorationIndexes = ext.restorationIndexes;
+        times = ext.times;
+        mismatches = ext.mismatches;
+        checkpointInterval = ext.checkpointInterval;
+        checkpointOperations = ext.checkpointOperations;
+        checkpointChars = ext.checkpointChars;
+        checkpointSize = ext.checkpointSize;
+        lastRestorable = ext.lastRestorable;
+    }
+    
+    /**
+     * Rebuilds the restoration points and the time column after operations were inserted into the operations for the file.
+     */
+    public void updateRestorationPoints() {
+        applyExtension(buildIndexes(fileInfo.getOperations()));
+    }
+    
+    /**
+     * Builds the restoration points and the column of the times of the operations, which are used for binary searches.
+     * @param ops the operations for the file
+     * @return the built restoration points and time column
+     */
+    private Extension buildIndexes(List<UnifiedOperation> ops) {
+        Extension ext = new Extension(ops);
+        ext.restorations = new RestorationPoint[0];
+        ext.times = new long[0];
+        ext.mismatches = new BitSet(ops.size());
+        ext.checkpointInterval = 1;
+        ext.checkpointOperations = 0;
+        ext.checkpointChars = 0;
+        ext.checkpointSize = 0;
+        
+        extendIndexes(ext, ops, 0, null);
+        return ext;
+    }
+    
+    /**
+     * Extends the restoration points and the column of the times with operations following the already indexed ones.
+     * The arrays held by the extension are replaced with new ones, so that the arrays in use are never changed.
+     * @param ext the extension holding the restoration points and the time column to be extended
+     * @param ops the operations for the file
+     * @param from the index of the first operation to be indexed
+     * @param buf the code after the operation immediately before the first one, or <code>null</code> if it cannot be restored
+     */
+    private void extendIndexes(Extension ext, List<UnifiedOperation> ops, int from, CodeBuffer buf) {
+        List<RestorationPoint> rests = new ArrayList<RestorationPoint>(Arrays.asList(ext.restorations));
+        ext.lastRestorable = addRestorationPoints(ext, ops, from, rests, buf);
+        
+        ext.restorations = rests.toArray(new RestorationPoint[rests.size()]);
+        ext.restorationIndexes = new int[ext.restorations.length];
+        for (int i = 0; i < ext.restorations.length; i++) {
+            ext.restorationIndexes[i] = ext.restorations[i].getIndex();
+        }
+        
+        ext.times = Arrays.copyOf(ext.times, ops.size());
+        for (int idx = from; idx < ops.size(); idx++) {
+            ext.times[idx] = ops.get(idx).getTime();
+        }
+    }
+    
     /**
      * Fabricates operations stored in the history information.
      * @param ops the operations to be fabricated
@@ -65,20 +241,103 @@ public class OperationManager {
     
     /**
      * Obtains restoration points for respective operations.
-     * @return the array list of the restoration points
+     * In addition to the points at file operations, checkpoints are created by replaying text operations
+     * so that the restoration never replays more than a bounded number of operations.
+     * If the checkpoints exceed the memory budget, every other checkpoint is discarded and the interval is doubled.
+     * Normal operations that cannot be replayed are recorded as mismatches during the same pass.
+     * The counters of the replay are kept so that the replay can be resumed for operations appended later.
+     * @param ext the extension holding the mismatches and the counters of the replay, which are updated
+     * @param ops the operations for the file
+     * @param from the index of the first operation to be replayed
+     * @param rests the restoration points for the preceding operations, to which the new ones are added
+     * @param buf the code after the operation immediately before the first one, or <code>null</code> if it cannot be restored
+     * @return <code>true</code> if the code after the last operation can be restored, otherwise <code>false</code>
      */
-    private List<RestorationPoint> getRestorationPoints(List<UnifiedOperation> ops) {
-        List<RestorationPoint> rests = new ArrayList<RestorationPoint>();
-        for (int idx = 0; idx < ops.size(); idx++) {
+    private boolean addRestorationPoints(Extension ext, List<UnifiedOperation> ops, int from, List<RestorationPoint> rests, CodeBuffer buf) {
+        OperationRestorer restorer = new OperationRestorer();
+        int interval = ext.checkpointInterval;
+        int opCount = ext.checkpointOperations;
+        int charCount = ext.checkpointChars;
+        int size = ext.checkpointSize;
+        
+        for (int idx = from; idx < ops.size(); idx++) {
             UnifiedOperation op = ops.get(idx);
             if (op.isFileNewOperation() ||
                 op.isFileOpenOperation() ||
                 op.isFileCloseOperation() ||
                 op.isFileDeleteOperation()) {
                 rests.add(new RestorationPoint(idx, op.getTime(), op.getCode()));
+                if (op.getCode() != null) {
+                    buf = new CodeBuffer(op.getCode());
+                } else {
+                    buf = null;
+                }
+                opCount = 0;
+                charCount = 0;
+                
+            } else if (buf == null) {
+                if (op.isNormalOperation()) {
+                    ext.mismatches.set(idx);
+                }
+                
+            } else if (op.isTextChangedOperation()) {
+                if (!restorer.applyOperation(buf, op)) {
+                    ext.mismatches.set(idx);
+                    buf = null;
+                    continue;
+                }
+                
+                opCount++;
+                if (op.isNormalOperation()) {
+                    charCount = charCount + op.getInsertedText().length() + op.getDeletedText().length();
+                }
+                
+                if (opCount >= CHECKPOINT_OPERATIONS * interval || charCount >= CHECKPOINT_CHARS * interval) {
+                    RestorationPoint pt = RestorationPoint.createCheckpoint(idx, op.getTime(), buf.toString());
+                    rests.add(pt);
+                    size = size + pt.getCheckpointSize();
+                    opCount = 0;
+                    charCount = 0;
+                    
+                    if (size > CHECKPOINT_BUDGET) {
+                        size = thinCheckpoints(rests);
+                        interval = interval * 2;
+                    }
+                }
             }
         }
-        return rests;
+        
+        ext.checkpointInterval = interval;
+        ext.checkpointOperations = opCount;
+        ext.checkpointChars = charCount;
+        ext.checkpointSize = size;
+        return buf != null;
+    }
+    
+    /**
+     * Discards every other checkpoint while keeping all the restoration points at file operations.
+     * @param rests the restoration points
+     * @return the number of bytes occupied by the remaining checkpoints
+     */
+    private int thinCheckpoints(List<RestorationPoint> rests) {
+        List<RestorationPoint> remains = new ArrayList<RestorationPoint>(rests.size());
+        boolean discard = false;
+        int size = 0;
+        for (RestorationPoint pt : rests) {
+            if (pt.isCheckpoint()) {
+                if (discard) {
+                    discard = false;
+                    continue;
+                }
+                discard = true;
+                size = size + pt.getCheckpointSize();
+            }
+            remains.add(pt);
+        }
+        
+        rests.clear();
+        rests.addAll(remains);
+        return size;
     }
     
     /**
@@ -86,7 +345,16 @@ public class OperationManager {
      * @return the number of the restoration points
      */
     public int getRestorationPointNumber() {
-        return restorations.size();
+        return restorations.length;
+    }
+    
+    /**
+     * Tests if the code can be restored at the operation with the specified index without any mismatch.
+     * @param idx the index of the operation
+     * @return <code>true</code> if the code can be restored, otherwise <code>false</code>
+     */
+    public boolean isRestorable(int idx) {
+        return !mismatches.get(idx);
     }
     
     /**
@@ -95,22 +363,11 @@ public class OperationManager {
      * @return the restoration point, or <code>null</code> if the restoration point was not found
      */
     private RestorationPoint getFormerRestorationPoint(int idx) {
-        if (restorations.size() == 0) {
+        int i = upperBound(restorationIndexes, idx) - 1;
+        if (i < 0) {
             return null;
         }
-        
-        for (int i = 0; i < restorations.size(); i++) {
-            RestorationPoint pt = restorations.get(i);
-            if (pt.getIndex() > idx) {
-                
-                if (i == 0) {
-                    return null;
-                }else{
-                    return restorations.get(i - 1);
-                }
-            }
-        }
-        return restorations.get(restorations.size() - 1);
+        return restorations[i];
     }
     
     /**
@@ -119,13 +376,11 @@ public class OperationManager {
      * @return the restoration point, or <code>null</code> if the restoration point was not found
      */
     private RestorationPoint getRestorationPoint(int idx) {
-        for (int i = 0; i < restorations.size(); i++) {
-            RestorationPoint pt = restorations.get(i);
-            if (pt.getIndex() == idx) {
-                return pt;
-            }
+        int i = upperBound(restorationIndexes, idx) - 1;
+        if (i < 0 || restorationIndexes[i] != idx) {
+            return null;
         }
-        return null;
+        return restorations[i];
     }
     
     /**
@@ -134,9 +389,9 @@ public class OperationManager {
      * @return the time for the first operation, or <code>-1</code> if none
      */
     public long getNextOperationTime(long time) {
-        UnifiedOperation op = getNearestLaterOperation(0, fileInfo.getOperations().size() - 1, time);
-        if (op != null) {
-            return op.getTime();
+        int idx = upperBound(times, time);
+        if (idx < times.length) {
+            return times[idx];
         }
         return -1;
     }
@@ -147,9 +402,9 @@ public class OperationManager {
      * @return the time for the last operation, or <code>-1</code> if none
      */
     public long getPreviousOperationTime(long time) {
-        UnifiedOperation op = getNearestFormerOperation(0, fileInfo.getOperations().size() - 1, time);
-        if (op != null) {
-            return op.getTime();
+        int idx = lowerBound(times, time) - 1;
+        if (idx >= 0) {
+            return times[idx];
         }
         return -1;
     }
@@ -160,7 +415,11 @@ public class OperationManager {
      * @return the found operation, where the first matched one if multiple ones are matched by using the binary search
      */
     public UnifiedOperation getOperationByTime(long time) {
-        return getOperationByTime(0, fileInfo.getOperations().size() - 1, time);
+        int idx = getOperationIdxByTime(time);
+        if (idx < 0) {
+            return null;
+        }
+        return fileInfo.getOperations().get(idx);
     }
     
     /**
@@ -169,81 +428,119 @@ public class OperationManager {
      * @return the sequence number of the found operation, where the first matched one if multiple ones are matched by using the binary search
      */
     public int getOperationIdxByTime(long time) {
-        return fileInfo.getOperations().indexOf(getOperationByTime(time));
+        int from = 0;
+        int to = times.length - 1;
+        while (from <= to) {
+            int mid = (from + to) >>> 1;
+            if (times[mid] == time) {
+                return mid;
+            } else if (times[mid] < time) {
+                from = mid + 1;
+            } else {
+                to = mid - 1;
+            }
+        }
+        return -1;
     }
     
     /**
-     * Retrieves the first operation performed immediately after the specified time
-     * within the time period defined by the specified two operations and returns it.
-     * @param from the sequence number of the specified operation indicating the start point of the time period
-     * @param to the sequence number of the specified operation indicating the end point of the time period
-     * @param time the specified time
-     * @return the found operation, where the first matched one if multiple ones are matched by using the binary search, or <code>null</code> if none
+     * Returns the position of the first element greater than a given value in a sorted array.
+     * @param values the sorted array
+     * @param value the given value
+     * @return the position, which is the length of the array if no element is greater than the value
      */
-    private UnifiedOperation getNearestLaterOperation(int from, int to, long time) {
-        List<UnifiedOperation> ops = fileInfo.getOperations();
-        
-        if (ops.get(from).getTime() > time) {
-            return ops.get(from);
-        }
-        if (ops.get(to).getTime() <= time) {
-            return null;
-        }
-        
-        if (from == to - 1) {
-            return ops.get(to);
-        }
-        
-        int mid = (from + to) / 2;
-        if (ops.get(mid).getTime() > time) {
-            return getNearestLaterOperation(from, mid, time);
-            
-        } else {
-            return getNearestLaterOperation(mid + 1, to, time);
+    private static int upperBound(int[] values, int value) {
+        int from = 0;
+        int to = values.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] <= value) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
         }
+        return from;
     }
     
     /**
-     * Retrieves the last operation performed immediately before the specified time
-     * within the time period defined by the specified two operations and returns it.
-     * @param from the sequence number of the specified operation indicating the start point of the time period
-     * @param to the sequence number of the specified operation indicating the end point of the time period
-     * @param time the specified time
-     * @return the found operation, where the first matched one if multiple ones are matched by using the binary search, or <code>null</code> if none
+     * Returns the position of the first element greater than a given value in a sorted array.
+     * @param values the sorted array
+     * @param value the given value
+     * @return the position, which is the length of the array if no element is greater than the value
      */
-    private UnifiedOperation getNearestFormerOperation(int from, int to, long time) {
-        List<UnifiedOperation> ops = fileInfo.getOperations();
-        
-        if (ops.get(from).getTime() >= time) {
-            return null;
-        }
-        if (ops.get(to).getTime() < time) {
-            return ops.get(to);
+    private static int upperBound(long[] values, long value) {
+        int from = 0;
+        int to = values.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] <= value) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
         }
-        
-        if (from + 1 == to) {
-            return ops.get(from);
+        return from;
+    }
+    
+    /**
+     * Returns the position of the first element not less than a given value in a sorted array.
+     * @param values the sorted array
+     * @param value the given value
+     * @return the position, which is the length of the array if all the elements are less than the value
+     */
+    private static int lowerBound(long[] values, long value) {
+        int from = 0;
+        int to = values.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] < value) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
         }
-        
-        int mid = (from + to) / 2;
-        if (ops.get(mid).getTime() >= time) {
-            return getNearestFormerOperation(from, mid - 1, time);
-            
-        } else {
-            return getNearestFormerOperation(mid, to, time);
+        return from;
+    }
+    
+    /**
+     * Returns the position of the first operation performed after a given time in a list of operations sorted in time order.
+     * @param ops the sorted operations
+     * @param time the given time
+     * @return the position, which is the size of the list if no operation was performed after the time
+     */
+    private static int upperBound(List<UnifiedOperation> ops, long time) {
+        int from = 0;
+        int to = ops.size();
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (ops.get(mid).getTime() <= time) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
         }
+        return from;
     }
     
     /**
-     * Retrieves the operation performed at the specified time within the time period
-     * defined by the specified two operations and returns it.
-     * @param from the sequence number of the specified operation indicating the start point of the time period
-     * @param to the sequence number of the specified operation indicating the end point of the time period
-     * @param time the specified time
-     * @return the found operation, where the first matched one if multiple ones are matched by using the binary search, or <code>null</code> if none
+     * Returns the position of the first operation performed at or after a given time in a list of operations sorted in time order.
+     * @param ops the sorted operations
+     * @param time the given time
+     * @return the position, which is the size of the list if all the operations were performed before the time
      */
-    private UnifiedOperation getOperationByTime(int from, int to, long time) {
-        return getOperationByTime(fileInfo.getOperations(), from, to, time);
+    private static int lowerBound(List<UnifiedOperation> ops, long time) {
+        int from = 0;
+        int to = ops.size();
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (ops.get(mid).getTime() < time) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
     }
     
     /**
@@ -267,28 +564,18 @@ public class OperationManager {
      * @return the found operation, where the first matched one if multiple ones are matched by using the binary search, or <code>null</code> if none
      */
     private static UnifiedOperation getOperationByTime(List<UnifiedOperation> ops, int from, int to, long time) {
-        int mid = (from + to) / 2;
-        long t = ops.get(mid).getTime();
-        
-        if (from > to) {
-            return null;
-        }
-        
-        if (t == time) {
-            return ops.get(mid);
-            
-        } else if (t < time) {
-            if (mid + 1 >= ops.size()) {
-                return null;
-            }
-            return getOperationByTime(ops, mid + 1, to, time);
-        
-        } else {
-            if (mid - 1 < 0) {
-                return null;
+        while (from <= to) {
+            int mid = (from + to) >>> 1;
+            long t = ops.get(mid).getTime();
+            if (t == time) {
+                return ops.get(mid);
+            } else if (t < time) {
+                from = mid + 1;
+            } else {
+                to = mid - 1;
             }
-            return getOperationByTime(ops, from, mid - 1, time);
         }
+        return null;
     }
     
     /**
@@ -318,15 +605,15 @@ public class OperationManager {
         
         RestorationPoint pt = getFormerRestorationPoint(idx);
         if (pt == null) { 
-            System.err.print("Not found restartaion point: " + idx);
+            Message.error("Not found restoration point: " + idx + " in " + fileInfo.getFilePath());
             return null;
         }
         
         try {
-            String code = applyOperations(pt.getCode(), pt.getIndex() - 1, idx);
+            String code = applyOperations(pt.getCode(), pt.getIndex(), idx);
             return code;
         } catch (Exception e) {
-            System.err.print(e.getMessage());
+            Message.error("Cannot restore the code of " + fileInfo.getFilePath() + " at " + idx, e);
         }
         return null;
     }
@@ -363,6 +650,14 @@ public class OperationManager {
             }
         }
         
+        RestorationPoint pt = getFormerRestorationPoint(idx);
+        if (pt != null && idx - pt.getIndex() < Math.abs(idx - curIdx)) {
+            String code = pt.getCode();
+            if (code != null) {
+                return applyOperations(code, pt.getIndex(), idx);
+            }
+        }
+        
         String code = applyOperations(curCode, curIdx, idx);
         return code;
     }
@@ -375,39 +670,40 @@ public class OperationManager {
      * @return the content of the restored code, or the original code if the time range is invalid
      */
     private String applyOperations(String code, int from, int to) {
-        if (from == to) {
+        if (from == to || code == null) {
             return code;
         }
         
         List<UnifiedOperation> ops = fileInfo.getOperations();
         OperationRestorer enforcer = new OperationRestorer();
+        CodeBuffer buf = new CodeBuffer(code);
         if (from < to) {
-            for (int idx = from + 1; idx <= to && code != null; idx++) {
+            for (int idx = from + 1; idx <= to; idx++) {
                 UnifiedOperation op = ops.get(idx);
                 
                 if (op.isTextChangedOperation()) {
-                    code = enforcer.applyOperation(code, op);
-                    if (code == null) {
-                        System.err.print(enforcer.getErrorStatus());
+                    if (!enforcer.applyOperation(buf, op)) {
+                        Message.error("Cannot restore the code of " + fileInfo.getFilePath() + ": " + enforcer.getErrorStatus());
+                        return null;
                     }
                 }
             }
             
         } else {
-            for (int idx = from; idx > to && code != null; idx--) {
+            for (int idx = from; idx > to; idx--) {
                 UnifiedOperation op = ops.get(idx);
                 
                 if (op.isTextChangedOperation()) {
-                    code = enforcer.applyOperationReversely(code, op);
-                    if (code == null) {
-                        System.err.print(enforcer.getErrorStatus());
+                    if (!enforcer.applyOperationReversely(buf, op)) {
+                        Message.error("Cannot restore the code of " + fileInfo.getFilePath() + ": " + enforcer.getErrorStatus());
+                        return null;
                     }
                 }
             }
             
         }
         
-        return code;
+        return buf.toString();
     }
     
     /**
@@ -416,10 +712,9 @@ public class OperationManager {
      * @return the developer name, or <code>null</code> if none
      */
     public String getAuthor(long time) {
-        for (UnifiedOperation op : fileInfo.getOperations()) {
-            if (op.getTime() == time) {
-                return op.getAuthor();
-            }
+        int idx = lowerBound(times, time);
+        if (idx < times.length && times[idx] == time) {
+            return fileInfo.getOperations().get(idx).getAuthor();
         }
         return null;
     }
@@ -476,16 +771,7 @@ public class OperationManager {
             return -1;
         }
         
-        if (ops.get(0).getTime() > time) {
-            return -1;
-        }
-        
-        for (int idx = ops.size() - 1; idx >= 0; idx--) {
-            if (ops.get(idx).getTime() <= time) {
-                return idx;
-            }
-        }
-        return -1;
+        return upperBound(ops, time) - 1;
     }
     
     /**
@@ -499,16 +785,7 @@ public class OperationManager {
             return -1;
         }
         
-        if (ops.get(0).getTime() > time) {
-            return -1;
-        }
-        
-        for (int idx = ops.size() - 1; idx >= 0; idx--) {
-            if (ops.get(idx).getTime() < time) {
-                return idx;
-            }
-        }
-        return -1;
+        return lowerBound(ops, time) - 1;
     }
     
     /**
@@ -522,14 +799,9 @@ public class OperationManager {
             return -1;
         }
         
-        if (ops.get(ops.size() - 1).getTime() < time) {
-            return -1;
-        }
-        
-        for (int idx = 0; idx < ops.size(); idx++) {
-            if (ops.get(idx).getTime() >= time) {
-                return idx;
-            }
+        int idx = lowerBound(ops, time);
+        if (idx < ops.size()) {
+            return idx;
         }
         return -1;
     }
@@ -545,14 +817,9 @@ public class OperationManager {
             return -1;
         }
         
-        if (ops.get(ops.size() - 1).getTime() < time) {
-            return -1;
-        }
-        
-        for (int idx = 0; idx < ops.size(); idx++) {
-            if (ops.get(idx).getTime() > time) {
-                return idx;
-            }
+        int idx = upperBound(ops, time);
+        if (idx < ops.size()) {
+            return idx;
         }
         return -1;
     }
@@ -616,4 +883,77 @@ public class OperationManager {
             }
         });
     }
+    
+    /**
+     * The restoration points, the time column, and the state of the replay for operations extended with
+     * appended ones, which are built without changing the ones in use.
+     */
+    public static class Extension {
+        
+        /**
+         * The appended operations after their fabrication.
+         */
+        private List<UnifiedOperation> operations;
+        
+        /**
+         * The restoration points in the order of their sequence numbers.
+         */
+        private RestorationPoint[] restorations;
+        
+        /**
+         * The sequence numbers of the operations at the respective restoration points.
+         */
+        private int[] restorationIndexes;
+        
+        /**
+         * The times of the respective operations.
+         */
+        private long[] times;
+        
+        /**
+         * The sequence numbers of normal operations whose code cannot be restored because of mismatches.
+         */
+        private BitSet mismatches;
+        
+        /**
+         * The multiplier of the interval between two successive checkpoints.
+         */
+        private int checkpointInterval;
+        
+        /**
+         * The number of text operations replayed since the last restoration point.
+         */
+        private int checkpointOperations;
+        
+        /**
+         * The number of characters changed since the last restoration point.
+         */
+        private int checkpointChars;
+        
+        /**
+         * The number of bytes occupied by the compressed code of the checkpoints.
+         */
+        private int checkpointSize;
+        
+        /**
+         * A flag indicating if the code after the last operation can be restored.
+         */
+        private boolean lastRestorable;
+        
+        /**
+         * Creates an extension.
+         * @param ops the appended operations after their fabrication
+         */
+        private Extension(List<UnifiedOperation> ops) {
+            operations = ops;
+        }
+
+        /**
+         * Returns the appended operations after their fabrication.
+         * @return the collection of the appended operations
+         */
+        public List<UnifiedOperation> getOperations() {
+            return operations;
+        }
+    }
 }
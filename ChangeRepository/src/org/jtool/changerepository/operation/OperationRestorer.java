@@ -6,6 +6,8 @@
 
 package org.jtool.changerepository.operation;
 
+import org.jtool.changerecorder.util.CodeBuffer;
+
 /**
  * Enforces to apply the editing operation to the source code.
  * @author Katsuhisa Maruyama
@@ -33,52 +35,36 @@ public class OperationRestorer {
      */
     public String applyOperation(String code, UnifiedOperation op) {
         if (op.isNormalOperation()) {
-            return applyNormalOperation(code, op);
+            CodeBuffer buf = new CodeBuffer(code);
+            if (!applyNormalOperation(buf, op)) {
+                return null;
+            }
+            return buf.toString();
         }
         return code;
     }
     
     /**
-     * Applies a specified normal operation into a given code.
-     * @param code the code that will be applied the operation into
+     * Applies the specified operation into the code stored in a buffer.
+     * @param buf the buffer storing the code, which is modified in place
      * @param op the operation to be applied
-     * @return the resulting code after the application
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if any error occurred
      */
-    private String applyNormalOperation(String code, UnifiedOperation op) {
-        StringBuffer buf = new StringBuffer(code);
-        try {
-            int start = op.getStart();
-            int end = start + op.getDeletedText().length();
-            
-            if (op.getDeletedText().length() > 0) {
-                String replacedText = buf.substring(start, end);
-                
-                if (replacedText != null && replacedText.compareTo(op.getDeletedText()) != 0) {
-                    
-                    /*
-                    System.out.println(replacedText.length() + " " + op.getDeletedText().length());
-                    for (int i = 0; i < replacedText.length(); i++) {
-                        if (replacedText.charAt(i) == op.getDeletedText().charAt(i)) {
-                            System.out.println(((int)replacedText.charAt(i)) + " == " + ((int)op.getDeletedText().charAt(i)));
-                        } else {
-                            System.out.println(((int)replacedText.charAt(i)) + " != " + ((int)op.getDeletedText().charAt(i)));
-                        }
-                    }
-                    */
-                    
-                    errorStatus = "Mismatch found:" +  op.getTime() +
-                                  "[" + op.getDeletedText() + "] to be replaced with [" + replacedText + "]";
-                    return null;
-                }
-            }
-            
-            buf.replace(start, end, op.getInsertedText());
-            
-        } catch (StringIndexOutOfBoundsException e) {
-            errorStatus = "Out of the text range with: " + op.toString();
-            return null;
+    public boolean applyOperation(CodeBuffer buf, UnifiedOperation op) {
+        if (op.isNormalOperation()) {
+            return applyNormalOperation(buf, op);
         }
-        return buf.toString();
+        return true;
+    }
+            
+    /**
+     * Applies a specified normal operation into the code stored in a buffer.
+     * @param buf the buffer storing the code, which is modified in place
+     * @param op the operation to be applied
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if any error occurred
+     */
+    private boolean applyNormalOperation(CodeBuffer buf, UnifiedOperation op) {
+        return replace(buf, op.getStart(), op.getDeletedText(), op.getInsertedText(), op);
     }
     
     /**
@@ -89,51 +75,62 @@ public class OperationRestorer {
      */
     public String applyOperationReversely(String code, UnifiedOperation op) {
         if (op.isNormalOperation()) {
-            return applyNormalOperationReversely(code, op);
+            CodeBuffer buf = new CodeBuffer(code);
+            if (!applyNormalOperationReversely(buf, op)) {
+                return null;
+            }
+            return buf.toString();
         }
         return code;
     }
     
     /**
-     * Applies a specified normal operation into a given code reversely.
-     * @param code the code that will be applied the operation into
+     * Applies the specified operation into the code stored in a buffer reversely.
+     * @param buf the buffer storing the code, which is modified in place
      * @param op the operation to be applied
-     * @return the resulting code after the reverse application
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if any error occurred
      */
-    private String applyNormalOperationReversely(String code, UnifiedOperation op) {
-        StringBuffer buf = new StringBuffer(code);
-        try {
-            int start = op.getStart();
-            int end = start + op.getInsertedText().length();
+    public boolean applyOperationReversely(CodeBuffer buf, UnifiedOperation op) {
+        if (op.isNormalOperation()) {
+            return applyNormalOperationReversely(buf, op);
+        }
+        return true;
+    }
             
-            if (op.getInsertedText().length() > 0) {
-                String replacedText = buf.substring(start, end);
+    /**
+     * Applies a specified normal operation into the code stored in a buffer reversely.
+     * @param buf the buffer storing the code, which is modified in place
+     * @param op the operation to be applied
+     * @return <code>true</code> if the operation was applied, or <code>false</code> if any error occurred
+     */
+    private boolean applyNormalOperationReversely(CodeBuffer buf, UnifiedOperation op) {
+        return replace(buf, op.getStart(), op.getInsertedText(), op.getDeletedText(), op);
+    }
                 
-                if (replacedText != null && replacedText.compareTo(op.getInsertedText()) != 0) {
-                    
-                    /*
-                    System.out.println(replacedText.length() + " " + op.getInsertedText().length());
-                    for (int i = 0; i < replacedText.length(); i++) {
-                        if (replacedText.charAt(i) == op.getInsertedText().charAt(i)) {
-                            System.out.println(((int)replacedText.charAt(i)) + " == " + ((int)op.getInsertedText().charAt(i)));
-                        } else {
-                            System.out.println(((int)replacedText.charAt(i)) + " != " + ((int)op.getInsertedText().charAt(i)));
-                        }
-                    }
-                    */
-                    
-                    errorStatus = "Mismatch found:" +  op.getTime() +
-                            "[" + op.getInsertedText() + "] to be replaced with [" + replacedText + "]";
-                    return null;
-                }
-            }
-            
-            buf.replace(start, end, op.getDeletedText());
-        
-        } catch (StringIndexOutOfBoundsException e) {
+    /**
+     * Replaces a text in the code after checking that the text exists at the specified position.
+     * @param buf the buffer storing the code, which is modified in place
+     * @param start the position where the text to be replaced starts
+     * @param oldText the text to be replaced
+     * @param newText the text that replaces the old text
+     * @param op the operation to be applied
+     * @return <code>true</code> if the text was replaced, or <code>false</code> if any error occurred
+     */
+    private boolean replace(CodeBuffer buf, int start, String oldText, String newText, UnifiedOperation op) {
+        int end = start + oldText.length();
+        if (start < 0 || end > buf.length()) {
             errorStatus = "Out of the text range with: " + op.toString();
-            return null;
+            return false;
+        }
+                    
+        if (!buf.matches(start, oldText)) {
+            errorStatus = "Mismatch found:" +  op.getTime() +
+                          "[" + oldText + "] to be replaced with [" + buf.substring(start, end) + "]";
+            return false;
         }
-        return buf.toString();
+                    
+        buf.replace(start, end, newText);
+        return true;
     }
 }
+            
\ No newline at end of file
@@ -7,6 +7,11 @@
 package org.jtool.changerepository.operation;
 
 import org.jtool.changerecorder.util.Time;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Manages the restoration point for source code affected by the operation histories.
@@ -14,6 +19,11 @@ import org.jtool.changerecorder.util.Time;
  */
 class RestorationPoint {
     
+    /**
+     * The character set used to compress the source code of checkpoints.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
     /**
      * The sequence number indicating the operation at this restoration point.
      */
@@ -29,6 +39,11 @@ class RestorationPoint {
      */
     private String code;
     
+    /**
+     * The compressed source code restored at this restoration point if it is a checkpoint.
+     */
+    private byte[] compressedCode;
+    
     /**
      * Creates an instance for storing information on restoration point.
      * @param idx the sequence number indicating the operation at this restoration point
@@ -41,6 +56,40 @@ class RestorationPoint {
         this.code = code;
     }
     
+    /**
+     * Creates an instance for storing information on a checkpoint whose source code is kept compressed.
+     * @param idx the sequence number indicating the operation at this checkpoint
+     * @param time the time at this checkpoint
+     * @param compressedCode the compressed source code restored after the operation at this checkpoint
+     */
+    private RestorationPoint(int idx, long time, byte[] compressedCode) {
+        this.idx = idx;
+        this.time = time;
+        this.compressedCode = compressedCode;
+    }
+    
+    /**
+     * Creates a checkpoint storing source code restored by replaying operations.
+     * @param idx the sequence number indicating the operation at this checkpoint
+     * @param time the time at this checkpoint
+     * @param code the source code restored after the operation at this checkpoint
+     * @return the created checkpoint
+     */
+    static RestorationPoint createCheckpoint(int idx, long time, String code) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(code.getBytes(UTF8));
+        deflater.finish();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(code.length() / 4 + 64);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+        deflater.end();
+        return new RestorationPoint(idx, time, out.toByteArray());
+    }
+    
     /**
      * Returns the sequence number indicating the operation at this restoration point.
      * @return the sequence number
@@ -62,7 +111,47 @@ class RestorationPoint {
      * @return the restored source code
      */
     String getCode() {
-        return code;
+        if (compressedCode == null) {
+            return code;
+        }
+        
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressedCode);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressedCode.length * 4);
+        byte[] buf = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+                if (len == 0 && inflater.needsInput()) {
+                    return null;
+                }
+                out.write(buf, 0, len);
+            }
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return new String(out.toByteArray(), UTF8);
+    }
+    
+    /**
+     * Tests if this restoration point is a checkpoint created by replaying operations.
+     * @return <code>true</code> if this is a checkpoint, otherwise <code>false</code>
+     */
+    boolean isCheckpoint() {
+        return compressedCode != null;
+    }
+    
+    /**
+     * Returns the number of bytes occupied by the compressed source code of this checkpoint.
+     * @return the number of bytes, or <code>0</code> if this is not a checkpoint
+     */
+    int getCheckpointSize() {
+        if (compressedCode == null) {
+            return 0;
+        }
+        return compressedCode.length;
     }
     
     /**
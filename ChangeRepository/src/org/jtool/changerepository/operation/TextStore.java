@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.operation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the texts of operations in UTF-8 outside the heap, typically in a memory-mapped file.
+ * The texts are decoded on demand, and recently used ones are kept in a cache
+ * shared by all the stores, whose size is bounded by the total number of characters.
+ * @author Katsuhisa Maruyama
+ */
+public class TextStore {
+    
+    /**
+     * The maximum number of characters kept in the cache.
+     */
+    private static final int CACHE_CHARS = 4 * 1024 * 1024;
+    
+    /**
+     * The character set of the texts.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The cache of recently used texts in access order.
+     */
+    private static Map<Location, String> cache = new LinkedHashMap<Location, String>(1024, 0.75f, true);
+    
+    /**
+     * The total number of characters of the texts in the cache.
+     */
+    private static int cachedChars = 0;
+    
+    /**
+     * The bytes of the texts.
+     */
+    private ByteBuffer texts;
+    
+    /**
+     * Creates a store of texts.
+     * @param texts the bytes of the texts encoded in UTF-8
+     */
+    public TextStore(ByteBuffer texts) {
+        this.texts = texts;
+    }
+    
+    /**
+     * Returns a text in this store.
+     * @param offset the offset of the text
+     * @param length the number of bytes of the text, or <code>-1</code> for <code>null</code>
+     * @return the text, which might be <code>null</code>
+     * @throws IndexOutOfBoundsException if the text is out of this store
+     */
+    public String getText(long offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        if (offset < 0 || offset + length > texts.capacity()) {
+            throw new IndexOutOfBoundsException("invalid text range " + offset);
+        }
+        if (length == 0) {
+            return "";
+        }
+        
+        Location loc = new Location(this, offset);
+        String text = getCachedText(loc);
+        if (text != null) {
+            return text;
+        }
+        
+        byte[] bytes = new byte[length];
+        ByteBuffer buf = texts.duplicate();
+        buf.position((int)offset);
+        buf.get(bytes);
+        text = new String(bytes, UTF8);
+        
+        putCachedText(loc, text);
+        return text;
+    }
+    
+    /**
+     * Returns a text in the cache.
+     * @param loc the location of the text
+     * @return the text, or <code>null</code> if the cache does not contain it
+     */
+    private static synchronized String getCachedText(Location loc) {
+        return cache.get(loc);
+    }
+    
+    /**
+     * Puts a text into the cache, evicting the least recently used texts if the cache overflows.
+     * @param loc the location of the text
+     * @param text the text
+     */
+    private static synchronized void putCachedText(Location loc, String text) {
+        if (text.length() > CACHE_CHARS / 4) {
+            return;
+        }
+        
+        String old = cache.put(loc, text);
+        if (old != null) {
+            cachedChars = cachedChars - old.length();
+        }
+        cachedChars = cachedChars + text.length();
+        
+        Iterator<String> it = cache.values().iterator();
+        while (cachedChars > CACHE_CHARS && it.hasNext()) {
+            cachedChars = cachedChars - it.next().length();
+            it.remove();
+        }
+    }
+    
+    /**
+     * Clears the cache of texts.
+     */
+    public static synchronized void clearCache() {
+        cache.clear();
+        cachedChars = 0;
+    }
+    
+    /**
+     * The location of a text in a store, which is the key of the cache.
+     */
+    private static class Location {
+        
+        /**
+         * The store containing the text.
+         */
+        private TextStore store;
+        
+        /**
+         * The offset of the text in the store.
+         */
+        private long offset;
+        
+        /**
+         * Creates a location of a text.
+         * @param store the store containing the text
+         * @param offset the offset of the text in the store
+         */
+        Location(TextStore store, long offset) {
+            this.store = store;
+            this.offset = offset;
+        }
+        
+        /**
+         * Tests if this location is the same as a given object.
+         * @param obj the object to be compared
+         * @return <code>true</code> if both locations point to the same text, otherwise <code>false</code>
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Location)) {
+                return false;
+            }
+            
+            Location loc = (Location)obj;
+            return store == loc.store && offset == loc.offset;
+        }
+        
+        /**
+         * Returns the hash code of this location.
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(store) * 31 + (int)(offset ^ (offset >>> 32));
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.jtool.changerecorder.util.Time;
 import org.jtool.changerepository.data.FileInfo;
 import org.jtool.changerepository.data.PackageInfo;
 import org.jtool.changerepository.data.ProjectInfo;
+import java.lang.ref.SoftReference;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -52,6 +53,42 @@ public class UnifiedOperation {
      */
     private FileInfo fileInfo;
     
+    /**
+     * The length indicating that a text resides in the recorded operation.
+     */
+    private static final int RESIDENT = -2;
+    
+    /**
+     * The store containing the texts of this operation, or <code>null</code> if they reside in the recorded operation.
+     */
+    private TextStore textStore;
+    
+    /**
+     * The offset of the inserted text, the copied text, or the code in the text store.
+     */
+    private long textOffset;
+    
+    /**
+     * The number of bytes of the inserted text, the copied text, or the code in the text store.
+     */
+    private int textLength = RESIDENT;
+    
+    /**
+     * The offset of the deleted text in the text store.
+     */
+    private long subtextOffset;
+    
+    /**
+     * The number of bytes of the deleted text in the text store.
+     */
+    private int subtextLength = RESIDENT;
+    
+    /**
+     * The copy of the recorded operation holding the texts fetched from the text store,
+     * which is released if memory runs short and discarded when the texts are changed.
+     */
+    private SoftReference<IOperation> fetchedOperation = null;
+    
     /**
      * Creates an instance storing information on the operation.
      * @param iop the operation recorded by OperationRecorder
@@ -72,6 +109,27 @@ public class UnifiedOperation {
         return ops;
     }
     
+    /**
+     * Creates a new instance whose texts are kept in a text store until they are needed.
+     * The recorded operation does not hold the texts, which are fetched from the store on demand.
+     * @param op the operation recorded by OperationRecorder, which must be a normal, copy, or file operation
+     * @param store the store containing the texts
+     * @param textOffset the offset of the inserted text, the copied text, or the code
+     * @param textLength the number of bytes of the inserted text, the copied text, or the code, or <code>-1</code> for <code>null</code>
+     * @param subtextOffset the offset of the deleted text
+     * @param subtextLength the number of bytes of the deleted text, or <code>-1</code> for <code>null</code>
+     * @return the created operation
+     */
+    public static UnifiedOperation create(IOperation op, TextStore store, long textOffset, int textLength, long subtextOffset, int subtextLength) {
+        UnifiedOperation uop = new UnifiedOperation(op);
+        uop.textStore = store;
+        uop.textOffset = textOffset;
+        uop.textLength = textLength;
+        uop.subtextOffset = subtextOffset;
+        uop.subtextLength = subtextLength;
+        return uop;
+    }
+    
     /**
      * Collects all operations dangling a given operation.
      * @param ops the collection of the dangling operations
@@ -277,11 +335,35 @@ public class UnifiedOperation {
     public String getCode() {
         if (isFileNewOperation() || isFileOpenOperation() || isFileCloseOperation() || isFileDeleteOperation()) {
             FileOperation fop = (FileOperation)operation;
-            return fop.getCode();
+            return getText(fop.getCode());
         }
         return null;
     }
     
+    /**
+     * Returns the inserted text, the copied text, or the code of this operation.
+     * @param text the text residing in the recorded operation
+     * @return the text fetched from the text store, or the residing text if it is not kept in the store
+     */
+    private String getText(String text) {
+        if (textStore == null || textLength == RESIDENT) {
+            return text;
+        }
+        return textStore.getText(textOffset, textLength);
+    }
+    
+    /**
+     * Returns the deleted text of this operation.
+     * @param text the text residing in the recorded operation
+     * @return the text fetched from the text store, or the residing text if it is not kept in the store
+     */
+    private String getSubtext(String text) {
+        if (textStore == null || subtextLength == RESIDENT) {
+            return text;
+        }
+        return textStore.getText(subtextOffset, subtextLength);
+    }
+    
     /**
      * Returns the leftmost offset of the text affected by this operation.
      * @return the leftmost offset value of the modified text
@@ -306,7 +388,7 @@ public class UnifiedOperation {
     public String getInsertedText() {
         if (isNormalOperation()) {
             NormalOperation op = (NormalOperation)operation;
-            return op.getInsertedText();
+            return getText(op.getInsertedText());
         }
         
         return "";
@@ -320,6 +402,8 @@ public class UnifiedOperation {
         if (isNormalOperation()) {
             NormalOperation op = (NormalOperation)operation;
             op.setInsertedText(text);
+            textLength = RESIDENT;
+            fetchedOperation = null;
         }
     }
     
@@ -330,7 +414,7 @@ public class UnifiedOperation {
     public String getDeletedText() {
         if (isNormalOperation()) {
             NormalOperation op = (NormalOperation)operation;
-            return op.getDeletedText();
+            return getSubtext(op.getDeletedText());
         }
         
         return "";
@@ -344,6 +428,8 @@ public class UnifiedOperation {
         if (isNormalOperation()) {
             NormalOperation op = (NormalOperation)operation;
             op.setDeletedText(text);
+            subtextLength = RESIDENT;
+            fetchedOperation = null;
         }
     }
     
@@ -354,7 +440,7 @@ public class UnifiedOperation {
     public String getCopiedText() {
         if (isCopyOperation()) {
             CopyOperation op = (CopyOperation)operation;
-            return op.getCopiedText();
+            return getText(op.getCopiedText());
         }
         
         return "";
@@ -366,13 +452,11 @@ public class UnifiedOperation {
      */
     public String getCutCopiedText() {
         if (isCutOperation()) {
-            NormalOperation op = (NormalOperation)operation;
-            return op.getDeletedText();
+            return getDeletedText();
         }
         
         if (isCopyOperation()) {
-            CopyOperation op = (CopyOperation)operation;
-            return op.getCopiedText();
+            return getCopiedText();
         }
         
         return "";
@@ -454,10 +538,43 @@ public class UnifiedOperation {
     
     /**
      * Returns the interface of the operation recorded by OperationRecorder
+     * If the texts of this operation are kept in a text store, a copy of the recorded operation holding the texts is returned.
+     * The copy is reused by subsequent calls until it is released for lack of memory.
      * @return the recorded operation
      */
     public IOperation getIOperation() {
-        return operation;
+        if (textStore == null) {
+            return operation;
+        }
+        
+        if (fetchedOperation != null) {
+            IOperation op = fetchedOperation.get();
+            if (op != null) {
+                return op;
+            }
+        }
+        
+        AbstractOperation op;
+        if (isNormalOperation()) {
+            NormalOperation nop = (NormalOperation)operation;
+            op = new NormalOperation(getTime(), getSequenceNumber(), operation.getFilePath(), operation.getAuthor(),
+                     nop.getStart(), getInsertedText(), getDeletedText(), nop.getActionType());
+                     
+        } else if (isCopyOperation()) {
+            CopyOperation cop = (CopyOperation)operation;
+            op = new CopyOperation(getTime(), operation.getFilePath(), operation.getAuthor(), cop.getStart(), getCopiedText());
+            
+        } else if (isFileOperation()) {
+            FileOperation fop = (FileOperation)operation;
+            op = new FileOperation(getTime(), operation.getFilePath(), operation.getAuthor(), fop.getActionType(), getCode());
+            
+        } else {
+            return operation;
+        }
+        
+        op.setSequenceNumber(getSequenceNumber());
+        fetchedOperation = new SoftReference<IOperation>(op);
+        return op;
     }
     
     /**
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests the restoration of the code of a file from its restoration points and checkpoints.
+ * @author Katsuhisa Maruyama
+ */
+public class FileInfoTest {
+    
+    /**
+     * The path of the file.
+     */
+    private static final String PATH = "/P/src/a/A.java";
+    
+    /**
+     * Creates the information on a file.
+     * @return the created file information
+     */
+    private static FileInfo createFileInfo() {
+        WorkspaceInfo winfo = new WorkspaceInfo("/tmp");
+        ProjectInfo pinfo = new ProjectInfo("P", winfo);
+        PackageInfo painfo = new PackageInfo("a", pinfo);
+        return new FileInfo("A.java", PATH, pinfo, painfo);
+    }
+    
+    /**
+     * Adds an operation to a file.
+     * @param finfo the file information
+     * @param op the operation
+     */
+    private static void addOperation(FileInfo finfo, IOperation op) {
+        for (UnifiedOperation uop : UnifiedOperation.create(op)) {
+            uop.setFileInfo(finfo);
+            finfo.addOperation(uop);
+        }
+    }
+    
+    /**
+     * Creates random edit sessions on a file.
+     * @param seed the seed of the random numbers
+     * @param sessions the number of the sessions, each of which starts with an open operation and ends with a close one
+     * @param edits the number of the edit operations in each session
+     * @return the operations
+     */
+    private static List<IOperation> createOperations(long seed, int sessions, int edits) {
+        Random random = new Random(seed);
+        List<IOperation> ops = new ArrayList<IOperation>();
+        String code = "public class A {\n}\n";
+        long time = 1000;
+        for (int s = 0; s < sessions; s++) {
+            ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.OPEN, code));
+            for (int e = 0; e < edits; e++) {
+                int start = random.nextInt(code.length() + 1);
+                int len = (random.nextInt(4) == 0) ? Math.min(code.length() - start, random.nextInt(20)) : 0;
+                String dtext = code.substring(start, start + len);
+                String itext = (random.nextInt(3) == 0) ? "" : "x" + e;
+                ops.add(new NormalOperation(time++, 0, PATH, "me", start, itext, dtext, NormalOperation.Type.EDIT));
+                code = code.substring(0, start) + itext + code.substring(start + len);
+            }
+            ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.CLOSE, code));
+        }
+        return ops;
+    }
+    
+    /**
+     * Replays operations one by one from the code recorded by file operations.
+     * @param finfo the file information
+     * @return the code after the respective operations
+     */
+    private static List<String> replay(FileInfo finfo) {
+        List<String> codes = new ArrayList<String>();
+        String code = null;
+        for (UnifiedOperation op : finfo.getOperations()) {
+            if (op.getCode() != null) {
+                code = op.getCode();
+            } else if (code != null && op.isNormalOperation()) {
+                int start = op.getStart();
+                int end = start + op.getDeletedText().length();
+                if (end > code.length() || !code.substring(start, end).equals(op.getDeletedText())) {
+                    code = null;
+                } else {
+                    code = code.substring(0, start) + op.getInsertedText() + code.substring(end);
+                }
+            }
+            codes.add(code);
+        }
+        return codes;
+    }
+    
+    /**
+     * Tests that the code after every operation is restored from the nearest restoration point.
+     */
+    @Test
+    public void testRestore() {
+        FileInfo finfo = createFileInfo();
+        for (IOperation op : createOperations(7, 3, 1500)) {
+            addOperation(finfo, op);
+        }
+        finfo.setTimeRange();
+        
+        assertTrue(finfo.getRestorationPointNumber() > 6);
+        List<String> expected = replay(finfo);
+        for (int idx = 0; idx < expected.size(); idx++) {
+            assertEquals(expected.get(idx), finfo.getCode(idx));
+        }
+        assertFalse(finfo.checkMismatches());
+    }
+    
+    /**
+     * Tests that the code is restored forward and backward from the code after another operation.
+     */
+    @Test
+    public void testRestoreFromCurrentCode() {
+        FileInfo finfo = createFileInfo();
+        for (IOperation op : createOperations(3, 2, 800)) {
+            addOperation(finfo, op);
+        }
+        finfo.setTimeRange();
+        
+        List<String> expected = replay(finfo);
+        Random random = new Random(5);
+        for (int k = 0; k < 500; k++) {
+            int from = random.nextInt(expected.size());
+            int to = random.nextInt(expected.size());
+            assertEquals(expected.get(to), finfo.getCode(expected.get(from), from, to));
+        }
+    }
+    
+    /**
+     * Tests that the restoration points of appended operations are consistent with those of the whole operations.
+     */
+    @Test
+    public void testExtend() {
+        List<IOperation> ops = createOperations(11, 2, 700);
+        int split = ops.size() / 3;
+        
+        FileInfo finfo = createFileInfo();
+        for (IOperation op : ops.subList(0, split)) {
+            addOperation(finfo, op);
+        }
+        finfo.setTimeRange();
+        for (IOperation op : ops.subList(split, ops.size())) {
+            addOperation(finfo, op);
+        }
+        finfo.extendTimeRange();
+        
+        List<String> expected = replay(finfo);
+        assertEquals(ops.size(), expected.size());
+        for (int idx = 0; idx < expected.size(); idx++) {
+            assertEquals(expected.get(idx), finfo.getCode(idx));
+        }
+    }
+    
+    /**
+     * Tests that the code after an operation that does not match the code is not restored.
+     */
+    @Test
+    public void testMismatch() {
+        FileInfo finfo = createFileInfo();
+        addOperation(finfo, new FileOperation(1000, PATH, "me", FileOperation.Type.OPEN, "abcdef"));
+        addOperation(finfo, new NormalOperation(1001, 0, PATH, "me", 1, "x", "b", NormalOperation.Type.EDIT));
+        addOperation(finfo, new NormalOperation(1002, 0, PATH, "me", 3, "", "zz", NormalOperation.Type.EDIT));
+        addOperation(finfo, new NormalOperation(1003, 0, PATH, "me", 0, "y", "", NormalOperation.Type.EDIT));
+        finfo.setTimeRange();
+        
+        assertEquals("axcdef", finfo.getCode(1));
+        assertNull(finfo.getCode(2));
+        assertNull(finfo.getCode(3));
+        assertTrue(finfo.checkMismatches());
+    }
+}
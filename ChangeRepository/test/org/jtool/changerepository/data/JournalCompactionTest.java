@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.history.HistoryJournal;
+import org.jtool.changerecorder.history.OperationHistory;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the operations recorded in a journal are read by the repository after the journal is compacted.
+ * @author Katsuhisa Maruyama
+ */
+public class JournalCompactionTest {
+    
+    /**
+     * The directory that stores the history files.
+     */
+    private File dir;
+    
+    /**
+     * Creates the directory that stores the history files.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+    }
+    
+    /**
+     * Deletes the directory that stores the history files.
+     */
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+    
+    /**
+     * Deletes a file or a directory with its descendants.
+     * @param file the file or the directory
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+    /**
+     * Creates the operations recorded in a session.
+     * @return the created operations
+     */
+    private static List<IOperation> createOperations() {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        String path = "/P/src/p/A.java";
+        long time = 1000;
+        ops.add(new FileOperation(time++, path, "me", FileOperation.Type.OPEN, "class A {\n}\n"));
+        for (int i = 0; i < 50; i++) {
+            ops.add(new NormalOperation(time++, 0, path, "me", 9 + i, "x" + i, (i % 4 == 0) ? "" : "y",
+                                        NormalOperation.Type.EDIT));
+        }
+        ops.add(new FileOperation(time++, path, "me", FileOperation.Type.SAVE, "class A {\nx\n}\n"));
+        ops.add(new FileOperation(time++, path, "me", FileOperation.Type.CLOSE, "class A {\nx\n}\n"));
+        return ops;
+    }
+    
+    /**
+     * Tests that the operations in a compacted journal are read in the order of their recording.
+     * @throws InterruptedException if the reading fails
+     */
+    @Test
+    public void testJournalToRepository() throws InterruptedException {
+        List<IOperation> ops = createOperations();
+        
+        File jdir = new File(dir, HistoryJournal.JOURNAL_DIR);
+        String jpath = new File(jdir, "1" + HistoryJournal.JOURNAL_EXT).getPath();
+        HistoryJournal journal = new HistoryJournal(jpath);
+        assertTrue(journal.open());
+        for (IOperation op : ops) {
+            journal.append(op);
+        }
+        journal.close();
+        assertFalse(OperationHistory.isHistoryFile(jpath));
+        
+        OperationHistory history = HistoryJournal.read(jpath);
+        history.sort();
+        File hfile = new File(dir, "1" + OperationHistory.BINARY_FILE_EXT);
+        assertTrue(history.write(hfile.getPath(), "UTF-8", true));
+        
+        List<File> files = new ArrayList<File>();
+        files.add(hfile);
+        List<UnifiedOperation> read = RepositoryIndex.read(dir.getPath(), files, false, new NullProgressMonitor());
+        
+        List<UnifiedOperation> expected = new ArrayList<UnifiedOperation>();
+        for (IOperation op : ops) {
+            expected.addAll(UnifiedOperation.create(op));
+        }
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            UnifiedOperation e = expected.get(i);
+            UnifiedOperation r = read.get(i);
+            assertEquals(e.getTime(), r.getTime());
+            assertEquals(e.getOperationType(), r.getOperationType());
+            assertEquals(e.getFile(), r.getFile());
+            assertEquals(e.getStart(), r.getStart());
+            assertEquals(e.getInsertedText(), r.getInsertedText());
+            assertEquals(e.getDeletedText(), r.getDeletedText());
+            assertEquals(e.getCode(), r.getCode());
+        }
+    }
+}
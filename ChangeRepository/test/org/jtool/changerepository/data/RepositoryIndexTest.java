@@ -0,0 +1,221 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.history.OperationHistory;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the persistent index of the operations read from history files.
+ * @author Katsuhisa Maruyama
+ */
+public class RepositoryIndexTest {
+    
+    /**
+     * The directory that stores the history files.
+     */
+    private File dir;
+    
+    /**
+     * The random numbers used for creating operations.
+     */
+    private Random random;
+    
+    /**
+     * The time of the next operation to be created.
+     */
+    private long time;
+    
+    /**
+     * Creates the directory that stores the history files.
+     * @throws IOException if the directory cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+        random = new Random(1);
+        time = 1000;
+    }
+    
+    /**
+     * Deletes the directory that stores the history files.
+     */
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+    
+    /**
+     * Deletes a file or a directory with its descendants.
+     * @param file the file or the directory
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+    /**
+     * Writes a history file storing operations on a file.
+     * @param num the number of the history file
+     * @param size the number of the normal operations
+     * @return the history file
+     */
+    private File createHistoryFile(int num, int size) {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        String path = "/P/src/a/F" + num + ".java";
+        ops.add(new FileOperation(time++, path, "me", FileOperation.Type.OPEN, "class あ {}\n"));
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                ops.add(new NormalOperation(time++, random.nextInt(3), path, "me", i, "xé" + i, (i % 5 == 0) ? "" : "d",
+                                            NormalOperation.Type.EDIT));
+            } else if (kind == 1) {
+                ops.add(new NormalOperation(time++, 1, path, "you", i, "cp" + i, "", NormalOperation.Type.PASTE));
+            } else {
+                ops.add(new NormalOperation(time++, 0, path, "me", i, "", "zz", NormalOperation.Type.UNDO));
+            }
+        }
+        ops.add(new FileOperation(time++, path, "me", FileOperation.Type.CLOSE, "class X {}\n"));
+        
+        File file = new File(dir, num + OperationHistory.XML_FILE_EXT);
+        new OperationHistory(ops).write(file.getPath(), "UTF-8");
+        return file;
+    }
+    
+    /**
+     * Returns the names of the files in the index.
+     * @return the names of the files
+     */
+    private List<String> getIndexFiles() {
+        List<String> names = new ArrayList<String>();
+        String[] files = new File(dir, RepositoryIndex.INDEX_DIR).list();
+        if (files != null) {
+            for (String name : files) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Tests that operations read through the index are the same as the ones read directly from the history files.
+     * @param files the history files
+     * @param lazy <code>true</code> if the texts of the operations are loaded lazily, otherwise <code>false</code>
+     * @throws InterruptedException if the reading is canceled
+     */
+    private void assertIndexed(List<File> files, boolean lazy) throws InterruptedException {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        List<UnifiedOperation> expected = ParallelHistoryReader.read(files, monitor);
+        List<UnifiedOperation> read = RepositoryIndex.read(dir.getPath(), files, lazy, monitor);
+        
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            UnifiedOperation e = expected.get(i);
+            UnifiedOperation r = read.get(i);
+            assertEquals(e.getTime(), r.getTime());
+            assertEquals(e.getSequenceNumber(), r.getSequenceNumber());
+            assertEquals(e.getOperationType(), r.getOperationType());
+            assertEquals(e.getFile(), r.getFile());
+            assertEquals(e.getAuthor(), r.getAuthor());
+            assertEquals(e.getStart(), r.getStart());
+            assertEquals(e.getInsertedText(), r.getInsertedText());
+            assertEquals(e.getDeletedText(), r.getDeletedText());
+            assertEquals(e.getCode(), r.getCode());
+            assertEquals(e.getIOperation().toString(), r.getIOperation().toString());
+        }
+    }
+    
+    /**
+     * Tests that history files added later are appended to the index as a new segment.
+     * @throws InterruptedException if the reading is canceled
+     */
+    @Test
+    public void testIncrementalIngestion() throws InterruptedException {
+        List<File> files = new ArrayList<File>();
+        for (int num = 0; num < 5; num++) {
+            files.add(createHistoryFile(num, 200));
+        }
+        
+        assertIndexed(files, false);
+        List<String> index = getIndexFiles();
+        assertIndexed(files, false);
+        assertEquals(index, getIndexFiles());
+        
+        files.add(createHistoryFile(5, 100));
+        assertIndexed(files, false);
+        assertEquals(index.size() + 2, getIndexFiles().size());
+        assertIndexed(files, true);
+    }
+    
+    /**
+     * Tests that the index is rebuilt when an ingested history file is changed or removed.
+     * @throws InterruptedException if the reading is canceled
+     */
+    @Test
+    public void testRebuild() throws InterruptedException {
+        List<File> files = new ArrayList<File>();
+        for (int num = 0; num < 4; num++) {
+            files.add(createHistoryFile(num, 200));
+        }
+        assertIndexed(files, true);
+        
+        long modified = files.get(1).lastModified();
+        files.set(1, createHistoryFile(1, 30));
+        files.get(1).setLastModified(modified + 2000);
+        assertIndexed(files, true);
+        
+        files.remove(2);
+        assertIndexed(files, false);
+    }
+    
+    /**
+     * Tests that a broken segment makes the index be rebuilt.
+     * @throws InterruptedException if the reading is canceled
+     * @throws IOException if the segment cannot be broken
+     */
+    @Test
+    public void testBrokenSegment() throws InterruptedException, IOException {
+        List<File> files = new ArrayList<File>();
+        for (int num = 0; num < 3; num++) {
+            files.add(createHistoryFile(num, 100));
+        }
+        assertIndexed(files, false);
+        
+        boolean broken = false;
+        for (String name : getIndexFiles()) {
+            if (name.endsWith(".ops")) {
+                new FileOutputStream(new File(new File(dir, RepositoryIndex.INDEX_DIR), name)).close();
+                broken = true;
+            }
+        }
+        assertTrue(broken);
+        
+        assertIndexed(files, false);
+        assertIndexed(files, true);
+    }
+}
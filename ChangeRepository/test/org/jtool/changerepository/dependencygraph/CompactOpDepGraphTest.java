@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.dependencygraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.data.FileInfo;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests the compact form of an operation dependency graph.
+ * @author Katsuhisa Maruyama
+ */
+public class CompactOpDepGraphTest {
+    
+    /**
+     * Creates the operation dependency graph for a file, whose nodes are connected by random edges.
+     * @param random the random numbers
+     * @param path the path of the file
+     * @param num the number of the nodes
+     * @return the created graph
+     */
+    private static FileOpDepGraph createFileGraph(Random random, String path, int num) {
+        FileInfo finfo = new FileInfo("A.java", path, null, null);
+        FileOpDepGraph fgraph = new FileOpDepGraph(finfo);
+        
+        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>();
+        for (int gid = 0; gid < num; gid++) {
+            NormalOperation op = new NormalOperation(1000 + gid, 0, path, "me", gid, "x", "", NormalOperation.Type.EDIT);
+            UnifiedOperation uop = UnifiedOperation.create(op).get(0);
+            uop.setFileInfo(finfo);
+            OpDepGraphNode node = new OpDepGraphAddNode(gid, uop);
+            fgraph.add(node);
+            nodes.add(node);
+        }
+        
+        for (int i = 0; i < num * 2; i++) {
+            OpDepGraphNode src = nodes.get(random.nextInt(num));
+            OpDepGraphNode dst = nodes.get(random.nextInt(num));
+            if (src.getGId() < dst.getGId()) {
+                fgraph.add(new OpDepGraphEdge(src, dst, OpDepGraphEdge.Sort.NORMAL));
+            }
+        }
+        return fgraph;
+    }
+    
+    /**
+     * Creates an operation dependency graph for files, whose nodes are connected by random edges across the files.
+     * @param random the random numbers
+     * @param nodes the collection that receives all the nodes of the graph
+     * @return the created graph
+     */
+    private static OpDepGraph createGraph(Random random, List<OpDepGraphNode> nodes) {
+        OpDepGraph graph = new OpDepGraph(null);
+        for (int f = 0; f < 3; f++) {
+            FileOpDepGraph fgraph = createFileGraph(random, "/P/src/F" + f + ".java", 50 + random.nextInt(200));
+            graph.regist(fgraph);
+            nodes.addAll(fgraph.getAllNodes());
+        }
+        
+        for (int i = 0; i < 30; i++) {
+            OpDepGraphNode src = nodes.get(random.nextInt(nodes.size()));
+            OpDepGraphNode dst = nodes.get(random.nextInt(nodes.size()));
+            graph.add(new OpDepGraphEdge(src, dst, OpDepGraphEdge.Sort.CPP));
+        }
+        return graph;
+    }
+    
+    /**
+     * Tests if an edge connects two nodes in the compact form of a graph.
+     * @param cgraph the compact form of the graph
+     * @param src the source node of the edge
+     * @param dst the destination node of the edge
+     * @return <code>true</code> if the edge exists, otherwise <code>false</code>
+     */
+    private static boolean connects(CompactOpDepGraph cgraph, OpDepGraphNode src, OpDepGraphNode dst) {
+        int idx = cgraph.indexOf(src);
+        for (int k = 0; k < cgraph.getDstNodeNumber(idx); k++) {
+            if (cgraph.getNode(cgraph.getDstNode(idx, k)) == dst) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Tests that every node of the graph has its own number in the compact form.
+     */
+    @Test
+    public void testNodes() {
+        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>();
+        CompactOpDepGraph cgraph = createGraph(new Random(1), nodes).freeze();
+        
+        assertEquals(nodes.size(), cgraph.size());
+        Set<Integer> indexes = new HashSet<Integer>();
+        for (OpDepGraphNode node : nodes) {
+            int idx = cgraph.indexOf(node);
+            assertSame(node, cgraph.getNode(idx));
+            assertEquals(node.getGId(), cgraph.getGId(idx));
+            assertEquals(node.getId(), cgraph.getId(idx));
+            assertEquals(node.getTime(), cgraph.getTime(idx));
+            indexes.add(idx);
+        }
+        assertEquals(nodes.size(), indexes.size());
+        
+        List<OpDepGraphNode> others = new ArrayList<OpDepGraphNode>();
+        createGraph(new Random(1), others);
+        assertEquals(-1, cgraph.indexOf(others.get(0)));
+    }
+    
+    /**
+     * Tests that the adjacent nodes in the compact form are the same as the ones of the original graph.
+     */
+    @Test
+    public void testEdges() {
+        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>();
+        CompactOpDepGraph cgraph = createGraph(new Random(2), nodes).freeze();
+        
+        for (OpDepGraphNode node : nodes) {
+            int idx = cgraph.indexOf(node);
+            
+            Set<OpDepGraphNode> dsts = new HashSet<OpDepGraphNode>();
+            for (int k = 0; k < cgraph.getDstNodeNumber(idx); k++) {
+                dsts.add(cgraph.getNode(cgraph.getDstNode(idx, k)));
+            }
+            assertEquals(node.getDstNodes(), dsts);
+            assertEquals(node.getDstNodes().size(), cgraph.getDstNodeNumber(idx));
+            
+            Set<OpDepGraphNode> srcs = new HashSet<OpDepGraphNode>();
+            for (int k = 0; k < cgraph.getSrcNodeNumber(idx); k++) {
+                srcs.add(cgraph.getNode(cgraph.getSrcNode(idx, k)));
+            }
+            assertEquals(node.getSrcNodes(), srcs);
+            assertEquals(node.getSrcNodes().size(), cgraph.getSrcNodeNumber(idx));
+        }
+    }
+    
+    /**
+     * Tests that the compact form is kept until the graph is changed.
+     */
+    @Test
+    public void testFreeze() {
+        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>();
+        OpDepGraph graph = createGraph(new Random(3), nodes);
+        
+        CompactOpDepGraph cgraph = graph.freeze();
+        assertSame(cgraph, graph.freeze());
+        
+        OpDepGraphNode src = nodes.get(0);
+        OpDepGraphNode dst = nodes.get(nodes.size() - 1);
+        graph.add(new OpDepGraphEdge(src, dst, OpDepGraphEdge.Sort.CPP));
+        CompactOpDepGraph renewed = graph.freeze();
+        assertTrue(cgraph != renewed);
+        assertTrue(connects(renewed, src, dst));
+        
+        graph.removeAllEdges();
+        CompactOpDepGraph cleared = graph.freeze();
+        assertTrue(renewed != cleared);
+        assertFalse(connects(cleared, src, dst));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changerepository.dependencygraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests the map of the owners of the text, which determines the dependence of nodes without going back to previous nodes.
+ * @author Katsuhisa Maruyama
+ */
+public class OwnershipMapTest {
+    
+    /**
+     * The path of the file.
+     */
+    private static final String PATH = "/P/src/A.java";
+    
+    /**
+     * Creates a random text.
+     * @param random the random numbers
+     * @param length the length of the text
+     * @return the created text
+     */
+    private static String createText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char)('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Creates random operations that type, delete, replace, copy and paste text.
+     * @param random the random numbers
+     * @param num the number of the operations
+     * @return the created operations
+     */
+    private static List<IOperation> createOperations(Random random, int num) {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        StringBuilder text = new StringBuilder(createText(random, random.nextInt(200)));
+        long time = 1;
+        ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.OPEN, text.toString()));
+        
+        int cur = random.nextInt(text.length() + 1);
+        String clip = "x";
+        for (int i = 0; i < num; i++) {
+            if (random.nextInt(10) == 0) {
+                cur = random.nextInt(text.length() + 1);
+            }
+            
+            int kind = random.nextInt(100);
+            if (kind < 50) {
+                String itext = createText(random, 1 + ((random.nextInt(4) == 0) ? random.nextInt(10) : 0));
+                ops.add(new NormalOperation(time++, 0, PATH, "me", cur, itext, "", NormalOperation.Type.EDIT));
+                text.insert(cur, itext);
+                cur = cur + itext.length();
+                
+            } else if (kind < 70) {
+                if (cur > 0) {
+                    String dtext = text.substring(cur - 1, cur);
+                    ops.add(new NormalOperation(time++, 0, PATH, "me", cur - 1, "", dtext, NormalOperation.Type.EDIT));
+                    text.delete(cur - 1, cur);
+                    cur--;
+                }
+                
+            } else if (kind < 80) {
+                int start = random.nextInt(text.length() + 1);
+                int end = Math.min(text.length(), start + random.nextInt(30));
+                String itext = random.nextBoolean() ? "" : createText(random, random.nextInt(5));
+                ops.add(new NormalOperation(time++, 0, PATH, "me", start, itext, text.substring(start, end), NormalOperation.Type.EDIT));
+                text.replace(start, end, itext);
+                cur = start + itext.length();
+                
+            } else if (kind < 90) {
+                int start = random.nextInt(text.length() + 1);
+                int end = Math.min(text.length(), start + 1 + random.nextInt(20));
+                if (end > start) {
+                    clip = text.substring(start, end);
+                    ops.add(new CopyOperation(time++, PATH, "me", start, clip));
+                }
+                
+            } else if (kind < 97) {
+                ops.add(new NormalOperation(time++, 0, PATH, "me", cur, clip, "", NormalOperation.Type.PASTE));
+                text.insert(cur, clip);
+                cur = cur + clip.length();
+                
+            } else {
+                ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.OPEN, text.toString()));
+            }
+        }
+        return ops;
+    }
+    
+    /**
+     * Creates the nodes of an operation dependency graph in the same way as the graph constructor.
+     * @param ops the operations
+     * @return the nodes whose identification numbers are their indexes
+     */
+    private static List<OpDepGraphNode> createNodes(List<IOperation> ops) {
+        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>();
+        for (IOperation iop : ops) {
+            for (UnifiedOperation op : UnifiedOperation.create(iop)) {
+                if (op.isFileOpenOperation()) {
+                    nodes.add(new OpDepGraphOpenNode(nodes.size(), op));
+                }
+                if (op.getDeletedText().length() != 0) {
+                    nodes.add(new OpDepGraphRemoveNode(nodes.size(), op));
+                }
+                if (op.getInsertedText().length() != 0) {
+                    nodes.add(new OpDepGraphAddNode(nodes.size(), op));
+                }
+                if (op.getCopiedText().length() != 0) {
+                    nodes.add(new OpDepGraphCopyNode(nodes.size(), op));
+                }
+            }
+        }
+        return nodes;
+    }
+    
+    /**
+     * Finds the nodes on which a node depends by adjusting its offsets backward.
+     * @param nodes the nodes
+     * @param idx the index of the node
+     * @return the identification numbers of the found nodes
+     */
+    private static Set<Integer> findDependenceBackward(List<OpDepGraphNode> nodes, int idx) {
+        Set<Integer> gids = new HashSet<Integer>();
+        OpDepGraphNode node = nodes.get(idx);
+        node.reset();
+        for (int i = idx - 1; i >= 0 && node.hasAdjustedOffsets(); i--) {
+            OpDepGraphNode n = nodes.get(i);
+            if (node.dependsOn(n)) {
+                gids.add(n.getGId());
+            } else {
+                node.adjustOffsetsBackward(n);
+            }
+        }
+        return gids;
+    }
+    
+    /**
+     * Tests that the dependence found by the map is the same as the one found by going back to previous nodes.
+     */
+    @Test
+    public void testSameAsBackwardSearch() {
+        Random random = new Random(7);
+        int determined = 0;
+        int total = 0;
+        for (int trial = 0; trial < 10; trial++) {
+            List<OpDepGraphNode> nodes = createNodes(createOperations(random, 2000));
+            OwnershipMap owners = new OwnershipMap();
+            for (int idx = 0; idx < nodes.size(); idx++) {
+                OpDepGraphNode node = nodes.get(idx);
+                int gid = owners.findDependence(node);
+                
+                if (idx > 0 && gid != OwnershipMap.UNKNOWN) {
+                    Set<Integer> expected = findDependenceBackward(nodes, idx);
+                    if (gid == OwnershipMap.NONE) {
+                        assertTrue(expected.isEmpty());
+                    } else {
+                        assertEquals(1, expected.size());
+                        assertTrue(expected.contains(gid));
+                    }
+                    determined++;
+                }
+                total++;
+                
+                assertTrue(owners.apply(node));
+            }
+        }
+        assertTrue(determined > total * 3 / 4);
+    }
+    
+    /**
+     * Tests that a removal of text added by two nodes is not determined.
+     */
+    @Test
+    public void testRemovalOverTwoAdditions() {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new FileOperation(1, PATH, "me", FileOperation.Type.OPEN, "abc"));
+        ops.add(new NormalOperation(2, 0, PATH, "me", 1, "xy", "", NormalOperation.Type.EDIT));
+        ops.add(new NormalOperation(3, 0, PATH, "me", 3, "z", "", NormalOperation.Type.EDIT));
+        ops.add(new NormalOperation(4, 0, PATH, "me", 2, "", "yz", NormalOperation.Type.EDIT));
+        ops.add(new NormalOperation(5, 0, PATH, "me", 1, "", "x", NormalOperation.Type.EDIT));
+        List<OpDepGraphNode> nodes = createNodes(ops);
+        
+        OwnershipMap owners = new OwnershipMap();
+        for (int idx = 0; idx < 3; idx++) {
+            owners.apply(nodes.get(idx));
+        }
+        assertEquals(OwnershipMap.UNKNOWN, owners.findDependence(nodes.get(3)));
+        owners.apply(nodes.get(3));
+        assertEquals(1, owners.findDependence(nodes.get(4)));
+    }
+    
+    /**
+     * Tests that a node with an invalid offset disables the map.
+     */
+    @Test
+    public void testInvalidOffset() {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        ops.add(new NormalOperation(1, 0, PATH, "me", -1, "a", "", NormalOperation.Type.EDIT));
+        OpDepGraphNode node = createNodes(ops).get(0);
+        
+        OwnershipMap owners = new OwnershipMap();
+        assertEquals(OwnershipMap.UNKNOWN, owners.findDependence(node));
+        assertFalse(owners.apply(node));
+    }
+}
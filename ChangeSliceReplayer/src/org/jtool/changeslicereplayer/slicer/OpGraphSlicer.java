@@ -6,8 +6,10 @@
 
 package org.jtool.changeslicereplayer.slicer;
 
+import org.jtool.changerepository.dependencygraph.CompactOpDepGraph;
 import org.jtool.changerepository.dependencygraph.FileOpDepGraph;
 import org.jtool.changerepository.dependencygraph.OpDepGraph;
+import org.jtool.changerepository.dependencygraph.OpDepGraphInfo;
 import org.jtool.changerepository.dependencygraph.OpDepGraphNode;
 import java.util.List;
 import java.util.ArrayList;
@@ -39,11 +41,8 @@ public class OpGraphSlicer {
             node.reset();
             adjustOffsetsForward(fgraph, anodes, node);
             
-            for (Integer offset : node.getAdjustedOffsets()) {
-                if (snippet.inRange(offset.intValue())) {
-                    ns.add(node);
-                    break;
-                }
+            if (node.containsAdjustedOffset(snippet.getStart(), snippet.getEnd())) {
+                ns.add(node);
             }
         }
         return ns;
@@ -74,7 +73,7 @@ public class OpGraphSlicer {
     private static void adjustOffsetsForward(FileOpDepGraph fgraph, List<OpDepGraphNode> nodes, OpDepGraphNode node) {
         for (int idx = 0; idx < nodes.size(); idx++) {
             OpDepGraphNode n  = nodes.get(idx);
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
@@ -104,11 +103,8 @@ public class OpGraphSlicer {
             node.reset();
             adjustOffsetsBackward(fgraph, anodes, node);
             
-            for (Integer offset : node.getAdjustedOffsets()) {
-                if (snippet.inRange(offset.intValue())) {
-                    ns.add(node);
-                    break;
-                }
+            if (node.containsAdjustedOffset(snippet.getStart(), snippet.getEnd())) {
+                ns.add(node);
             }
         }
         return ns;
@@ -139,7 +135,7 @@ public class OpGraphSlicer {
     private static void adjustOffsetsBackward(FileOpDepGraph fgraph, List<OpDepGraphNode> nodes, OpDepGraphNode node) {
         for (int idx = 0; idx < nodes.size(); idx++) {
             OpDepGraphNode n  = nodes.get(idx);
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
@@ -158,6 +154,11 @@ public class OpGraphSlicer {
      * @return the created slice
      */
     public static Slice constructBackwardSlice(SliceCriterion criterion) {
+        CompactOpDepGraph cgraph = getCompactGraph(criterion);
+        if (cgraph != null) {
+            return new Slice(criterion, collectAllReachableNodes(cgraph, criterion.getNodes(), false));
+        }
+        
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
         for (OpDepGraphNode node : criterion.getNodes()) {
             collectAllBackwardReachableNodes(ns, node);
@@ -188,6 +189,11 @@ public class OpGraphSlicer {
      * @return the created the slice
      */
     public static Slice constructForwardSlice(SliceCriterion criterion) {
+        CompactOpDepGraph cgraph = getCompactGraph(criterion);
+        if (cgraph != null) {
+            return new Slice(criterion, collectAllReachableNodes(cgraph, criterion.getNodes(), true));
+        }
+        
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
         for (OpDepGraphNode node : criterion.getNodes()) {
             collectAllForwardReachableNodes(ns, node);
@@ -212,6 +218,75 @@ public class OpGraphSlicer {
         }
     }
     
+    /**
+     * Obtains the compact form of the operation dependency graph containing all the nodes of a slice criterion.
+     * @param criterion the slice criterion
+     * @return the compact form of the graph, or <code>null</code> if no graph contains the nodes
+     */
+    private static CompactOpDepGraph getCompactGraph(SliceCriterion criterion) {
+        List<OpDepGraphNode> nodes = criterion.getNodes();
+        if (nodes.size() == 0) {
+            return null;
+        }
+        
+        OpDepGraph graph = OpDepGraphInfo.getGraph(nodes.get(0).getOperation().getProjectInfo());
+        if (graph == null) {
+            return null;
+        }
+        
+        CompactOpDepGraph cgraph = graph.freeze();
+        for (OpDepGraphNode node : nodes) {
+            if (cgraph.indexOf(node) < 0) {
+                return null;
+            }
+        }
+        return cgraph;
+    }
+    
+    /**
+     * Collects all nodes that reach or are reached from the specified nodes on the compact form of the graph.
+     * @param cgraph the compact form of the operation dependency graph
+     * @param nodes the specified nodes
+     * @param forward <code>true</code> if the nodes reached from the specified nodes are collected,
+     *        or <code>false</code> if the nodes reaching the specified nodes are collected
+     * @return the collection of the reachable nodes
+     */
+    private static List<OpDepGraphNode> collectAllReachableNodes(CompactOpDepGraph cgraph, List<OpDepGraphNode> nodes, boolean forward) {
+        boolean[] visited = new boolean[cgraph.size()];
+        int[] stack = new int[cgraph.size()];
+        int top = 0;
+        for (OpDepGraphNode node : nodes) {
+            int idx = cgraph.indexOf(node);
+            if (!visited[idx]) {
+                visited[idx] = true;
+                stack[top] = idx;
+                top++;
+            }
+        }
+        
+        while (top > 0) {
+            top--;
+            int idx = stack[top];
+            int num = forward ? cgraph.getDstNodeNumber(idx) : cgraph.getSrcNodeNumber(idx);
+            for (int k = 0; k < num; k++) {
+                int n = forward ? cgraph.getDstNode(idx, k) : cgraph.getSrcNode(idx, k);
+                if (!visited[n]) {
+                    visited[n] = true;
+                    stack[top] = n;
+                    top++;
+                }
+            }
+        }
+        
+        List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
+        for (int idx = 0; idx < visited.length; idx++) {
+            if (visited[idx]) {
+                ns.add(cgraph.getNode(idx));
+            }
+        }
+        return ns;
+    }
+    
     /**
      * Returns the string for printing nodes, which does not contain a new line character at its end.
      * @param the collection of the nodes contained in the slice
@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.changeslicereplayer.slicer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.jtool.changerepository.data.FileInfo;
+import org.jtool.changerepository.data.PackageInfo;
+import org.jtool.changerepository.data.ProjectInfo;
+import org.jtool.changerepository.data.WorkspaceInfo;
+import org.jtool.changerepository.dependencygraph.FileOpDepGraph;
+import org.jtool.changerepository.dependencygraph.OpDepGraph;
+import org.jtool.changerepository.dependencygraph.OpDepGraphInfo;
+import org.jtool.changerepository.dependencygraph.OpDepGraphNode;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the construction of operation slices on the compact form of an operation dependency graph.
+ * @author Katsuhisa Maruyama
+ */
+public class OpGraphSlicerTest {
+    
+    /**
+     * The path of the file.
+     */
+    private static final String PATH = "/P/src/a/A.java";
+    
+    /**
+     * The information on the file.
+     */
+    private FileInfo finfo;
+    
+    /**
+     * The operation dependency graph of the file.
+     */
+    private FileOpDepGraph fgraph;
+    
+    /**
+     * The final code of the file.
+     */
+    private String code;
+    
+    /**
+     * Creates the operation dependency graph of a file edited at random.
+     */
+    @Before
+    public void setUp() {
+        OpDepGraphInfo.reset();
+        
+        WorkspaceInfo winfo = new WorkspaceInfo("/tmp");
+        ProjectInfo pinfo = new ProjectInfo("P", winfo);
+        PackageInfo painfo = new PackageInfo("a", pinfo);
+        finfo = new FileInfo("A.java", PATH, pinfo, painfo);
+        pinfo.addFileInfo(finfo);
+        List<IOperation> ops = createOperations(new Random(1), 400);
+        code = ((FileOperation)ops.get(ops.size() - 1)).getCode();
+        for (IOperation op : ops) {
+            for (UnifiedOperation uop : UnifiedOperation.create(op)) {
+                uop.setProjectInfo(pinfo);
+                uop.setPackageInfo(painfo);
+                uop.setFileInfo(finfo);
+                finfo.addOperation(uop);
+                pinfo.addOperation(uop);
+            }
+        }
+        
+        OpDepGraph graph = OpDepGraphInfo.createGraph(pinfo);
+        fgraph = graph.get(finfo);
+    }
+    
+    /**
+     * Discards the created operation dependency graphs.
+     */
+    @After
+    public void tearDown() {
+        OpDepGraphInfo.reset();
+    }
+    
+    /**
+     * Creates random edit operations on a file.
+     * @param random the random numbers
+     * @param edits the number of the edit operations
+     * @return the operations
+     */
+    private static List<IOperation> createOperations(Random random, int edits) {
+        List<IOperation> ops = new ArrayList<IOperation>();
+        String code = "public class A {\n}\n";
+        long time = 1000;
+        ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.OPEN, code));
+        for (int e = 0; e < edits; e++) {
+            int start = random.nextInt(code.length() + 1);
+            int len = (random.nextInt(4) == 0) ? Math.min(code.length() - start, random.nextInt(20)) : 0;
+            String dtext = code.substring(start, start + len);
+            String itext = (random.nextInt(3) == 0) ? "" : "x" + e;
+            ops.add(new NormalOperation(time++, 0, PATH, "me", start, itext, dtext, NormalOperation.Type.EDIT));
+            code = code.substring(0, start) + itext + code.substring(start + len);
+        }
+        ops.add(new FileOperation(time++, PATH, "me", FileOperation.Type.CLOSE, code));
+        return ops;
+    }
+    
+    /**
+     * Creates slice criteria on code snippets of the final code of the file.
+     * @return the created slice criteria
+     */
+    private List<SliceCriterion> createCriteria() {
+        List<SliceCriterion> criteria = new ArrayList<SliceCriterion>();
+        int idx = finfo.getOperationNumber() - 1;
+        long time = finfo.getOperation(idx).getTime() + 1;
+        Random random = new Random(2);
+        for (int i = 0; i < 20; i++) {
+            int start = random.nextInt(code.length());
+            int end = Math.min(code.length(), start + 1 + random.nextInt(10));
+            CodeSnippet snippet = new CodeSnippet(start, end, idx, time, code.substring(start, end));
+            criteria.add(new SliceCriterion(fgraph, "S" + i, snippet));
+        }
+        return criteria;
+    }
+    
+    /**
+     * Collects all nodes that reach or are reached from the specified nodes by traversing the edges of the graph.
+     * @param nodes the specified nodes
+     * @param forward <code>true</code> if the nodes reached from the specified nodes are collected,
+     *        or <code>false</code> if the nodes reaching the specified nodes are collected
+     * @return the collection of the reachable nodes
+     */
+    private static Set<OpDepGraphNode> collectReachableNodes(List<OpDepGraphNode> nodes, boolean forward) {
+        Set<OpDepGraphNode> ns = new HashSet<OpDepGraphNode>();
+        List<OpDepGraphNode> work = new ArrayList<OpDepGraphNode>(nodes);
+        while (!work.isEmpty()) {
+            OpDepGraphNode node = work.remove(work.size() - 1);
+            if (ns.add(node)) {
+                work.addAll(forward ? node.getDstNodes() : node.getSrcNodes());
+            }
+        }
+        return ns;
+    }
+    
+    /**
+     * Tests that a slice contains every node reachable from the slice criterion exactly once.
+     */
+    @Test
+    public void testSlices() {
+        boolean sliced = false;
+        for (SliceCriterion criterion : createCriteria()) {
+            if (criterion.getNodes().isEmpty()) {
+                continue;
+            }
+            sliced = true;
+            
+            List<OpDepGraphNode> backward = OpGraphSlicer.constructBackwardSlice(criterion).getNodes();
+            Set<OpDepGraphNode> expected = collectReachableNodes(criterion.getNodes(), false);
+            assertEquals(expected, new HashSet<OpDepGraphNode>(backward));
+            assertEquals(expected.size(), backward.size());
+            
+            List<OpDepGraphNode> forward = OpGraphSlicer.constructForwardSlice(criterion).getNodes();
+            expected = collectReachableNodes(criterion.getNodes(), true);
+            assertEquals(expected, new HashSet<OpDepGraphNode>(forward));
+            assertEquals(expected.size(), forward.size());
+        }
+        assertTrue(sliced);
+    }
+    
+    /**
+     * Tests that slices on the compact form are the same as the ones constructed without the graph information.
+     */
+    @Test
+    public void testSlicesWithoutGraphInfo() {
+        List<SliceCriterion> criteria = createCriteria();
+        List<Set<OpDepGraphNode>> backwards = new ArrayList<Set<OpDepGraphNode>>();
+        List<Set<OpDepGraphNode>> forwards = new ArrayList<Set<OpDepGraphNode>>();
+        for (SliceCriterion criterion : criteria) {
+            backwards.add(new HashSet<OpDepGraphNode>(OpGraphSlicer.constructBackwardSlice(criterion).getNodes()));
+            forwards.add(new HashSet<OpDepGraphNode>(OpGraphSlicer.constructForwardSlice(criterion).getNodes()));
+        }
+        
+        OpDepGraphInfo.reset();
+        boolean sliced = false;
+        for (int i = 0; i < criteria.size(); i++) {
+            SliceCriterion criterion = criteria.get(i);
+            assertEquals(backwards.get(i), new HashSet<OpDepGraphNode>(OpGraphSlicer.constructBackwardSlice(criterion).getNodes()));
+            assertEquals(forwards.get(i), new HashSet<OpDepGraphNode>(OpGraphSlicer.constructForwardSlice(criterion).getNodes()));
+            if (backwards.get(i).size() > 1) {
+                sliced = true;
+            }
+        }
+        assertTrue(sliced);
+        assertFalse(fgraph.getAllNodes().isEmpty());
+    }
+}
@@ -6,10 +6,14 @@
 
 package org.jtool.editrecorder;
 
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
+import org.jtool.editrecorder.recorder.CoalescingPolicy;
 import org.jtool.editrecorder.recorder.Recorder;
 
 /**
@@ -23,6 +27,11 @@ public class Activator extends AbstractUIPlugin {
      */
     public static final String PLUGIN_ID = "MacroRecorder";
     
+    /**
+     * The name of the file in the state location of the plug-in into which raw macros are streamed.
+     */
+    private static final String RAW_MACRO_SPILL_FILE = "rawmacros.txt";
+    
     /**
      * The plug-in instance.
      */
@@ -44,6 +53,25 @@ public class Activator extends AbstractUIPlugin {
         super.start(context);
         plugin = this;
         
+        Recorder.getInstance().setCoalescingPolicy(getCoalescingPolicy());
+        Recorder.getInstance().setRawMacroSpillFile(getRawMacroSpillFilePath());
+        getPreferenceStore().addPropertyChangeListener(new IPropertyChangeListener() {
+            
+            /**
+             * Updates the coalescing policy or the spill file of raw macros when their preference values are changed.
+             * @param event the property change event
+             */
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                if (PreferencePage.SPILL_RAW_MACROS.equals(event.getProperty())) {
+                    Recorder.getInstance().setRawMacroSpillFile(getRawMacroSpillFilePath());
+                } else {
+                    Recorder.getInstance().setCoalescingPolicy(getCoalescingPolicy());
+                }
+            }
+        });
+        
+        Recorder.getInstance().setOnDemandAttachment(getPreferenceStore().getBoolean(PreferencePage.ON_DEMAND_ATTACHMENT));
         Recorder.getInstance().start();
         
         System.out.println(PLUGIN_ID + " activated.");
@@ -57,6 +85,7 @@ public class Activator extends AbstractUIPlugin {
     @Override
     public void stop(BundleContext context) throws Exception {
         Recorder.getInstance().stop();
+        Recorder.getInstance().setRawMacroSpillFile(null);
         
         super.stop(context);
         
@@ -71,6 +100,29 @@ public class Activator extends AbstractUIPlugin {
         return plugin;
     }
     
+    /**
+     * Creates a coalescing policy from the preference values.
+     * @return the coalescing policy
+     */
+    public static CoalescingPolicy getCoalescingPolicy() {
+        IPreferenceStore store = getPlugin().getPreferenceStore();
+        return new CoalescingPolicy(store.getInt(PreferencePage.COALESCING_INACTIVITY_TIMEOUT),
+                                    store.getInt(PreferencePage.COALESCING_MAX_LENGTH),
+                                    store.getInt(PreferencePage.COALESCING_MAX_AGE));
+    }
+    
+    /**
+     * Returns the path of the file into which raw macros are streamed.
+     * @return the path of the file, or <code>null</code> if raw macros are kept on the heap
+     */
+    public static String getRawMacroSpillFilePath() {
+        Activator activator = getPlugin();
+        if (!activator.getPreferenceStore().getBoolean(PreferencePage.SPILL_RAW_MACROS)) {
+            return null;
+        }
+        return activator.getStateLocation().append(RAW_MACRO_SPILL_FILE).toOSString();
+    }
+    
     /**
      * Obtains the workbench window.
      * @return the workbench window
@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder;
+
+import org.jtool.editrecorder.recorder.CoalescingPolicy;
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Initializes the preference values.
+ * @author Katsuhisa Maruyama
+ */
+public class PreferenceInitializer extends AbstractPreferenceInitializer {
+    
+    /**
+     * Stores initial preference values.
+     */
+    public void initializeDefaultPreferences() {
+        IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+        store.setDefault(PreferencePage.COALESCING_INACTIVITY_TIMEOUT, (int)CoalescingPolicy.DEFAULT_INACTIVITY_TIMEOUT);
+        store.setDefault(PreferencePage.COALESCING_MAX_LENGTH, CoalescingPolicy.DEFAULT_MAX_LENGTH);
+        store.setDefault(PreferencePage.COALESCING_MAX_AGE, (int)CoalescingPolicy.DEFAULT_MAX_AGE);
+        store.setDefault(PreferencePage.ON_DEMAND_ATTACHMENT, false);
+        store.setDefault(PreferencePage.SPILL_RAW_MACROS, false);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder;
+
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.eclipse.ui.IWorkbench;
+
+/**
+ * Manages the preference page.
+ * @author Katsuhisa Maruyama
+ */
+public class PreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
+    
+    /**
+     * The time in milliseconds of inactivity that stops coalescing successive typing macros.
+     */
+    static final String COALESCING_INACTIVITY_TIMEOUT = "coalescing.inactivity.timeout";
+    
+    /**
+     * The maximum number of characters of a coalesced typing macro.
+     */
+    static final String COALESCING_MAX_LENGTH = "coalescing.max.length";
+    
+    /**
+     * The maximum time in milliseconds between the start and the end of a coalesced typing macro.
+     */
+    static final String COALESCING_MAX_AGE = "coalescing.max.age";
+    
+    /**
+     * A flag indicating if recorders are attached to files when their documents are touched first.
+     */
+    static final String ON_DEMAND_ATTACHMENT = "ondemand.attachment";
+    
+    /**
+     * A flag indicating if raw macros are streamed into a file instead of being kept on the heap.
+     */
+    static final String SPILL_RAW_MACROS = "spill.raw.macros";
+    
+    /**
+     * Creates an object for a preference page.
+     */
+    public PreferencePage() {
+        super(GRID);
+        setPreferenceStore(Activator.getPlugin().getPreferenceStore());
+        setDescription("A preference page of the EditRecorder (a limit of zero is not checked)");
+    }
+    
+    /**
+     * Creates the field editors for preference settings.
+     */
+    public void createFieldEditors() {
+        addField(new IntegerFieldEditor(COALESCING_INACTIVITY_TIMEOUT,
+          "Inactivity time (ms) that stops coalescing typing", getFieldEditorParent()));
+        
+        addField(new IntegerFieldEditor(COALESCING_MAX_LENGTH,
+          "Maximum number of characters of a coalesced typing", getFieldEditorParent()));
+        
+        addField(new IntegerFieldEditor(COALESCING_MAX_AGE,
+          "Maximum duration (ms) of a coalesced typing", getFieldEditorParent()));
+        
+        addField(new BooleanFieldEditor(ON_DEMAND_ATTACHMENT,
+          "Attach recorders to files on demand (after restart)", getFieldEditorParent()));
+        
+        addField(new BooleanFieldEditor(SPILL_RAW_MACROS,
+          "Stream raw macros into a file instead of attaching them to macros", getFieldEditorParent()));
+    }
+    
+    /**
+     * Initializes a preference page for a given workbench.
+     */
+    public void init(IWorkbench workbench) {
+    }
+}
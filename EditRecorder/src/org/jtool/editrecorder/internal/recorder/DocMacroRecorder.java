@@ -25,7 +25,6 @@ import org.jtool.editrecorder.macro.ResourceMacro;
 import org.jtool.editrecorder.macro.TriggerMacro;
 import org.jtool.editrecorder.recorder.Recorder;
 import org.jtool.editrecorder.util.EditorUtilities;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -45,9 +44,9 @@ public class DocMacroRecorder {
     protected CodeCompletionManager completionManager;
     
     /**
-     * The collection of raw macros that were recorded.
+     * The buffer of raw macros that were recorded.
      */
-    protected List<Macro> rawMacros;
+    protected RawMacroBuffer rawMacros;
     
     /**
      * The path of a file whose contents are changed by macros.
@@ -75,9 +74,15 @@ public class DocMacroRecorder {
     protected DocumentMacro lastDocumentMacro;
     
     /**
-     * The contents of the previous code.
+     * The contents of the previous code, which are incrementally edited by applied macros.
+     * No text is stored while the previous code does not exist.
      */
-    protected String preCode;
+    protected PieceTable preCode = new PieceTable();
+    
+    /**
+     * A flag indicating if the document may have been changed since the previous code was last synchronized with it.
+     */
+    private volatile boolean dirty = true;
     
     /**
      * Creates an object that records document macros related to a file.
@@ -90,7 +95,7 @@ public class DocMacroRecorder {
         
         this.documentManager = new DocumentManager(this);
         this.completionManager = new CodeCompletionManager(this);
-        this.rawMacros = new ArrayList<Macro>();
+        this.rawMacros = new RawMacroBuffer(RawMacroBuffer.DEFAULT_CAPACITY);
     }
     
     /**
@@ -208,6 +213,29 @@ public class DocMacroRecorder {
         return path;
     }
     
+    /**
+     * Marks the document as changed since the last synchronization.
+     */
+    void markDirty() {
+        dirty = true;
+    }
+    
+    /**
+     * Clears the mark of the change. This must be called before the current code is obtained
+     * so that a change made during the synchronization is not missed.
+     */
+    protected void clearDirty() {
+        dirty = false;
+    }
+    
+    /**
+     * Tests if the document may have been changed since the previous code was last synchronized with it.
+     * @return <code>true</code> if the document needs to be compared, otherwise <code>false</code>
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+    
     /**
      * Sets a parent macro.
      * @param parent the parent macro, or <code>null</code> if no parent exists
@@ -278,7 +306,9 @@ public class DocMacroRecorder {
      * @param macro the raw macro to be recored
      */
     protected void recordRawMacro(Macro macro) {
-        rawMacros.add(macro);
+        if (!recorder.spillRawMacro(macro)) {
+            rawMacros.add(macro);
+        }
         recorder.notifyRawMacro(macro);
         
         lastRawMacro = macro;
@@ -305,8 +335,10 @@ public class DocMacroRecorder {
      */
     public void breakMacro() {
         for (DocMacroRecorder docRecorder : Recorder.getDocRecorders()) {
-            docRecorder.dumpLastDocumentMacro();
-            docRecorder.needDiff();
+            if (docRecorder.isDirty()) {
+                docRecorder.dumpLastDocumentMacro();
+                docRecorder.needDiff();
+            }
         }
     }
     
@@ -336,9 +368,8 @@ public class DocMacroRecorder {
                 
             } else if (tmacro.isEnd() || tmacro.isCursorChange()) {
                 if (compoundMacro != null) {
-                    compoundMacro.setRawMacros(new ArrayList<Macro>(rawMacros));
+                    compoundMacro.setRawMacros(rawMacros.take());
                     compoundMacro.setTimes();
-                    rawMacros.clear();
                     
                     recorder.notifyMacro(compoundMacro);
                 }
@@ -358,8 +389,7 @@ public class DocMacroRecorder {
                 }
                 
             } else {
-                macro.setRawMacros(new ArrayList<Macro>(rawMacros));
-                rawMacros.clear();
+                macro.setRawMacros(rawMacros.take());
                 
                 recorder.notifyMacro(macro);
             }
@@ -379,20 +409,29 @@ public class DocMacroRecorder {
      * @return <code>true</code> the difference macros are generated, otherwise <code>false</code>
      */
     protected boolean needDiff() {
-        String code = getCurrentCode();
-        if (code != null && code.compareTo(preCode) != 0) {
+        clearDirty();
+        return needDiff(getCurrentCode());
+    }
+    
+    /**
+     * Confirms the necessity of generation of difference macros against given code.
+     * @param code the current contents of source code, or <code>null</code> if source code does not exist
+     * @return <code>true</code> the difference macros are generated, otherwise <code>false</code>
+     */
+    protected boolean needDiff(String code) {
+        if (code != null && !preCode.isNull() && !preCode.contentEquals(code)) {
             long time = Time.getCurrentTime();
-            List<DiffMacro> macros = DiffMacroGenerator.generate(time, path, preCode, code);
+            List<DiffMacro> macros = DiffMacroGenerator.generate(time, path, preCode.toString(), code);
             
             if (macros.size() > 0) {
                 recordDiffMacros(time, macros);
                 
-                preCode = code;
+                preCode.reset(code);
                 return true;
             }
         }
         
-        preCode = code;
+        preCode.reset(code);
         return false;
     }
     
@@ -426,13 +465,11 @@ public class DocMacroRecorder {
     protected boolean applyMacro(Macro macro) {
         if (macro instanceof DocumentMacro) {
             DocumentMacro dmacro = (DocumentMacro)macro;
-            StringBuilder postCode = new StringBuilder(preCode);
             
             int start = dmacro.getStart();
             int end = start + dmacro.getDeletedText().length();
             String itext = dmacro.getInsertedText();
-            postCode.replace(start, end, itext);
-            preCode = postCode.toString();
+            preCode.replace(start, end, itext);
         }
         return true;
     }
@@ -443,7 +480,7 @@ public class DocMacroRecorder {
      * @param macro the macro to be applied
      * @return <code>true</code> if a mismatch exists, otherwise <code>false</code>
      */
-    private boolean hasMismatch(String code, Macro macro) {
+    private boolean hasMismatch(PieceTable code, Macro macro) {
         if (!(macro instanceof DocumentMacro)) {
             return false;
         }
@@ -455,10 +492,10 @@ public class DocMacroRecorder {
         }
         
         String dtext = dmacro.getDeletedText();
-        int end = start + dtext.length();
+        int end = Math.min(start + dtext.length(), code.length());
         if (dtext.length() > 0) {
-            String rtext = code.substring(start, end);
-            if (rtext != null && rtext.compareTo(dtext) != 0) {
+            if (!code.regionMatches(start, dtext)) {
+                String rtext = code.substring(start, end);
                 
                 for (int i = 0; i < rtext.length(); i++) {
                     if (rtext.charAt(i) == dtext.charAt(i)) {
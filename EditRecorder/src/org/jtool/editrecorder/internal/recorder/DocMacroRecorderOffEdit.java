@@ -14,6 +14,13 @@ import org.jtool.editrecorder.recorder.Recorder;
 import org.jtool.editrecorder.util.EditorUtilities;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.jface.text.IDocument;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Records document macros related to a file.
@@ -21,6 +28,11 @@ import org.eclipse.jface.text.IDocument;
  */
 public class DocMacroRecorderOffEdit extends DocMacroRecorder {
     
+    /**
+     * The character set used to compress the previous code.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
     /**
      * A file related to recorded macros.
      */
@@ -31,44 +43,124 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      */
     private IDocument doc;
     
+    /**
+     * A flag indicating if the contents of the previous code are held only while they are needed.
+     */
+    private boolean lazy;
+    
+    /**
+     * A flag indicating if the contents of the previous code are currently held.
+     */
+    private boolean codeLoaded = false;
+    
+    /**
+     * The SHA-256 digest of the previous code, which is used while the code itself is not held.
+     */
+    private byte[] codeDigest;
+    
+    /**
+     * The length of the previous code, which is used while the code itself is not held.
+     */
+    private int codeLength;
+    
+    /**
+     * The compressed contents of the previous code, which are used while the code itself is not held.
+     */
+    private byte[] compressedCode = null;
+    
+    /**
+     * The modification stamp of the file when the previous code was last synchronized with it.
+     */
+    private long modificationStamp;
+    
     /**
      * Creates an object that records document macros related to a file.
      * @param file the file
      * @param recorder a recorder that sends macro events
      */
     public DocMacroRecorderOffEdit(IFile file, Recorder recorder) {
+        this(file, EditorUtilities.getDocument(file), recorder, false);
+    }
+    
+    /**
+     * Creates an object that records document macros related to a file.
+     * @param file the file
+     * @param doc the document of the file
+     * @param recorder a recorder that sends macro events
+     * @param lazy <code>true</code> if only the hash value of the code is held until the code is changed,
+     * or <code>false</code> if the code is always held
+     */
+    public DocMacroRecorderOffEdit(IFile file, IDocument doc, Recorder recorder, boolean lazy) {
         super(EditorUtilities.getInputFilePath(file), recorder);
         
         this.file = file;
-        this.doc = EditorUtilities.getDocument(file);
+        this.doc = doc;
+        this.lazy = lazy;
+    }
+    
+    /**
+     * Tests if this recorder records changes on a given document.
+     * @param doc the document
+     * @return <code>true</code> if the document is under recording, otherwise <code>false</code>
+     */
+    public boolean isRecording(IDocument doc) {
+        return this.doc == doc;
+    }
+    
+    /**
+     * Takes over the previous code from a recorder that was detached from the same file.
+     * A change made while no recorder was attached is recorded as difference macros against the code.
+     * This must be called before the recording starts.
+     * @param recorder the detached recorder
+     */
+    public void takeOverCode(DocMacroRecorderOffEdit recorder) {
+        if (lazy && recorder.compressedCode != null) {
+            codeDigest = recorder.codeDigest;
+            codeLength = recorder.codeLength;
+            compressedCode = recorder.compressedCode;
+        }
     }
     
     /**
      * Starts the recording of document macros.
      */
     public void start() {
-        if (file == null) {
+        if (file == null || doc == null) {
             return;
         }
         
         register(doc, null, documentManager);
         
-        preCode = doc.get();
+        modificationStamp = file.getModificationStamp();
+        if (lazy) {
+            if (compressedCode == null) {
+                releaseCode(doc.get());
+            }
+        } else {
+            loadCode(doc.get());
+        }
         
         super.start();
     }
     
     /**
      * Stops the recording of macros.
+     * The document is no longer referred to, so that it can be discarded after its buffer is disposed.
+     * In the lazy mode, the compressed contents of the previous code are still held.
      */
     public void stop() {
-        if (file == null) {
+        if (file == null || doc == null) {
             return;
         }
         
         unregister(doc, null, documentManager);
         
         super.stop();
+        
+        if (!lazy) {
+            preCode.reset(null);
+        }
+        doc = null;
     }
     
     /**
@@ -76,6 +168,7 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro the document macro
      */
     protected void recordDocumentMacro(DocumentMacro macro) {
+        prepareCode();
         super.recordDocumentMacro(macro);
     }
     
@@ -109,6 +202,7 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro a document macro
      */
     protected void recordUndoRedoMacro(DocumentMacro macro) {
+        prepareCode();
         super.recordUndoRedoMacro(macro);
     }
     
@@ -117,10 +211,188 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @return the contents of source code, or <code>null</code> if source code does not exist
      */
     protected String getCurrentCode() {
-        IDocument doc = EditorUtilities.getDocument(file);
         if (doc != null) {
             return doc.get();
         }
         return null;
     }
+    
+    /**
+     * Confirms the necessity of generation of difference macros.
+     * In the lazy mode, the previous code is released again after the confirmation.
+     * A change that was made while the code was not held is detected by the digest,
+     * and is recorded as difference macros against the decompressed previous code.
+     * @return <code>true</code> the difference macros are generated, otherwise <code>false</code>
+     */
+    protected boolean needDiff() {
+        if (file != null) {
+            modificationStamp = file.getModificationStamp();
+        }
+        if (!lazy) {
+            return super.needDiff();
+        }
+        
+        clearDirty();
+        String code = getCurrentCode();
+        if (code == null) {
+            return false;
+        }
+        
+        if (!codeLoaded && isSameCode(code)) {
+            return false;
+        }
+        
+        restoreCode();
+        boolean diff = super.needDiff(code);
+        releaseCode(code);
+        return diff;
+    }
+    
+    /**
+     * Tests if the document or the file may have been changed since the previous code was last synchronized with it.
+     * The file is checked because it can be changed on disk without any change of the recorded document.
+     * @return <code>true</code> if the document needs to be compared, otherwise <code>false</code>
+     */
+    public boolean isDirty() {
+        if (file == null) {
+            return false;
+        }
+        return super.isDirty() || file.getModificationStamp() != modificationStamp;
+    }
+    
+    /**
+     * Makes the previous code available before a document macro is applied to it.
+     * The document has not been changed yet when the macro is recorded, so its contents are the previous code.
+     */
+    private void prepareCode() {
+        if (codeLoaded) {
+            return;
+        }
+        
+        String code = doc.get();
+        if (isSameCode(code)) {
+            loadCode(code);
+        } else {
+            restoreCode();
+            super.needDiff(code);
+        }
+    }
+    
+    /**
+     * Tests if given code is the same as the previous code that is not held.
+     * The decompressed previous code is compared if the digest is not available.
+     * @param code the contents of the code
+     * @return <code>true</code> if the code has the length and the digest of the previous code, otherwise <code>false</code>
+     */
+    private boolean isSameCode(String code) {
+        if (code.length() != codeLength) {
+            return false;
+        }
+        
+        byte[] digest = digest(code);
+        if (digest == null || codeDigest == null) {
+            return code.equals(decompress(compressedCode));
+        }
+        return MessageDigest.isEqual(digest, codeDigest);
+    }
+    
+    /**
+     * Holds given code as the previous code.
+     * @param code the contents of the code
+     */
+    private void loadCode(String code) {
+        preCode.reset(code);
+        compressedCode = null;
+        codeLoaded = true;
+    }
+    
+    /**
+     * Holds the previous code again by decompressing it.
+     */
+    private void restoreCode() {
+        if (codeLoaded) {
+            return;
+        }
+        
+        String code = decompress(compressedCode);
+        if (code == null) {
+            code = "";
+        }
+        loadCode(code);
+    }
+    
+    /**
+     * Releases the previous code and keeps only its digest and its compressed contents.
+     * @param code the contents of the code
+     */
+    private void releaseCode(String code) {
+        codeDigest = digest(code);
+        codeLength = code.length();
+        compressedCode = compress(code);
+        preCode.reset(null);
+        codeLoaded = false;
+    }
+    
+    /**
+     * Calculates the digest of code.
+     * @param code the contents of the code
+     * @return the SHA-256 digest, or <code>null</code> if the algorithm is not available
+     */
+    private static byte[] digest(String code) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(code.getBytes(UTF8));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Compresses code.
+     * @param code the contents of the code
+     * @return the compressed contents
+     */
+    private static byte[] compress(String code) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(code.getBytes(UTF8));
+        deflater.finish();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(code.length() / 4 + 64);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            out.write(buf, 0, len);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+    
+    /**
+     * Decompresses code.
+     * @param bytes the compressed contents of the code
+     * @return the contents of the code, or <code>null</code> if the contents are broken
+     */
+    private static String decompress(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] buf = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+                if (len == 0 && inflater.needsInput()) {
+                    return null;
+                }
+                out.write(buf, 0, len);
+            }
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return new String(out.toByteArray(), UTF8);
+    }
 }
@@ -70,7 +70,7 @@ public class DocMacroRecorderOnEdit extends DocMacroRecorder {
         register(doc, styledText, documentManager);
         register(editor, completionManager);
         
-        preCode = doc.get();
+        preCode.reset(doc.get());
         
         super.start();
     }
@@ -65,6 +65,8 @@ public class DocumentManager implements IDocumentListener, IDocumentUndoListener
      */
     @Override
     public void documentAboutToBeChanged(DocumentEvent event) {
+        recorder.markDirty();
+        
         insertedText = event.getText();
         deletedText = "";
         if (event.getLength() > 0) {
@@ -115,6 +117,7 @@ public class DocumentManager implements IDocumentListener, IDocumentUndoListener
      */
     @Override
     public void documentChanged(DocumentEvent event) {
+        recorder.markDirty();
     }
     
     /**
@@ -0,0 +1,201 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import org.jtool.editrecorder.recorder.Recorder;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Manages file buffer events in order to attach a recorder to a file when its document is touched first,
+ * and to detach the recorder when the document is discarded.
+ * @author Katsuhisa Maruyama
+ */
+public class FileBufferManager implements IFileBufferListener {
+    
+    /**
+     * A recorder that attaches recorders of document macros.
+     */
+    private Recorder recorder;
+    
+    /**
+     * A flag indicating if this manager is registered with the text file buffer manager.
+     */
+    private boolean registered = false;
+    
+    /**
+     * Creates an object that receives file buffer events.
+     * @param recorder a recorder that attaches recorders of document macros
+     */
+    public FileBufferManager(Recorder recorder) {
+        this.recorder = recorder;
+    }
+    
+    /**
+     * Registers this manager with the text file buffer manager.
+     */
+    public void register() {
+        ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+        if (manager != null) {
+            manager.addFileBufferListener(this);
+            registered = true;
+        }
+    }
+    
+    /**
+     * Unregisters this manager with the text file buffer manager.
+     */
+    public void unregister() {
+        ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+        if (manager != null) {
+            manager.removeFileBufferListener(this);
+        }
+        registered = false;
+    }
+    
+    /**
+     * Tests if this manager is registered with the text file buffer manager.
+     * @return <code>true</code> if this manager is registered, otherwise <code>false</code>
+     */
+    public boolean isRegistered() {
+        return registered;
+    }
+    
+    /**
+     * Obtains the document of a file whose buffer currently exists.
+     * No buffer is created, so that no recorder is attached by this method.
+     * @param file the file
+     * @return the document of the file, or <code>null</code> if the buffer of the file does not exist
+     */
+    public static IDocument getConnectedDocument(IFile file) {
+        ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+        if (manager == null || file == null) {
+            return null;
+        }
+        
+        ITextFileBuffer buffer = manager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+        if (buffer != null) {
+            return buffer.getDocument();
+        }
+        return null;
+    }
+    
+    /**
+     * Receives an event when a file buffer has been created.
+     * @param buffer the created file buffer
+     */
+    @Override
+    public void bufferCreated(IFileBuffer buffer) {
+        IFile file = getFile(buffer);
+        if (file != null) {
+            recorder.attachDocRecorder(file, ((ITextFileBuffer)buffer).getDocument());
+        }
+    }
+    
+    /**
+     * Receives an event when a file buffer has been disposed.
+     * @param buffer the disposed file buffer
+     */
+    @Override
+    public void bufferDisposed(IFileBuffer buffer) {
+        IFile file = getFile(buffer);
+        if (file != null) {
+            recorder.detachDocRecorder(file);
+        }
+    }
+    
+    /**
+     * Obtains a Java file whose contents are stored in a file buffer.
+     * @param buffer the file buffer
+     * @return the Java file, or <code>null</code> if the buffer does not store the contents of a Java file
+     */
+    private IFile getFile(IFileBuffer buffer) {
+        if (!(buffer instanceof ITextFileBuffer)) {
+            return null;
+        }
+        
+        IPath location = buffer.getLocation();
+        if (location == null || !"java".equals(location.getFileExtension())) {
+            return null;
+        }
+        return FileBuffers.getWorkspaceFileAtLocation(location);
+    }
+    
+    /**
+     * Receives an event when the contents of a file buffer will be replaced.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void bufferContentAboutToBeReplaced(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the contents of a file buffer have been replaced.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void bufferContentReplaced(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the state of a file buffer will change.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void stateChanging(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the dirty state of a file buffer has changed.
+     * @param buffer the affected file buffer
+     * @param isDirty <code>true</code> if the buffer is dirty, otherwise <code>false</code>
+     */
+    @Override
+    public void dirtyStateChanged(IFileBuffer buffer, boolean isDirty) {
+    }
+    
+    /**
+     * Receives an event when the state validation of a file buffer has changed.
+     * @param buffer the affected file buffer
+     * @param isStateValidated <code>true</code> if the state of the buffer is validated, otherwise <code>false</code>
+     */
+    @Override
+    public void stateValidationChanged(IFileBuffer buffer, boolean isStateValidated) {
+    }
+    
+    /**
+     * Receives an event when the underlying file of a file buffer has been moved.
+     * @param buffer the affected file buffer
+     * @param path the new location of the file
+     */
+    @Override
+    public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+    }
+    
+    /**
+     * Receives an event when the underlying file of a file buffer has been deleted.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void underlyingFileDeleted(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when a state change of a file buffer failed.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void stateChangeFailed(IFileBuffer buffer) {
+    }
+}
@@ -22,8 +22,6 @@ import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.ltk.core.refactoring.RefactoringCore;
 import org.eclipse.ltk.core.refactoring.history.IRefactoringHistoryService;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Records macros performed on the editor.
@@ -37,9 +35,9 @@ public class MenuMacroRecorder {
     private Recorder recorder;
     
     /**
-     * The collection of raw macros that were recorded.
+     * The buffer of raw macros that were recorded.
      */
-    private List<Macro> rawMacros = new ArrayList<Macro>();
+    private RawMacroBuffer rawMacros = new RawMacroBuffer(RawMacroBuffer.DEFAULT_CAPACITY);
     
     /**
      * A compound macro that contains macros.
@@ -260,7 +258,9 @@ public class MenuMacroRecorder {
      * @param macro the raw macro to be recored
      */
     private void recordRawMacro(Macro macro) {
-        rawMacros.add(macro);
+        if (!recorder.spillRawMacro(macro)) {
+            rawMacros.add(macro);
+        }
         recorder.notifyRawMacro(macro);
     }
     
@@ -276,9 +276,8 @@ public class MenuMacroRecorder {
                 
             } else if (tmacro.isEnd() || tmacro.isCursorChange()) {
                 if (compoundMacro != null) {
-                    compoundMacro.setRawMacros(new ArrayList<Macro>(rawMacros));
+                    compoundMacro.setRawMacros(rawMacros.take());
                     compoundMacro.setTimes();
-                    rawMacros.clear();
                     
                     recorder.notifyMacro(compoundMacro);
                 }
@@ -289,8 +288,7 @@ public class MenuMacroRecorder {
             if (compoundMacro != null) {
                 compoundMacro.addMacro(macro);
             } else {
-                macro.setRawMacros(new ArrayList<Macro>(rawMacros));
-                rawMacros.clear();
+                macro.setRawMacros(rawMacros.take());
                 
                 recorder.notifyMacro(macro);
             }
@@ -315,8 +313,10 @@ public class MenuMacroRecorder {
      */
     public void breakMacro() {
         for (DocMacroRecorder docRecorder : Recorder.getDocRecorders()) {
-            docRecorder.dumpLastDocumentMacro();
-            docRecorder.needDiff();
+            if (docRecorder.isDirty()) {
+                docRecorder.dumpLastDocumentMacro();
+                docRecorder.needDiff();
+            }
         }
     }
     
@@ -0,0 +1,410 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import java.util.Random;
+
+/**
+ * Stores the shadow contents of a document as a piece table.
+ * Pieces refer to either the original text or an append-only buffer, and are kept in
+ * a randomized balanced tree ordered by document position. Replacements and region
+ * comparisons take O(log n) time in the number of pieces and never copy the whole text.
+ * @author Katsuhisa Maruyama
+ */
+public class PieceTable {
+    
+    /**
+     * The text given when this table was reset, or <code>null</code> if no text is stored.
+     */
+    private String original;
+    
+    /**
+     * The append-only buffer that stores inserted text.
+     */
+    private StringBuilder added;
+    
+    /**
+     * The root of the tree of pieces.
+     */
+    private Piece root;
+    
+    /**
+     * The generator of priorities that keeps the tree balanced.
+     */
+    private Random random = new Random(0);
+    
+    /**
+     * Creates a piece table that stores no text.
+     */
+    public PieceTable() {
+        reset(null);
+    }
+    
+    /**
+     * Creates a piece table that stores given text.
+     * @param text the initial text
+     */
+    public PieceTable(String text) {
+        reset(text);
+    }
+    
+    /**
+     * Discards all the pieces and stores given text.
+     * @param text the new text, or <code>null</code> if no text is stored
+     */
+    public void reset(String text) {
+        original = text;
+        added = new StringBuilder();
+        if (original != null && original.length() > 0) {
+            root = new Piece(false, 0, original.length(), random.nextInt());
+        } else {
+            root = null;
+        }
+    }
+    
+    /**
+     * Tests if this table stores no text.
+     * @return <code>true</code> if the table was reset with <code>null</code>, otherwise <code>false</code>
+     */
+    public boolean isNull() {
+        return original == null;
+    }
+    
+    /**
+     * Returns the length of the stored text.
+     * @return the number of characters
+     */
+    public int length() {
+        return size(root);
+    }
+    
+    /**
+     * Replaces a region of the stored text.
+     * Text that directly follows the last inserted text is merged into its piece, so that
+     * consecutive typing does not add a piece per keystroke.
+     * @param start the starting position of the region (inclusive)
+     * @param end the ending position of the region (exclusive)
+     * @param text the text to be inserted
+     */
+    public void replace(int start, int end, String text) {
+        int len = length();
+        if (original == null) {
+            original = "";
+        }
+        if (start < 0 || end < start || start > len) {
+            throw new StringIndexOutOfBoundsException("replace: " + start + "-" + end + " on " + len);
+        }
+        if (end > len) {
+            end = len;
+        }
+        
+        Piece[] lr = split(root, start);
+        Piece[] mr = split(lr[1], end - start);
+        
+        Piece inserted = null;
+        if (text != null && text.length() > 0) {
+            if (!extendLast(lr[0], text.length())) {
+                inserted = new Piece(true, added.length(), text.length(), random.nextInt());
+            }
+            added.append(text);
+        }
+        root = merge(merge(lr[0], inserted), mr[1]);
+    }
+    
+    /**
+     * Tests if a region of the stored text equals to given text.
+     * @param start the starting position of the region
+     * @param text the text to be compared
+     * @return <code>true</code> if the region equals to the text, otherwise <code>false</code>
+     */
+    public boolean regionMatches(int start, String text) {
+        if (start < 0 || start + text.length() > length()) {
+            return false;
+        }
+        return compare(root, 0, text, start, start, start + text.length());
+    }
+    
+    /**
+     * Tests if the stored text equals to given text.
+     * @param text the text to be compared, or <code>null</code>
+     * @return <code>true</code> if both the texts are the same, otherwise <code>false</code>
+     */
+    public boolean contentEquals(String text) {
+        if (text == null || original == null) {
+            return text == null && original == null;
+        }
+        if (text.length() != length()) {
+            return false;
+        }
+        return compare(root, 0, text, 0, 0, text.length());
+    }
+    
+    /**
+     * Obtains a region of the stored text.
+     * @param start the starting position of the region (inclusive)
+     * @param end the ending position of the region (exclusive)
+     * @return the text in the region
+     */
+    public String substring(int start, int end) {
+        StringBuilder buf = new StringBuilder(end - start);
+        append(root, 0, start, end, buf);
+        return buf.toString();
+    }
+    
+    /**
+     * Returns the number of pieces that hold the stored text.
+     * @return the number of pieces
+     */
+    int countPieces() {
+        return count(root);
+    }
+    
+    /**
+     * Materializes the whole stored text.
+     * @return the stored text
+     */
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+    
+    /**
+     * Compares a region of the text in a subtree with given text.
+     * @param node the root of the subtree
+     * @param offset the position of the subtree in the whole text
+     * @param text the text to be compared
+     * @param tstart the position in the whole text that the first character of the text corresponds to
+     * @param from the starting position of the compared region (inclusive)
+     * @param to the ending position of the compared region (exclusive)
+     * @return <code>true</code> if no character differs, otherwise <code>false</code>
+     */
+    private boolean compare(Piece node, int offset, String text, int tstart, int from, int to) {
+        if (node == null || from >= to) {
+            return true;
+        }
+        int pstart = offset + size(node.left);
+        int pend = pstart + node.length;
+        
+        if (from < pstart && !compare(node.left, offset, text, tstart, from, Math.min(to, pstart))) {
+            return false;
+        }
+        
+        int s = Math.max(from, pstart);
+        int e = Math.min(to, pend);
+        CharSequence src = node.isAdded ? added : original;
+        for (int i = s; i < e; i++) {
+            if (src.charAt(node.start + i - pstart) != text.charAt(i - tstart)) {
+                return false;
+            }
+        }
+        
+        if (to > pend) {
+            return compare(node.right, pend, text, tstart, Math.max(from, pend), to);
+        }
+        return true;
+    }
+    
+    /**
+     * Appends a region of the text in a subtree to a buffer.
+     * @param node the root of the subtree
+     * @param offset the position of the subtree in the whole text
+     * @param from the starting position of the region (inclusive)
+     * @param to the ending position of the region (exclusive)
+     * @param buf the buffer that receives the text
+     */
+    private void append(Piece node, int offset, int from, int to, StringBuilder buf) {
+        if (node == null || from >= to) {
+            return;
+        }
+        int pstart = offset + size(node.left);
+        int pend = pstart + node.length;
+        
+        if (from < pstart) {
+            append(node.left, offset, from, Math.min(to, pstart), buf);
+        }
+        
+        int s = Math.max(from, pstart);
+        int e = Math.min(to, pend);
+        if (s < e) {
+            CharSequence src = node.isAdded ? added : original;
+            buf.append(src, node.start + s - pstart, node.start + e - pstart);
+        }
+        
+        if (to > pend) {
+            append(node.right, pend, Math.max(from, pend), to, buf);
+        }
+    }
+    
+    /**
+     * Extends the last piece of a subtree if it ends at the tail of the append-only buffer.
+     * @param node the root of the subtree
+     * @param len the length of the text that is about to be appended to the buffer
+     * @return <code>true</code> if the last piece was extended, otherwise <code>false</code>
+     */
+    private boolean extendLast(Piece node, int len) {
+        if (node == null) {
+            return false;
+        }
+        
+        if (node.right != null) {
+            if (!extendLast(node.right, len)) {
+                return false;
+            }
+        } else {
+            if (!node.isAdded || node.start + node.length != added.length()) {
+                return false;
+            }
+            node.length = node.length + len;
+        }
+        node.update();
+        return true;
+    }
+    
+    /**
+     * Counts the pieces in a subtree.
+     * @param node the root of the subtree
+     * @return the number of pieces
+     */
+    private static int count(Piece node) {
+        if (node == null) {
+            return 0;
+        }
+        return count(node.left) + 1 + count(node.right);
+    }
+    
+    /**
+     * Splits a subtree at a given position.
+     * @param node the root of the subtree
+     * @param pos the position relative to the subtree
+     * @return the two subtrees holding text before and after the position
+     */
+    private Piece[] split(Piece node, int pos) {
+        if (node == null) {
+            return new Piece[] { null, null };
+        }
+        
+        int lsize = size(node.left);
+        if (pos <= lsize) {
+            Piece[] lr = split(node.left, pos);
+            node.left = lr[1];
+            node.update();
+            return new Piece[] { lr[0], node };
+        }
+        
+        if (pos < lsize + node.length) {
+            int cut = pos - lsize;
+            Piece tail = new Piece(node.isAdded, node.start + cut, node.length - cut, random.nextInt());
+            tail.right = node.right;
+            tail.update();
+            node.length = cut;
+            node.right = null;
+            node.update();
+            return new Piece[] { node, tail };
+        }
+        
+        Piece[] lr = split(node.right, pos - lsize - node.length);
+        node.right = lr[0];
+        node.update();
+        return new Piece[] { node, lr[1] };
+    }
+    
+    /**
+     * Merges two subtrees whose text is placed in order.
+     * @param left the subtree holding the former text
+     * @param right the subtree holding the latter text
+     * @return the root of the merged tree
+     */
+    private Piece merge(Piece left, Piece right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+    
+    /**
+     * Returns the length of the text in a subtree.
+     * @param node the root of the subtree
+     * @return the number of characters
+     */
+    private static int size(Piece node) {
+        return (node != null) ? node.size : 0;
+    }
+    
+    /**
+     * A piece that refers to a region of either the original text or the append-only buffer.
+     */
+    private static class Piece {
+        
+        /**
+         * A flag indicating if this piece refers to the append-only buffer.
+         */
+        boolean isAdded;
+        
+        /**
+         * The starting position of the referred region.
+         */
+        int start;
+        
+        /**
+         * The length of the referred region.
+         */
+        int length;
+        
+        /**
+         * The random priority of this piece in the tree.
+         */
+        int priority;
+        
+        /**
+         * The length of the text in the subtree rooted at this piece.
+         */
+        int size;
+        
+        /**
+         * The subtree holding the text before this piece.
+         */
+        Piece left;
+        
+        /**
+         * The subtree holding the text after this piece.
+         */
+        Piece right;
+        
+        /**
+         * Creates a piece.
+         * @param isAdded <code>true</code> if the piece refers to the append-only buffer
+         * @param start the starting position of the referred region
+         * @param length the length of the referred region
+         * @param priority the priority of the piece
+         */
+        Piece(boolean isAdded, int start, int length, int priority) {
+            this.isAdded = isAdded;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            this.size = length;
+        }
+        
+        /**
+         * Recalculates the length of the text in the subtree.
+         */
+        void update() {
+            size = length + PieceTable.size(left) + PieceTable.size(right);
+        }
+    }
+}
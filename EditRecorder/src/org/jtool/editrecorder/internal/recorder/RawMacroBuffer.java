@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import org.jtool.editrecorder.macro.Macro;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores raw macros in a buffer with a fixed capacity.
+ * The raw macros related to a recorded macro are handed over as a read-only view of the buffer without copying them.
+ * A slot is never written again once it has been handed over; when the buffer is full, the pending raw macros are
+ * moved to a new array and the old one is left to the views, or to the head of the same array if no view refers to it.
+ * When more raw macros than the capacity are recorded before they are handed over, the oldest ones are dropped and counted.
+ * @author Katsuhisa Maruyama
+ */
+public class RawMacroBuffer {
+    
+    /**
+     * The default number of raw macros that a buffer can hold.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    /**
+     * The slots of the buffer.
+     */
+    private Macro[] macros;
+    
+    /**
+     * The position of the first raw macro that has not been handed over yet.
+     */
+    private int start = 0;
+    
+    /**
+     * The position next to the last raw macro added to this buffer.
+     */
+    private int end = 0;
+    
+    /**
+     * A flag indicating if a view refers to the current array.
+     */
+    private boolean shared = false;
+    
+    /**
+     * The number of raw macros that have been dropped since the last hand-over.
+     */
+    private int dropped = 0;
+    
+    /**
+     * The total number of raw macros that have been dropped.
+     */
+    private long droppedTotal = 0;
+    
+    /**
+     * Creates a buffer of raw macros.
+     * @param capacity the maximum number of raw macros the buffer holds
+     */
+    public RawMacroBuffer(int capacity) {
+        macros = new Macro[Math.max(1, capacity)];
+    }
+    
+    /**
+     * Adds a raw macro to this buffer.
+     * @param macro the raw macro
+     */
+    public void add(Macro macro) {
+        if (end == macros.length) {
+            renew();
+        }
+        macros[end] = macro;
+        end++;
+    }
+    
+    /**
+     * Returns a view of the raw macros added since the last call of this method or {@link #clear()},
+     * and starts a new range of raw macros. The view never changes after it is returned.
+     * @return the read-only view of the raw macros
+     */
+    public List<Macro> take() {
+        if (dropped > 0) {
+            System.err.println("Raw macros overflowed: " + dropped + " raw macros were dropped");
+            dropped = 0;
+        }
+        
+        if (start == end) {
+            return Collections.emptyList();
+        }
+        
+        List<Macro> view = Collections.unmodifiableList(Arrays.asList(macros).subList(start, end));
+        shared = true;
+        start = end;
+        return view;
+    }
+    
+    /**
+     * Discards the raw macros that have not been handed over yet.
+     */
+    public void clear() {
+        Arrays.fill(macros, start, end, null);
+        start = end;
+        dropped = 0;
+    }
+    
+    /**
+     * Returns the total number of raw macros that have been dropped because they exceeded the capacity.
+     * @return the number of the dropped raw macros
+     */
+    public long getDroppedCount() {
+        return droppedTotal;
+    }
+    
+    /**
+     * Moves the pending raw macros to the head of the buffer, dropping the oldest one if all the slots are pending.
+     * A new array is used if a view refers to the current one, which is no longer written.
+     */
+    private void renew() {
+        int from = start;
+        if (end - start == macros.length) {
+            from++;
+            dropped++;
+            droppedTotal++;
+        }
+        
+        int len = end - from;
+        if (shared) {
+            Macro[] renewed = new Macro[macros.length];
+            System.arraycopy(macros, from, renewed, 0, len);
+            macros = renewed;
+            shared = false;
+        } else {
+            System.arraycopy(macros, from, macros, 0, len);
+            Arrays.fill(macros, len, end, null);
+        }
+        start = 0;
+        end = len;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import org.jtool.editrecorder.macro.Macro;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Streams raw macros into an append-only file instead of keeping them on the heap.
+ * Each raw macro is written in a line, in which line breaks and backslashes are escaped.
+ * @author Katsuhisa Maruyama
+ */
+public class RawMacroSpillFile {
+    
+    /**
+     * The path of the spill file.
+     */
+    private String path;
+    
+    /**
+     * The writer of the spill file.
+     */
+    private Writer writer;
+    
+    /**
+     * Creates an object that appends raw macros to a file.
+     * @param path the path of the file
+     */
+    public RawMacroSpillFile(String path) {
+        this.path = path;
+    }
+    
+    /**
+     * Returns the path of the spill file.
+     * @return the file path
+     */
+    public String getPath() {
+        return path;
+    }
+    
+    /**
+     * Appends a raw macro to the file.
+     * @param macro the raw macro
+     */
+    public synchronized void write(Macro macro) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), "UTF-8"));
+            }
+            writer.write(escape(macro.toString()));
+            writer.write('\n');
+        } catch (IOException e) {
+            System.err.println("Cannot write raw macros into " + path + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes the buffered raw macros into the file.
+     */
+    public synchronized void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Cannot write raw macros into " + path + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Closes the file.
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Cannot close " + path + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+    
+    /**
+     * Escapes line breaks and backslashes in a string.
+     * @param str the string
+     * @return the escaped string
+     */
+    private static String escape(String str) {
+        StringBuilder buf = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\') {
+                buf.append("\\\\");
+            } else if (c == '\n') {
+                buf.append("\\n");
+            } else if (c == '\r') {
+                buf.append("\\r");
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+}
@@ -27,6 +27,11 @@ public class DocumentMacro extends Macro {
      */
     private String deletedText;
     
+    /**
+     * The number of raw document macros that were combined into this macro.
+     */
+    private int combinedCount = 1;
+    
     /**
      * Creates an object storing information on a document macro.
      * @param stime the time when the macro started
@@ -81,6 +86,22 @@ public class DocumentMacro extends Macro {
         return deletedText;
     }
     
+    /**
+     * Sets the number of raw document macros that were combined into this macro.
+     * @param count the number of the combined macros
+     */
+    public void setCombinedCount(int count) {
+        this.combinedCount = count;
+    }
+    
+    /**
+     * Returns the number of raw document macros that were combined into this macro.
+     * @return the number of the combined macros, which is one if the macro was not combined
+     */
+    public int getCombinedCount() {
+        return combinedCount;
+    }
+    
     /**
      * Tests if this macro inserts any text and deletes no text.
      * @return <code>true</code> if this macro performs insertion, otherwise <code>false>
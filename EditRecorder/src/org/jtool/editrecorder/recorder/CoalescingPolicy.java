@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.recorder;
+
+import org.jtool.editrecorder.macro.DocumentMacro;
+
+/**
+ * Decides if successive document macros may be coalesced based on time and size.
+ * A limit that is zero or negative is not checked.
+ * @author Katsuhisa Maruyama
+ */
+public class CoalescingPolicy implements ICoalescingPolicy {
+    
+    /**
+     * The default time in milliseconds of inactivity that stops coalescing.
+     */
+    public static final long DEFAULT_INACTIVITY_TIMEOUT = 2000;
+    
+    /**
+     * The default maximum number of characters of a coalesced macro.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 256;
+    
+    /**
+     * The default maximum time in milliseconds between the start and the end of a coalesced macro.
+     */
+    public static final long DEFAULT_MAX_AGE = 10000;
+    
+    /**
+     * The time of inactivity that stops coalescing.
+     */
+    private long inactivityTimeout;
+    
+    /**
+     * The maximum number of characters of a coalesced macro.
+     */
+    private int maxLength;
+    
+    /**
+     * The maximum time between the start and the end of a coalesced macro.
+     */
+    private long maxAge;
+    
+    /**
+     * Creates a policy with the default limits.
+     */
+    public CoalescingPolicy() {
+        this(DEFAULT_INACTIVITY_TIMEOUT, DEFAULT_MAX_LENGTH, DEFAULT_MAX_AGE);
+    }
+    
+    /**
+     * Creates a policy with given limits.
+     * @param inactivityTimeout the time in milliseconds of inactivity that stops coalescing
+     * @param maxLength the maximum number of characters of a coalesced macro
+     * @param maxAge the maximum time in milliseconds between the start and the end of a coalesced macro
+     */
+    public CoalescingPolicy(long inactivityTimeout, int maxLength, long maxAge) {
+        this.inactivityTimeout = inactivityTimeout;
+        this.maxLength = maxLength;
+        this.maxAge = maxAge;
+    }
+    
+    /**
+     * Returns the time of inactivity that stops coalescing.
+     * @return the time in milliseconds
+     */
+    public long getInactivityTimeout() {
+        return inactivityTimeout;
+    }
+    
+    /**
+     * Returns the maximum number of characters of a coalesced macro.
+     * @return the number of characters
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+    
+    /**
+     * Returns the maximum time between the start and the end of a coalesced macro.
+     * @return the time in milliseconds
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+    
+    /**
+     * Tests if a document macro may be coalesced with its previous macro.
+     * @param last the former document macro
+     * @param next the latter document macro
+     * @return <code>true</code> if the macros may be coalesced, otherwise <code>false</code>
+     */
+    @Override
+    public boolean canCoalesce(DocumentMacro last, DocumentMacro next) {
+        if (inactivityTimeout > 0 && next.getStartTime() - last.getEndTime() > inactivityTimeout) {
+            return false;
+        }
+        
+        if (maxAge > 0 && next.getEndTime() - last.getStartTime() > maxAge) {
+            return false;
+        }
+        
+        if (maxLength > 0) {
+            int length = last.getInsertedText().length() + last.getDeletedText().length() +
+                         next.getInsertedText().length() + next.getDeletedText().length();
+            if (length > maxLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
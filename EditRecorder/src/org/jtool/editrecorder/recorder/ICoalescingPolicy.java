@@ -0,0 +1,25 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.recorder;
+
+import org.jtool.editrecorder.macro.DocumentMacro;
+
+/**
+ * An interface for a policy that decides if successive document macros may be coalesced into one.
+ * @author Katsuhisa Maruyama
+ */
+public interface ICoalescingPolicy {
+    
+    /**
+     * Tests if a document macro may be coalesced with its previous macro.
+     * This test is performed in addition to the test on the texts of the macros.
+     * @param last the former document macro
+     * @param next the latter document macro
+     * @return <code>true</code> if the macros may be coalesced, otherwise <code>false</code>
+     */
+    public boolean canCoalesce(DocumentMacro last, DocumentMacro next);
+}
@@ -28,4 +28,10 @@ public interface IMacroCompressor {
      * @return the combined macro, or <code>null</code> if the macro cannot be combined
      */
     public DocumentMacro combine(DocumentMacro last, DocumentMacro next);
+    
+    /**
+     * Sets a policy that decides if successive document macros may be coalesced.
+     * @param policy the coalescing policy
+     */
+    public void setCoalescingPolicy(ICoalescingPolicy policy);
 }
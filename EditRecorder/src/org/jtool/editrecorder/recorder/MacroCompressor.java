@@ -14,12 +14,27 @@ import org.jtool.editrecorder.macro.DocumentMacro;
  */
 public class MacroCompressor implements IMacroCompressor {
     
+    /**
+     * A policy that decides if successive document macros may be coalesced.
+     */
+    private ICoalescingPolicy policy = new CoalescingPolicy();
+    
     /**
      * Creates an object compressing macros.
      */
     public MacroCompressor() {
     }
     
+    /**
+     * Sets a policy that decides if successive document macros may be coalesced.
+     * @param policy the coalescing policy
+     */
+    public void setCoalescingPolicy(ICoalescingPolicy policy) {
+        if (policy != null) {
+            this.policy = policy;
+        }
+    }
+    
     /**
      * Tests if a document macros can be combined with its previous macro.
      * @param macro the document macro
@@ -56,19 +71,23 @@ public class MacroCompressor implements IMacroCompressor {
             return null;
         }
         
-        if (next.isInsert()) {
-            return combineInsertMacro(last, next);
+        if (last != null && !policy.canCoalesce(last, next)) {
+            return null;
         }
         
-        if (next.isDelete()) {
-            return combineDeleteMacro(last, next);
+        DocumentMacro macro = null;
+        if (next.isInsert()) {
+            macro = combineInsertMacro(last, next);
+        } else if (next.isDelete()) {
+            macro = combineDeleteMacro(last, next);
+        } else if (next.isReplace()) {
+            macro = compressReplaceMacro(last, next);
         }
         
-        if (next.isReplace()) {
-            return compressReplaceMacro(last, next);
+        if (macro != null && last != null) {
+            macro.setCombinedCount(last.getCombinedCount() + next.getCombinedCount());
         }
-        
-        return null;
+        return macro;
     }
     
     /**
@@ -10,7 +10,9 @@ import org.jtool.editrecorder.Activator;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorder;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorderOffEdit;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorderOnEdit;
+import org.jtool.editrecorder.internal.recorder.FileBufferManager;
 import org.jtool.editrecorder.internal.recorder.MenuMacroRecorder;
+import org.jtool.editrecorder.internal.recorder.RawMacroSpillFile;
 import org.jtool.editrecorder.macro.Macro;
 import org.jtool.editrecorder.util.EditorUtilities;
 import org.jtool.editrecorder.util.WorkspaceUtilities;
@@ -18,6 +20,7 @@ import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.swt.widgets.Display;
@@ -25,9 +28,11 @@ import org.eclipse.jface.operation.IRunnableWithProgress;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Records operations and menu actions performed on Eclipse.
@@ -43,7 +48,34 @@ public class Recorder {
     /**
      * The collection of recorders that record document macros.
      */
-    private static Map<String, DocMacroRecorder> docRecorders = new HashMap<String, DocMacroRecorder>();
+    private static Map<String, DocMacroRecorder> docRecorders = new ConcurrentHashMap<String, DocMacroRecorder>();
+    
+    /**
+     * The maximum number of detached recorders that are kept.
+     */
+    private static final int MAX_DETACHED_RECORDERS = 256;
+    
+    /**
+     * The collection of recorders that were detached from files whose buffers were disposed.
+     * Only the compressed contents of the code are held in them. The least recently detached
+     * recorder is discarded when the number of the recorders exceeds its limit,
+     * so that a change made on the file while no recorder is attached is no longer recorded as differences.
+     */
+    private static Map<String, DocMacroRecorderOffEdit> detachedRecorders = Collections.synchronizedMap(
+            new LinkedHashMap<String, DocMacroRecorderOffEdit>(16, 0.75f, true) {
+                
+                private static final long serialVersionUID = 1L;
+                
+                /**
+                 * Tests if the least recently used recorder is discarded.
+                 * @param eldest the least recently used entry
+                 * @return <code>true</code> if the number of the recorders exceeds its limit, otherwise <code>false</code>
+                 */
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DocMacroRecorderOffEdit> eldest) {
+                    return size() > MAX_DETACHED_RECORDERS;
+                }
+            });
     
     /**
      * A recorder that records menu actions.
@@ -60,11 +92,27 @@ public class Recorder {
      */
     private List<MacroListener> macroListeners = new ArrayList<MacroListener>();
     
+    /**
+     * A flag indicating if recorders are attached to files on demand instead of to all files at the start.
+     */
+    private boolean onDemandAttachment = false;
+    
+    /**
+     * A manager that attaches a recorder to a file when the buffer of the file is created.
+     */
+    private FileBufferManager fileBufferManager;
+    
+    /**
+     * A file into which raw macros are streamed, or <code>null</code> if raw macros are kept on the heap.
+     */
+    private volatile RawMacroSpillFile rawMacroSpillFile = null;
+    
     /**
      * Creates an object that records macros.
      */
     private Recorder() {
         this.compressor = new MacroCompressor();
+        this.fileBufferManager = new FileBufferManager(this);
     }
     
     /**
@@ -85,6 +133,56 @@ public class Recorder {
         }
     }
     
+    /**
+     * Sets a policy that decides if successive document macros may be coalesced by the compressor.
+     * @param policy the coalescing policy
+     */
+    public void setCoalescingPolicy(ICoalescingPolicy policy) {
+        compressor.setCoalescingPolicy(policy);
+    }
+    
+    /**
+     * Sets the way of attaching recorders to files that are not opened on editors.
+     * This setting takes effect when the recording starts.
+     * @param onDemand <code>true</code> if a recorder is attached to a file when the document of the file is touched first,
+     * or <code>false</code> if recorders are attached to all the files in the workspace at the start
+     */
+    public void setOnDemandAttachment(boolean onDemand) {
+        this.onDemandAttachment = onDemand;
+    }
+    
+    /**
+     * Sets a file into which raw macros are streamed instead of being kept on the heap.
+     * Macros recorded while the file is set have no raw macros attached to them.
+     * @param path the path of the append-only file, or <code>null</code> if raw macros are kept on the heap
+     */
+    public synchronized void setRawMacroSpillFile(String path) {
+        if (rawMacroSpillFile != null) {
+            rawMacroSpillFile.close();
+        }
+        
+        if (path != null) {
+            rawMacroSpillFile = new RawMacroSpillFile(path);
+        } else {
+            rawMacroSpillFile = null;
+        }
+    }
+    
+    /**
+     * Streams a raw macro into the spill file if it is set.
+     * @param macro the raw macro
+     * @return <code>true</code> if the raw macro was streamed, or <code>false</code> if it should be kept on the heap
+     */
+    public boolean spillRawMacro(Macro macro) {
+        RawMacroSpillFile spill = rawMacroSpillFile;
+        if (spill == null) {
+            return false;
+        }
+        
+        spill.write(macro);
+        return true;
+    }
+    
     /**
      * Starts the recording of document macros performed on an editor.
      */
@@ -93,7 +191,11 @@ public class Recorder {
         menuRecorder.setRecorder(this);
         menuRecorder.start();
         
-        startDocRecording(this);
+        if (onDemandAttachment) {
+            fileBufferManager.register();
+        } else {
+            startDocRecording(this);
+        }
     }
     
     /**
@@ -153,6 +255,11 @@ public class Recorder {
         });
     }
     
+    /**
+     * Starts the recording of document macros related to a file.
+     * @param file the file
+     * @param recorder the recorder
+     */
     private void startDocRecording(IFile file, Recorder recorder) {
         String path = file.getFullPath().toString();
         DocMacroRecorder docRecorder = getDocRecorder(path);
@@ -163,12 +270,63 @@ public class Recorder {
         }
     }
     
+    /**
+     * Attaches a recorder to a file whose document has been touched.
+     * The recorder holds only the hash value of the code until the document is changed.
+     * Nothing is done if the document is already under recording.
+     * @param file the file
+     * @param doc the document of the file
+     */
+    public synchronized void attachDocRecorder(IFile file, IDocument doc) {
+        String path = file.getFullPath().toString();
+        DocMacroRecorder docRecorder = getDocRecorder(path);
+        if (docRecorder instanceof DocMacroRecorderOnEdit) {
+            return;
+        }
+        
+        if (docRecorder instanceof DocMacroRecorderOffEdit) {
+            if (((DocMacroRecorderOffEdit)docRecorder).isRecording(doc)) {
+                return;
+            }
+            detachDocRecorder(file);
+        }
+        
+        DocMacroRecorderOffEdit offEditRecorder = new DocMacroRecorderOffEdit(file, doc, this, true);
+        DocMacroRecorderOffEdit detachedRecorder = detachedRecorders.remove(path);
+        if (detachedRecorder != null) {
+            offEditRecorder.takeOverCode(detachedRecorder);
+        }
+        docRecorders.put(path, offEditRecorder);
+        offEditRecorder.start();
+    }
+    
+    /**
+     * Detaches a recorder from a file whose document has been discarded.
+     * The detached recorder keeps the compressed contents of the code, which are taken over
+     * by a recorder that will be attached to the file next.
+     * Nothing is done if the file is opened on an editor.
+     * @param file the file
+     */
+    public synchronized void detachDocRecorder(IFile file) {
+        String path = file.getFullPath().toString();
+        DocMacroRecorder docRecorder = getDocRecorder(path);
+        if (docRecorder instanceof DocMacroRecorderOffEdit) {
+            docRecorder.stop();
+            removeDocRecorder(path);
+            detachedRecorders.put(path, (DocMacroRecorderOffEdit)docRecorder);
+        }
+    }
+    
     /**
      * Starts the recording of document macros performed on an editor.
      * @param editor the editor
      */
     public synchronized void start(IEditorPart editor) {
         String path = EditorUtilities.getInputFilePath(editor);
+        if (path != null) {
+            detachedRecorders.remove(path);
+        }
+        
         DocMacroRecorder docRecorder = getDocRecorder(path);
         if (docRecorder == null) {
             docRecorder = new DocMacroRecorderOnEdit(editor, this, compressor);
@@ -193,10 +351,17 @@ public class Recorder {
             menuRecorder.stop();
         }
         
+        fileBufferManager.unregister();
+        
         for (DocMacroRecorder docRrecorder : getDocRecorders()) {
             docRrecorder.stop();
         }
         docRecorders.clear();
+        detachedRecorders.clear();
+        
+        if (rawMacroSpillFile != null) {
+            rawMacroSpillFile.flush();
+        }
     }
     
     /**
@@ -211,6 +376,14 @@ public class Recorder {
             removeDocRecorder(path);
             
             IFile file = EditorUtilities.getInputFile(editor);
+            if (fileBufferManager.isRegistered()) {
+                IDocument doc = FileBufferManager.getConnectedDocument(file);
+                if (doc != null) {
+                    attachDocRecorder(file, doc);
+                }
+                return;
+            }
+            
             docRecorder = new DocMacroRecorderOffEdit(file, this);
             docRecorders.put(path, docRecorder);
             docRecorder.start();
@@ -309,6 +482,9 @@ public class Recorder {
      * @return the recorder, or <code>null</code> if none
      */
     public static DocMacroRecorder getDocRecorder(String path) {
+        if (path == null) {
+            return null;
+        }
         return docRecorders.get(path);
     }
     
@@ -317,7 +493,9 @@ public class Recorder {
      * @param path the path of the file
      */
     public static void removeDocRecorder(String path) {
-        docRecorders.remove(path);
+        if (path != null) {
+            docRecorders.remove(path);
+        }
     }
     
     /**
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests the piece table that stores the shadow contents of a document.
+ * @author Katsuhisa Maruyama
+ */
+public class PieceTableTest {
+    
+    /**
+     * Tests that replacements produce the same text as a string builder.
+     */
+    @Test
+    public void testRandomReplacements() {
+        Random random = new Random(1);
+        StringBuilder expected = new StringBuilder("public class A {\n}\n");
+        PieceTable table = new PieceTable(expected.toString());
+        
+        for (int i = 0; i < 5000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(4));
+            String text = (random.nextInt(3) == 0) ? "" : "x" + i;
+            
+            expected.replace(start, end, text);
+            table.replace(start, end, text);
+            
+            assertEquals(expected.length(), table.length());
+        }
+        assertEquals(expected.toString(), table.toString());
+        assertTrue(table.contentEquals(expected.toString()));
+    }
+    
+    /**
+     * Tests that consecutive typing is merged into a single piece.
+     */
+    @Test
+    public void testConsecutiveInsertsAreMerged() {
+        PieceTable table = new PieceTable("ab");
+        String word = "consecutive";
+        for (int i = 0; i < word.length(); i++) {
+            table.replace(1 + i, 1 + i, word.substring(i, i + 1));
+        }
+        
+        assertEquals("a" + word + "b", table.toString());
+        assertEquals(3, table.countPieces());
+    }
+    
+    /**
+     * Tests that an insertion that does not continue the last inserted text is kept in its own piece.
+     */
+    @Test
+    public void testSeparateInsertsAreNotMerged() {
+        PieceTable table = new PieceTable("abcd");
+        table.replace(1, 1, "x");
+        table.replace(4, 4, "y");
+        table.replace(2, 2, "z");
+        
+        assertEquals("axzbcyd", table.toString());
+        assertEquals(6, table.countPieces());
+    }
+    
+    /**
+     * Tests that a deletion of the last typed character followed by typing does not reuse deleted text.
+     */
+    @Test
+    public void testInsertAfterBackspace() {
+        PieceTable table = new PieceTable("");
+        table.replace(0, 0, "a");
+        table.replace(1, 1, "b");
+        table.replace(1, 2, "");
+        table.replace(1, 1, "c");
+        
+        assertEquals("ac", table.toString());
+    }
+    
+    /**
+     * Tests the comparison of regions.
+     */
+    @Test
+    public void testRegionMatches() {
+        PieceTable table = new PieceTable("hello world");
+        table.replace(5, 6, ", ");
+        
+        assertTrue(table.regionMatches(5, ", w"));
+        assertFalse(table.regionMatches(5, " w"));
+        assertFalse(table.regionMatches(10, "world"));
+        assertEquals("lo, w", table.substring(3, 8));
+    }
+    
+    /**
+     * Tests that a table reset with <code>null</code> is distinguished from an empty one.
+     */
+    @Test
+    public void testNullText() {
+        PieceTable table = new PieceTable();
+        assertTrue(table.isNull());
+        assertTrue(table.contentEquals(null));
+        assertFalse(table.contentEquals(""));
+        
+        table.reset("");
+        assertFalse(table.isNull());
+        assertTrue(table.contentEquals(""));
+        assertFalse(table.contentEquals(null));
+        
+        table.reset(null);
+        table.replace(0, 0, "a");
+        assertFalse(table.isNull());
+        assertEquals("a", table.toString());
+    }
+    
+    /**
+     * Tests that an out-of-range replacement is rejected.
+     */
+    @Test(expected = StringIndexOutOfBoundsException.class)
+    public void testReplaceOutOfRange() {
+        PieceTable table = new PieceTable("abc");
+        table.replace(4, 4, "x");
+    }
+}
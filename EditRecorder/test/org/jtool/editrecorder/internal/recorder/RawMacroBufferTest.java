@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2015
+ *  Software Science and Technology Lab.
+ *  Department of Computer Science, Ritsumeikan University
+ */
+
+package org.jtool.editrecorder.internal.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.jtool.editrecorder.macro.Macro;
+import org.jtool.editrecorder.macro.TriggerMacro;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the buffer that stores raw macros.
+ * @author Katsuhisa Maruyama
+ */
+public class RawMacroBufferTest {
+    
+    /**
+     * Creates raw macros.
+     * @param num the number of the raw macros
+     * @return the created raw macros
+     */
+    private static List<Macro> createMacros(int num) {
+        List<Macro> macros = new ArrayList<Macro>();
+        for (int i = 0; i < num; i++) {
+            macros.add(new TriggerMacro(i, "Test", "/P/A.java", TriggerMacro.Kind.BEGIN));
+        }
+        return macros;
+    }
+    
+    /**
+     * Tests that each view contains the raw macros added since the previous one.
+     */
+    @Test
+    public void testTake() {
+        RawMacroBuffer buffer = new RawMacroBuffer(8);
+        List<Macro> macros = createMacros(5);
+        
+        buffer.add(macros.get(0));
+        buffer.add(macros.get(1));
+        List<Macro> first = buffer.take();
+        buffer.add(macros.get(2));
+        buffer.add(macros.get(3));
+        buffer.add(macros.get(4));
+        List<Macro> second = buffer.take();
+        
+        assertEquals(macros.subList(0, 2), first);
+        assertEquals(macros.subList(2, 5), second);
+        assertTrue(buffer.take().isEmpty());
+    }
+    
+    /**
+     * Tests that a view does not change after more raw macros than the capacity are added.
+     */
+    @Test
+    public void testViewIsStable() {
+        RawMacroBuffer buffer = new RawMacroBuffer(4);
+        List<Macro> macros = createMacros(100);
+        
+        List<List<Macro>> views = new ArrayList<List<Macro>>();
+        for (int i = 0; i < macros.size(); i = i + 3) {
+            for (int j = i; j < Math.min(i + 3, macros.size()); j++) {
+                buffer.add(macros.get(j));
+            }
+            views.add(buffer.take());
+        }
+        
+        for (int i = 0; i < views.size(); i++) {
+            assertEquals(macros.subList(i * 3, Math.min(i * 3 + 3, macros.size())), views.get(i));
+        }
+        assertEquals(0, buffer.getDroppedCount());
+    }
+    
+    /**
+     * Tests that the oldest pending raw macros are dropped and counted when the capacity is exceeded.
+     */
+    @Test
+    public void testOverflow() {
+        RawMacroBuffer buffer = new RawMacroBuffer(4);
+        List<Macro> macros = createMacros(10);
+        
+        buffer.add(macros.get(0));
+        List<Macro> first = buffer.take();
+        for (int i = 1; i < 10; i++) {
+            buffer.add(macros.get(i));
+        }
+        
+        assertEquals(macros.subList(6, 10), buffer.take());
+        assertEquals(5, buffer.getDroppedCount());
+        assertEquals(1, first.size());
+        assertSame(macros.get(0), first.get(0));
+    }
+    
+    /**
+     * Tests that cleared raw macros are not handed over.
+     */
+    @Test
+    public void testClear() {
+        RawMacroBuffer buffer = new RawMacroBuffer(4);
+        List<Macro> macros = createMacros(6);
+        
+        buffer.add(macros.get(0));
+        buffer.add(macros.get(1));
+        buffer.clear();
+        for (int i = 2; i < 6; i++) {
+            buffer.add(macros.get(i));
+        }
+        
+        assertEquals(macros.subList(2, 6), buffer.take());
+        assertEquals(0, buffer.getDroppedCount());
+    }
+    
+    /**
+     * Tests that a view cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewIsReadOnly() {
+        RawMacroBuffer buffer = new RawMacroBuffer(4);
+        buffer.add(createMacros(1).get(0));
+        buffer.take().clear();
+    }
+}